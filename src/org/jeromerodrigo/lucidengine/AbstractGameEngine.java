@@ -6,8 +6,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jeromerodrigo.lucidengine.audio.OpenALSoundStore;
 import org.jeromerodrigo.lucidengine.game.Game;
+import org.jeromerodrigo.lucidengine.game.InterpolatedGame;
+import org.jeromerodrigo.lucidengine.game.PipelinedGame;
+import org.jeromerodrigo.lucidengine.game.ProfiledGame;
+import org.jeromerodrigo.lucidengine.graphics.GLTaskQueue;
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler.Phase;
+import org.jeromerodrigo.lucidengine.util.FixedTimestep;
+import org.jeromerodrigo.lucidengine.util.SnapshotExchange;
 import org.lwjgl.LWJGLException;
-import org.lwjgl.Sys;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.openal.AL;
 import org.lwjgl.openal.Util;
@@ -15,6 +23,33 @@ import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.GL11;
 
+/**
+ * Runs the game loop on the GL thread.
+ *
+ * By default the game is updated once per frame with the time since the
+ * previous frame. If the "tickRate" property is set, it is instead updated at
+ * that many fixed ticks per second, however fast frames are drawn: a frame
+ * runs the ticks that came due since the previous one, at most
+ * "maxTicksPerFrame" (5 by default), then renders with the fraction of a tick
+ * left over as the interpolation alpha of an {@link InterpolatedGame}. If the
+ * updates can't keep up, the ticks over the cap are dropped (see
+ * {@link FixedTimestep}).
+ *
+ * If the "pipelined" property is "true" and the game is a
+ * {@link PipelinedGame}, input and updates run on a simulation thread while
+ * this thread draws the previous update from its {@link RenderSnapshot}, so
+ * the two overlap. Interpolation doesn't apply then. Input is still polled
+ * by Display.update on this thread and read by the simulation.
+ *
+ * If the "profileFrames" property is set, a {@link FrameProfiler} records
+ * that many recent frames, and "profilerJmx" set to "true" publishes it as an
+ * MBean. In pipelined mode input and update are not part of the frame and
+ * aren't recorded. The profiler counts the GL work of the batches it tracks:
+ * those of a {@link ProfiledGame}, such as AbstractScene and AbstractGame,
+ * are tracked when the game starts; other games must call
+ * getProfiler().track(batch.getStats()) for each of their batches.
+ */
+
 public abstract class AbstractGameEngine implements GameEngine {
 
     private static final Logger LOG = LogManager
@@ -26,12 +61,30 @@ public abstract class AbstractGameEngine implements GameEngine {
 
     private long lastFPS;
 
+    /** Null to update once per frame */
+    private final FixedTimestep timestep;
+
+    /** When the game was last updated, in nanoseconds */
+    private long lastUpdate;
+
+    private final boolean pipelined;
+
+    /** Null unless frames are profiled */
+    private final FrameProfiler profiler;
+
+    private final boolean profilerJmx;
+
     private int fps;
 
     private final int TARGET_FPS;
 
     private int displayWidth, displayHeight;
 
+    private final GLTaskQueue glTasks = new GLTaskQueue();
+
+    /** The time each frame may spend on queued GL tasks, in nanoseconds */
+    private final long glTaskBudget;
+
     public AbstractGameEngine(final Properties prop)
             throws NumberFormatException, LWJGLException {
 
@@ -73,6 +126,29 @@ public abstract class AbstractGameEngine implements GameEngine {
 
         TARGET_FPS = Integer.parseInt(prop.getProperty("targetFps"));
 
+        glTaskBudget = Long.parseLong(prop.getProperty("glTaskBudgetMs",
+                "4")) * 1000000L;
+
+        final int tickRate = Integer.parseInt(prop.getProperty("tickRate",
+                "0"));
+
+        if (tickRate < 0) {
+            throw new IllegalArgumentException("tick rate " + tickRate);
+        }
+
+        timestep = tickRate == 0 ? null : new FixedTimestep(
+                1000000000L / tickRate, Integer.parseInt(prop.getProperty(
+                        "maxTicksPerFrame", "5")));
+
+        pipelined = "true".equals(prop.getProperty("pipelined"));
+
+        final int profileFrames = Integer.parseInt(prop.getProperty(
+                "profileFrames", "0"));
+        profiler = profileFrames > 0 ? new FrameProfiler(profileFrames)
+                : null;
+        profilerJmx = profiler != null
+                && "true".equals(prop.getProperty("profilerJmx"));
+
         // Setup projection matrix
         GL11.glMatrixMode(GL11.GL_PROJECTION);
         GL11.glLoadIdentity();
@@ -103,6 +179,16 @@ public abstract class AbstractGameEngine implements GameEngine {
         return displayHeight;
     }
 
+    @Override
+    public GLTaskQueue getGLTaskQueue() {
+        return glTasks;
+    }
+
+    @Override
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
     @Override
     public void start(final Game game) {
 
@@ -115,28 +201,28 @@ public abstract class AbstractGameEngine implements GameEngine {
         lastFrame = currentTime;
         lastFPS = currentTime;
 
-        while (!Display.isCloseRequested()) {
-            game.processInput();
-
-            game.update(getDelta());
-
-            GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
-            GL11.glLoadIdentity();
+        lastUpdate = System.nanoTime();
 
-            game.render();
+        if (timestep != null) {
+            timestep.reset(lastUpdate);
+        }
 
-            Display.update();
-            Display.sync(TARGET_FPS);
+        if (profiler != null && game instanceof ProfiledGame) {
+            ((ProfiledGame) game).trackBatches(profiler);
+        }
 
-            if (currentTime - lastFPS > 1000) {
-                Display.setTitle(String.valueOf(fps));
-                fps = 0;
-                lastFPS += 1000;
-            }
+        if (profilerJmx) {
+            profiler.registerMBean();
+        }
 
-            fps++;
+        if (pipelined && game instanceof PipelinedGame) {
+            runPipelined((PipelinedGame) game);
+        } else {
+            runSerial(game);
+        }
 
-            updateTime();
+        if (profilerJmx) {
+            profiler.unregisterMBean();
         }
 
         game.dispose();
@@ -156,11 +242,178 @@ public abstract class AbstractGameEngine implements GameEngine {
 
     }
 
+    /**
+     * Runs input, update and render one after the other on this thread.
+     */
+
+    private void runSerial(final Game game) {
+
+        while (!Display.isCloseRequested()) {
+            if (profiler != null) {
+                profiler.beginFrame();
+            }
+
+            game.processInput();
+            lap(Phase.INPUT);
+
+            final float alpha = advance(game);
+            lap(Phase.UPDATE);
+
+            beginFrame();
+
+            if (game instanceof InterpolatedGame) {
+                ((InterpolatedGame) game).render(alpha);
+            } else {
+                game.render();
+            }
+            lap(Phase.RENDER);
+
+            endFrame();
+        }
+    }
+
+    /**
+     * Runs input and update on a simulation thread, one frame ahead of this
+     * thread, which draws the snapshot each update leaves.
+     */
+
+    private void runPipelined(final PipelinedGame game) {
+
+        final SnapshotExchange<RenderSnapshot> exchange = new SnapshotExchange<RenderSnapshot>(
+                new RenderSnapshot(), new RenderSnapshot());
+
+        final Thread simulation = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    RenderSnapshot back;
+
+                    while ((back = exchange.acquireBack()) != null) {
+                        game.processInput();
+                        advance(game);
+
+                        back.clear();
+                        game.snapshot(back);
+                        exchange.publish(back);
+                    }
+                } catch (final RuntimeException e) {
+                    LOG.fatal("Simulation failed", e);
+                }
+            }
+        }, "Simulation");
+
+        simulation.start();
+
+        while (!Display.isCloseRequested() && simulation.isAlive()) {
+            if (profiler != null) {
+                profiler.beginFrame();
+            }
+
+            final RenderSnapshot front = exchange.acquireFront();
+
+            beginFrame();
+            game.render(front);
+            lap(Phase.RENDER);
+
+            endFrame();
+        }
+
+        exchange.close();
+
+        try {
+            simulation.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Updates the game for the time since the previous call: once with that
+     * time, or in fixed ticks if a tick rate is set.
+     *
+     * @return the fraction of a tick left over, or 1 without ticks
+     */
+
+    private float advance(final Game game) {
+        final long now = System.nanoTime();
+
+        if (timestep == null) {
+            // whole milliseconds; the rest carries over to the next update
+            final int delta = (int) ((now - lastUpdate) / 1000000L);
+            lastUpdate += delta * 1000000L;
+            game.update(delta);
+            return 1f;
+        }
+
+        final int due = timestep.advance(now);
+
+        for (int t = 0; t < due; t++) {
+            game.update(timestep.nextTickDelta());
+        }
+
+        return timestep.getAlpha();
+    }
+
+    private void beginFrame() {
+        // uploads for assets loaded in the background, within budget
+        glTasks.process(glTaskBudget);
+
+        GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+        GL11.glLoadIdentity();
+        lap(Phase.GL_TASKS);
+    }
+
+    private void endFrame() {
+        Display.update();
+        lap(Phase.DISPLAY_UPDATE);
+
+        Display.sync(TARGET_FPS);
+        lap(Phase.SYNC);
+
+        if (profiler != null) {
+            profiler.endFrame();
+        }
+
+        if (currentTime - lastFPS > 1000) {
+            Display.setTitle(String.valueOf(fps));
+            fps = 0;
+            lastFPS += 1000;
+        }
+
+        fps++;
+
+        lastFrame = currentTime;
+        updateTime();
+    }
+
+    private void lap(final Phase phase) {
+        if (profiler != null) {
+            profiler.lap(phase);
+        }
+    }
+
+    /**
+     * Gets how long the previous frame took.
+     *
+     * @return the time in milliseconds
+     */
+
     public final int getDelta() {
         return (int) (currentTime - lastFrame);
     }
 
     public final void updateTime() {
-        currentTime = Sys.getTime() * 1000 / Sys.getTimerResolution();
+        currentTime = System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * Gets the length of an update tick.
+     *
+     * @return the length in nanoseconds, or 0 if the game is updated once per
+     *         frame
+     */
+
+    public final long getTickNanos() {
+        return timestep == null ? 0 : timestep.getTickNanos();
     }
 }
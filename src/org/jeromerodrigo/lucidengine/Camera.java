@@ -16,16 +16,16 @@ public class Camera implements Updateable {
     private static final Logger LOG = LogManager.getLogger(Camera.class);
 
     /**
-     * Holds the minimum camera offset value of x and y plane
+     * The entity to track with the camera
      */
 
-    private static final int OFFSET_MIN_X = 0, OFFSET_MIN_Y = 0;
+    private final Entity entity;
 
     /**
-     * The entity to track with the camera
+     * The minimum offset value of x and y plane
      */
 
-    private final Entity entity;
+    private final double offsetMinX, offsetMinY;
 
     /**
      * The maximum offset value of x and y plane
@@ -65,6 +65,8 @@ public class Camera implements Updateable {
         displayWidth = screenWidth;
         displayHeight = screenHeight;
 
+        offsetMinX = 0;
+        offsetMinY = 0;
         offsetMaxX = map.getTileWidth() * map.getWidth() - screenWidth;
         offsetMaxY = map.getTileHeight() * map.getHeight() - screenHeight;
         entity = e;
@@ -75,14 +77,38 @@ public class Camera implements Updateable {
         }
     }
 
+    /**
+     * Creates a camera that follows an entity without being limited to map
+     * bounds, for streamed maps that are unbounded or too large to load.
+     *
+     * @param e
+     *            The entity to track
+     * @param screenWidth
+     *            The width of the screen in pixels
+     * @param screenHeight
+     *            The height of the screen in pixels
+     */
+
+    public Camera(final Entity e, final int screenWidth, final int screenHeight) {
+
+        displayWidth = screenWidth;
+        displayHeight = screenHeight;
+
+        offsetMinX = Double.NEGATIVE_INFINITY;
+        offsetMinY = Double.NEGATIVE_INFINITY;
+        offsetMaxX = Double.POSITIVE_INFINITY;
+        offsetMaxY = Double.POSITIVE_INFINITY;
+        entity = e;
+    }
+
     @Override
     public final void update(final int delta) {
         camX = limitCameraLocation(
                 getCameraLocationRelativeToDisplay(entity.getX(), displayWidth),
-                offsetMaxX, OFFSET_MIN_X);
+                offsetMaxX, offsetMinX);
         camY = limitCameraLocation(
                 getCameraLocationRelativeToDisplay(entity.getY(), displayHeight),
-                offsetMaxY, OFFSET_MIN_Y);
+                offsetMaxY, offsetMinY);
     }
 
     /**
@@ -1,6 +1,8 @@
 package org.jeromerodrigo.lucidengine;
 
 import org.jeromerodrigo.lucidengine.game.Game;
+import org.jeromerodrigo.lucidengine.graphics.GLTaskQueue;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler;
 
 public interface GameEngine {
 
@@ -9,4 +11,26 @@ public interface GameEngine {
     int getDisplayHeight();
 
     int getDisplayWidth();
+
+    /**
+     * Gets the queue of tasks the game loop runs on the GL thread each frame,
+     * within a time budget set by the "glTaskBudgetMs" property (4 ms by
+     * default).
+     *
+     * @return the queue
+     */
+
+    GLTaskQueue getGLTaskQueue();
+
+    /**
+     * Gets the profiler recording the game loop's recent frames, enabled by
+     * setting the "profileFrames" property to the number of frames to keep.
+     * It counts the GL work per frame of the sprite batches it tracks; those
+     * of a ProfiledGame are tracked when the game starts, others must be
+     * passed to {@link FrameProfiler#track}.
+     *
+     * @return the profiler, or null if frames aren't profiled
+     */
+
+    FrameProfiler getProfiler();
 }
@@ -0,0 +1,25 @@
+package org.jeromerodrigo.lucidengine;
+
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+
+/**
+ * A Drawable that blends between its last two updated states when the game
+ * loop runs at a fixed tick rate, so motion looks smooth at any frame rate.
+ */
+
+public interface InterpolatedDrawable extends Drawable {
+
+    /**
+     * Draws the state at a point between the previous tick and the latest
+     * one.
+     *
+     * @param batch
+     *            the batch to draw with
+     * @param alpha
+     *            how far from the previous tick's state (0) to the latest
+     *            tick's state (1) to draw
+     */
+
+    void render(SpriteBatch batch, float alpha);
+
+}
@@ -0,0 +1,11 @@
+package org.jeromerodrigo.lucidengine;
+
+/**
+ * Marks an Updateable whose update only touches its own state, so it may run
+ * on another thread at the same time as other ParallelUpdateables of its
+ * {@link UpdatePhase}.
+ */
+
+public interface ParallelUpdateable extends Updateable {
+
+}
@@ -0,0 +1,22 @@
+package org.jeromerodrigo.lucidengine;
+
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
+
+/**
+ * A Drawable whose drawing can be recorded into a {@link RenderSnapshot}, so
+ * it can be drawn on the GL thread while the simulation thread updates it.
+ */
+
+public interface Snapshotable extends Drawable {
+
+    /**
+     * Records what {@link #render(org.jeromerodrigo.lucidengine.graphics.SpriteBatch)}
+     * would draw now.
+     *
+     * @param snapshot
+     *            the snapshot to record into
+     */
+
+    void snapshot(RenderSnapshot snapshot);
+
+}
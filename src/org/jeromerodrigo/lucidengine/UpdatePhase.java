@@ -0,0 +1,25 @@
+package org.jeromerodrigo.lucidengine;
+
+/**
+ * The phases an update is split into, run in declaration order, so that e.g.
+ * the camera follows the positions physics produced in the same update.
+ */
+
+public enum UpdatePhase {
+
+    /** Reacting to player input */
+    INPUT,
+
+    /** Deciding what non-player actors do */
+    AI,
+
+    /** Advancing sprite and tile animations */
+    ANIMATION,
+
+    /** Moving bodies; where updateables go unless told otherwise */
+    PHYSICS,
+
+    /** Following the results with the camera */
+    CAMERA
+
+}
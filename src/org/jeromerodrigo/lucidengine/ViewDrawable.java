@@ -0,0 +1,29 @@
+package org.jeromerodrigo.lucidengine;
+
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+
+/**
+ * A Drawable that depends only on a camera position and an animation clock,
+ * e.g. a map renderer. A {@link RenderSnapshot} records those values instead
+ * of the drawable's output, and draws it from them later.
+ */
+
+public interface ViewDrawable extends Drawable {
+
+    /**
+     * Draws the view from a camera position at a point in time.
+     *
+     * @param batch
+     *            the batch to draw with
+     * @param cameraX
+     *            the left of the camera
+     * @param cameraY
+     *            the top of the camera
+     * @param time
+     *            the animation time in milliseconds
+     */
+
+    void render(SpriteBatch batch, double cameraX, double cameraY, long time);
+
+}
@@ -4,12 +4,15 @@ import org.dyn4j.dynamics.Body;
 import org.dyn4j.dynamics.BodyFixture;
 import org.dyn4j.geometry.Geometry;
 import org.dyn4j.geometry.Mass;
+import org.jeromerodrigo.lucidengine.Snapshotable;
 import org.jeromerodrigo.lucidengine.animation.Animation;
 import org.jeromerodrigo.lucidengine.graphics.AnimatedSprite;
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
 import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
 import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
 
-public abstract class AbstractEntity extends Body implements Entity {
+public abstract class AbstractEntity extends Body implements Entity,
+        Snapshotable {
 
     private final transient AnimatedSprite spr;
 
@@ -66,4 +69,10 @@ public abstract class AbstractEntity extends Body implements Entity {
         spr.setLocation((float) getX(), (float) getY());
         spr.render(batch);
     }
+
+    @Override
+    public void snapshot(final RenderSnapshot snapshot) {
+        spr.setLocation((float) getX(), (float) getY());
+        spr.snapshot(snapshot);
+    }
 }
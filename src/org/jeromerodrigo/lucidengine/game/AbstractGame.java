@@ -3,18 +3,29 @@ package org.jeromerodrigo.lucidengine.game;
 import java.util.HashMap;
 import java.util.Map;
 
-public abstract class AbstractGame implements Game {
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler;
+
+public abstract class AbstractGame implements InterpolatedGame,
+        PipelinedGame, ProfiledGame {
 
     private final Map<String, AbstractScene> scenes;
 
     private AbstractScene currentScene;
 
+    /** The profiler tracking the scenes' batches, or null */
+    private FrameProfiler profiler;
+
     public AbstractGame() {
         scenes = new HashMap<String, AbstractScene>();
     }
 
     public void putScene(final AbstractScene scene) {
         scenes.put(scene.getName(), scene);
+
+        if (profiler != null) {
+            scene.trackBatches(profiler);
+        }
     }
 
     public void setCurrentScene(final String sceneName) {
@@ -44,6 +55,35 @@ public abstract class AbstractGame implements Game {
         currentScene.render();
     }
 
+    @Override
+    public void snapshot(final RenderSnapshot snapshot) {
+        currentScene.snapshot(snapshot);
+    }
+
+    @Override
+    public void render(final RenderSnapshot snapshot) {
+        currentScene.render(snapshot);
+    }
+
+    @Override
+    public void render(final float alpha) {
+        currentScene.setAlpha(alpha);
+        render();
+    }
+
+    /**
+     * Tracks the batches of every scene, including those put later.
+     */
+
+    @Override
+    public void trackBatches(final FrameProfiler profiler) {
+        this.profiler = profiler;
+
+        for (final AbstractScene scene : scenes.values()) {
+            scene.trackBatches(profiler);
+        }
+    }
+
     @Override
     public void update(final int delta) {
         currentScene.update(delta);
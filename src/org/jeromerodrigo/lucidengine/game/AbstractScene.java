@@ -4,12 +4,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jeromerodrigo.lucidengine.Drawable;
+import org.jeromerodrigo.lucidengine.InterpolatedDrawable;
+import org.jeromerodrigo.lucidengine.Snapshotable;
+import org.jeromerodrigo.lucidengine.UpdatePhase;
 import org.jeromerodrigo.lucidengine.Updateable;
 import org.jeromerodrigo.lucidengine.ai.Controllable;
 import org.jeromerodrigo.lucidengine.ai.Controller;
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
 import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler;
 
-public abstract class AbstractScene implements Game {
+public abstract class AbstractScene implements InterpolatedGame,
+        PipelinedGame, ProfiledGame {
 
     protected final SpriteBatch batch;
 
@@ -17,13 +23,16 @@ public abstract class AbstractScene implements Game {
 
     private final String sceneName;
     private final List<Drawable> drawables;
-    private final List<Updateable> updateables;
+    private final UpdateScheduler updateables;
     private final List<Controllable> controllables;
 
+    /** The fraction of a tick since the latest update, 1 if not ticking */
+    private float alpha = 1f;
+
     public AbstractScene(final String name, final SpriteBatch spriteBatch) {
 
         drawables = new ArrayList<Drawable>();
-        updateables = new ArrayList<Updateable>();
+        updateables = new UpdateScheduler();
         controllables = new ArrayList<Controllable>();
 
         sceneName = name;
@@ -32,9 +41,7 @@ public abstract class AbstractScene implements Game {
 
     @Override
     public void update(final int delta) {
-        for (final Updateable updateable : updateables) {
-            updateable.update(delta);
-        }
+        updateables.update(delta);
     }
 
     @Override
@@ -62,18 +69,100 @@ public abstract class AbstractScene implements Game {
         batch.begin();
 
         for (final Drawable drawable : drawables) {
-            drawable.render(batch);
+            if (drawable instanceof InterpolatedDrawable) {
+                ((InterpolatedDrawable) drawable).render(batch, alpha);
+            } else {
+                drawable.render(batch);
+            }
         }
 
         batch.end();
     }
 
+    /**
+     * Records the drawables: those implementing Snapshotable as they are now,
+     * the others to be drawn from their live state, so those must not read
+     * anything the simulation updates.
+     */
+
+    @Override
+    public void snapshot(final RenderSnapshot snapshot) {
+        for (final Drawable drawable : drawables) {
+            if (drawable instanceof Snapshotable) {
+                ((Snapshotable) drawable).snapshot(snapshot);
+            } else {
+                snapshot.drawLive(drawable);
+            }
+        }
+    }
+
+    @Override
+    public void render(final RenderSnapshot snapshot) {
+        batch.begin();
+        snapshot.render(batch);
+        batch.end();
+    }
+
+    @Override
+    public void render(final float alpha) {
+        setAlpha(alpha);
+        render();
+    }
+
+    /**
+     * Tracks the scene's batch. Scenes drawing with other batches should
+     * track those too.
+     */
+
+    @Override
+    public void trackBatches(final FrameProfiler profiler) {
+        profiler.track(batch.getStats());
+    }
+
+    void setAlpha(final float alpha) {
+        this.alpha = alpha;
+    }
+
+    /**
+     * Gets the interpolation alpha of the frame being rendered, for scenes
+     * that draw outside their drawables.
+     *
+     * @return the fraction of a tick since the latest update
+     */
+
+    public final float getAlpha() {
+        return alpha;
+    }
+
     public final void addDrawable(final Drawable drawable) {
         drawables.add(drawable);
     }
 
+    /**
+     * Adds an updateable to the {@link UpdatePhase#PHYSICS} phase.
+     *
+     * @param updateable
+     *            the updateable
+     */
+
     public final void addUpdateable(final Updateable updateable) {
-        updateables.add(updateable);
+        addUpdateable(updateable, UpdatePhase.PHYSICS);
+    }
+
+    /**
+     * Adds an updateable to a phase of the scene's update. Updateables
+     * implementing ParallelUpdateable are updated in parallel with the other
+     * ones of their phase.
+     *
+     * @param updateable
+     *            the updateable
+     * @param phase
+     *            the phase
+     */
+
+    public final void addUpdateable(final Updateable updateable,
+            final UpdatePhase phase) {
+        updateables.add(updateable, phase);
     }
 
     public final void addControllable(final Controllable controllable) {
@@ -0,0 +1,19 @@
+package org.jeromerodrigo.lucidengine.game;
+
+/**
+ * A Game that can be rendered between two update ticks, see
+ * {@link org.jeromerodrigo.lucidengine.InterpolatedDrawable}.
+ */
+
+public interface InterpolatedGame extends Game {
+
+    /**
+     * Renders the game part way from the previous tick to the latest one.
+     *
+     * @param alpha
+     *            the fraction of a tick, from 0 to 1, since the latest tick
+     */
+
+    void render(float alpha);
+
+}
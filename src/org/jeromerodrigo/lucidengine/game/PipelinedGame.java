@@ -0,0 +1,31 @@
+package org.jeromerodrigo.lucidengine.game;
+
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
+
+/**
+ * A Game that can be updated on a simulation thread while the GL thread
+ * draws the previous update from a {@link RenderSnapshot}.
+ */
+
+public interface PipelinedGame extends Game {
+
+    /**
+     * Records what {@link #render()} would draw now. Called on the simulation
+     * thread after each update.
+     *
+     * @param snapshot
+     *            the snapshot to record into, cleared
+     */
+
+    void snapshot(RenderSnapshot snapshot);
+
+    /**
+     * Draws a recorded snapshot. Called on the GL thread.
+     *
+     * @param snapshot
+     *            the snapshot
+     */
+
+    void render(RenderSnapshot snapshot);
+
+}
@@ -0,0 +1,22 @@
+package org.jeromerodrigo.lucidengine.game;
+
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler;
+
+/**
+ * A Game whose sprite batches the engine's {@link FrameProfiler} should
+ * count.
+ */
+
+public interface ProfiledGame extends Game {
+
+    /**
+     * Tracks the counters of the game's sprite batches with a profiler.
+     * Called once before the game starts, if frames are profiled.
+     *
+     * @param profiler
+     *            the profiler
+     */
+
+    void trackBatches(FrameProfiler profiler);
+
+}
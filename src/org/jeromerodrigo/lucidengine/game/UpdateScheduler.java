@@ -0,0 +1,171 @@
+package org.jeromerodrigo.lucidengine.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.jeromerodrigo.lucidengine.ParallelUpdateable;
+import org.jeromerodrigo.lucidengine.UpdatePhase;
+import org.jeromerodrigo.lucidengine.Updateable;
+
+/**
+ * Updates a set of updateables phase by phase. Within a phase, updateables
+ * run in the order they were added, then the {@link ParallelUpdateable}s of
+ * the phase are split over a fork-join pool. A phase with no more parallel
+ * updateables than the threshold runs them on the calling thread, so small
+ * scenes pay nothing for the pool.
+ */
+
+public final class UpdateScheduler {
+
+    /** The default number of parallel updateables per task */
+    public static final int DEFAULT_THRESHOLD = 128;
+
+    private static final class Holder {
+        // created on first use, so serial games don't start worker threads
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    private final ForkJoinPool pool;
+
+    private final int threshold;
+
+    /** The serial updateables of each phase, by ordinal */
+    private final List<List<Updateable>> serial;
+
+    /** The parallel updateables of each phase, by ordinal */
+    private final List<List<Updateable>> parallel;
+
+    public UpdateScheduler() {
+        this(null, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param pool
+     *            the pool to run parallel updates on, or null for one shared
+     *            by every scheduler
+     * @param threshold
+     *            the most parallel updateables a task updates without
+     *            splitting, at least 1
+     */
+
+    public UpdateScheduler(final ForkJoinPool pool, final int threshold) {
+
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold " + threshold);
+        }
+
+        this.pool = pool;
+        this.threshold = threshold;
+
+        final int phases = UpdatePhase.values().length;
+        serial = new ArrayList<List<Updateable>>(phases);
+        parallel = new ArrayList<List<Updateable>>(phases);
+
+        for (int p = 0; p < phases; p++) {
+            serial.add(new ArrayList<Updateable>());
+            parallel.add(new ArrayList<Updateable>());
+        }
+    }
+
+    /**
+     * Adds an updateable to a phase; it runs in parallel if it is a
+     * {@link ParallelUpdateable}.
+     *
+     * @param updateable
+     *            the updateable
+     * @param phase
+     *            the phase to update it in
+     */
+
+    public void add(final Updateable updateable, final UpdatePhase phase) {
+        if (updateable instanceof ParallelUpdateable) {
+            parallel.get(phase.ordinal()).add(updateable);
+        } else {
+            serial.get(phase.ordinal()).add(updateable);
+        }
+    }
+
+    /**
+     * Removes an updateable from every phase.
+     *
+     * @param updateable
+     *            the updateable
+     */
+
+    public void remove(final Updateable updateable) {
+        for (int p = 0; p < serial.size(); p++) {
+            serial.get(p).remove(updateable);
+            parallel.get(p).remove(updateable);
+        }
+    }
+
+    /**
+     * Runs every phase, returning when all of its updates are done.
+     *
+     * @param delta
+     *            the time to update by in milliseconds
+     */
+
+    public void update(final int delta) {
+        for (int p = 0; p < serial.size(); p++) {
+
+            for (final Updateable updateable : serial.get(p)) {
+                updateable.update(delta);
+            }
+
+            final List<Updateable> phase = parallel.get(p);
+
+            if (phase.size() <= threshold) {
+                for (final Updateable updateable : phase) {
+                    updateable.update(delta);
+                }
+            } else {
+                getPool().invoke(
+                        new UpdateTask(phase, 0, phase.size(), delta));
+            }
+        }
+    }
+
+    private ForkJoinPool getPool() {
+        return pool != null ? pool : Holder.POOL;
+    }
+
+    /**
+     * Updates a range of a phase's parallel updateables, halving it until it
+     * is no larger than the threshold.
+     */
+
+    private final class UpdateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Updateable> updateables;
+        private final int start, end;
+        private final int delta;
+
+        UpdateTask(final List<Updateable> updateables, final int start,
+                final int end, final int delta) {
+            this.updateables = updateables;
+            this.start = start;
+            this.end = end;
+            this.delta = delta;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                for (int i = start; i < end; i++) {
+                    updateables.get(i).update(delta);
+                }
+                return;
+            }
+
+            final int mid = (start + end) >>> 1;
+            invokeAll(new UpdateTask(updateables, start, mid, delta),
+                    new UpdateTask(updateables, mid, end, delta));
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package org.jeromerodrigo.lucidengine.graphics;
+
+/**
+ * Counts the GL work a {@link SpriteBatch} submits, since the counters were
+ * created or last reset. Updated on the GL thread without allocating. Only
+ * the game resets them: to count per frame without resetting, take the
+ * difference of two readings, as a FrameProfiler tracking the batch does.
+ */
+
+public final class BatchStats {
+
+    /** Why pending sprites were sent to GL */
+    public enum FlushReason {
+
+        /** A sprite needed another texture, or every texture unit was taken */
+        TEXTURE_CHANGE,
+
+        /** The vertex buffer was full */
+        BUFFER_FULL,
+
+        /** The shader was changed */
+        SHADER_CHANGE,
+
+        /** end() was called */
+        END,
+
+        /** flush() was called, or a mesh was drawn with drawMesh */
+        EXPLICIT
+
+    }
+
+    private static final FlushReason[] REASONS = FlushReason.values();
+
+    private long flushes;
+    private final long[] flushesByReason = new long[REASONS.length];
+    private long renderCalls;
+    private long drawCalls;
+    private long quads;
+    private int maxBatchQuads;
+
+    /** The most sprites in one render call since the last sample */
+    private int sampledMaxBatchQuads;
+    private long vertices;
+    private long textureBinds;
+
+    /**
+     * Gets the number of times pending sprites were sent to GL.
+     *
+     * @return the number of flushes
+     */
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Gets the number of flushes for a reason.
+     *
+     * @param reason
+     *            the reason
+     * @return the number of flushes
+     */
+
+    public long getFlushes(final FlushReason reason) {
+        return flushesByReason[reason.ordinal()];
+    }
+
+    /**
+     * Gets the number of batches of sprites drawn, i.e. the draw calls of
+     * flushes.
+     *
+     * @return the number of render calls
+     */
+
+    public long getRenderCalls() {
+        return renderCalls;
+    }
+
+    /**
+     * Gets the number of draw calls, from flushes and from drawMesh.
+     *
+     * @return the number of draw calls
+     */
+
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Gets the number of quads drawn, as sprites or through drawMesh.
+     *
+     * @return the number of quads
+     */
+
+    public long getQuads() {
+        return quads;
+    }
+
+    /**
+     * Gets the most sprites drawn in one render call.
+     *
+     * @return the number of quads
+     */
+
+    public int getMaxBatchQuads() {
+        return maxBatchQuads;
+    }
+
+    /**
+     * Gets the most sprites drawn in one render call since the previous call
+     * of this method, for a profiler sampling the batch once a frame. Doesn't
+     * affect {@link #getMaxBatchQuads()}.
+     *
+     * @return the number of quads
+     */
+
+    public int sampleMaxBatchQuads() {
+        final int max = sampledMaxBatchQuads;
+        sampledMaxBatchQuads = 0;
+        return max;
+    }
+
+    public long getVertices() {
+        return vertices;
+    }
+
+    public long getTextureBinds() {
+        return textureBinds;
+    }
+
+    /**
+     * Records a flush of pending sprites.
+     *
+     * @param reason
+     *            why the sprites were sent
+     */
+
+    public void flushed(final FlushReason reason) {
+        flushes++;
+        flushesByReason[reason.ordinal()]++;
+    }
+
+    /**
+     * Records a render call drawing a batch of sprites.
+     *
+     * @param quadCount
+     *            the number of sprites drawn
+     * @param vertexCount
+     *            the number of vertices sent
+     */
+
+    public void rendered(final int quadCount, final int vertexCount) {
+        renderCalls++;
+        drawCalls++;
+        quads += quadCount;
+        maxBatchQuads = Math.max(maxBatchQuads, quadCount);
+        sampledMaxBatchQuads = Math.max(sampledMaxBatchQuads, quadCount);
+        vertices += vertexCount;
+    }
+
+    /**
+     * Records a draw call of quads from a mesh outside the batch.
+     *
+     * @param quadCount
+     *            the number of quads drawn
+     */
+
+    public void meshDrawn(final int quadCount) {
+        drawCalls++;
+        quads += quadCount;
+        vertices += quadCount * 4;
+    }
+
+    /**
+     * Records textures being bound.
+     *
+     * @param count
+     *            the number of textures
+     */
+
+    public void texturesBound(final int count) {
+        textureBinds += count;
+    }
+
+    /**
+     * Sets every counter back to 0.
+     */
+
+    public void reset() {
+        flushes = 0;
+        for (int i = 0; i < flushesByReason.length; i++) {
+            flushesByReason[i] = 0;
+        }
+        renderCalls = 0;
+        drawCalls = 0;
+        quads = 0;
+        maxBatchQuads = 0;
+        vertices = 0;
+        textureBinds = 0;
+    }
+
+}
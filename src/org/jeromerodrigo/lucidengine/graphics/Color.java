@@ -179,6 +179,31 @@ public class Color {
         return color;
     }
 
+    /** Packs the 4 components of this color into the bits of a float, in the
+     * ABGR byte order expected by a normalized GL_UNSIGNED_BYTE vertex
+     * attribute. The lowest bit of alpha is dropped so the result can never be
+     * a NaN, which could otherwise be canonicalized on its way into a buffer.
+     * 
+     * @return the packed color */
+    public float toFloatBits() {
+        return toFloatBits(r, g, b, a);
+    }
+
+    /** Packs the given components into the bits of a float, in ABGR byte order.
+     * 
+     * @param r The red component (0.0 -> 1.0)
+     * @param g The green component (0.0 -> 1.0)
+     * @param b The blue component (0.0 -> 1.0)
+     * @param a The alpha component (0.0 -> 1.0)
+     * @return the packed color
+     * @see #toFloatBits() */
+    public static float toFloatBits(final float r, final float g,
+            final float b, final float a) {
+        final int color = (int) (255 * a) << 24 | (int) (255 * b) << 16
+                | (int) (255 * g) << 8 | (int) (255 * r);
+        return Float.intBitsToFloat(color & 0xfeffffff);
+    }
+
     /** @see java.lang.Object#hashCode() */
     @Override
     public int hashCode() {
@@ -0,0 +1,68 @@
+package org.jeromerodrigo.lucidengine.graphics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A queue of work that needs the GL context, such as texture uploads, posted
+ * from any thread and run by the game loop on the GL thread a few at a time,
+ * so a burst of uploads is spread over several frames instead of stalling
+ * one.
+ */
+
+public final class GLTaskQueue {
+
+    private static final Logger LOG = LogManager.getLogger(GLTaskQueue.class);
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Queues a task to run on the GL thread. Safe to call from any thread.
+     *
+     * @param task
+     *            the task
+     */
+
+    public void post(final Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Runs queued tasks in the order they were posted until the queue is empty
+     * or the time budget is used up. At least one task is run if any is
+     * queued, so a task longer than the budget still makes progress. Must be
+     * called on the GL thread.
+     *
+     * @param budgetNanos
+     *            the time budget in nanoseconds
+     * @return the number of tasks run
+     */
+
+    public int process(final long budgetNanos) {
+        final long start = System.nanoTime();
+        int run = 0;
+        Runnable task;
+
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                LOG.error("GL task failed", e);
+            }
+            run++;
+
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+
+        return run;
+    }
+
+    public boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+}
@@ -0,0 +1,24 @@
+package org.jeromerodrigo.lucidengine.graphics;
+
+import org.jeromerodrigo.lucidengine.ParallelUpdateable;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
+
+/**
+ * An AnimatedSprite that may be updated in parallel with the other
+ * ParallelUpdateables of its phase. Only use it when every Animation put in
+ * it was created for this sprite alone: an update advances the Animation and
+ * its Frames, which must not be shared with other sprites. Like every
+ * ParallelUpdateable, it is updated after the plain updateables of its phase
+ * rather than in the order it was added.
+ */
+
+public class ParallelAnimatedSprite extends AnimatedSprite implements
+        ParallelUpdateable {
+
+    public ParallelAnimatedSprite(final TextureRegion texRegion,
+            final float xLoc, final float yLoc, final float width,
+            final float height) {
+        super(texRegion, xLoc, yLoc, width, height);
+    }
+
+}
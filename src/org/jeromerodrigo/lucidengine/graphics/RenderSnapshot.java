@@ -0,0 +1,147 @@
+package org.jeromerodrigo.lucidengine.graphics;
+
+import java.util.Arrays;
+
+import org.jeromerodrigo.lucidengine.Drawable;
+import org.jeromerodrigo.lucidengine.ViewDrawable;
+import org.jeromerodrigo.lucidengine.graphics.texture.ITexture;
+
+/**
+ * What a frame draws, recorded by the simulation so another thread can draw
+ * it while the simulation moves on: a list of sprites, each a texture region
+ * and a rectangle, interleaved with {@link ViewDrawable}s, each with the
+ * camera position and animation time to draw it from, and with drawables that
+ * can't be recorded and are drawn from their live state instead. Buffers are
+ * reused from frame to frame to avoid garbage.
+ */
+
+public final class RenderSnapshot {
+
+    /** The texture of each entry, null for a live drawable */
+    private ITexture[] textures = new ITexture[64];
+
+    private Drawable[] drawables = new Drawable[64];
+
+    /** The view drawable of each entry, null for others */
+    private ViewDrawable[] views = new ViewDrawable[64];
+
+    /** The camera x and y of each view entry */
+    private double[] cameras = new double[64 * 2];
+
+    /** The animation time of each view entry */
+    private long[] times = new long[64];
+
+    /** x, y, width and height of each entry */
+    private float[] rects = new float[64 * 4];
+
+    private int size;
+
+    /**
+     * Records a sprite.
+     *
+     * @param tex
+     *            the texture or region to draw
+     * @param x
+     *            the left of the sprite
+     * @param y
+     *            the top of the sprite
+     * @param width
+     *            the width of the sprite
+     * @param height
+     *            the height of the sprite
+     */
+
+    public void draw(final ITexture tex, final float x, final float y,
+            final float width, final float height) {
+        final int i = next();
+        textures[i] = tex;
+        rects[i * 4] = x;
+        rects[i * 4 + 1] = y;
+        rects[i * 4 + 2] = width;
+        rects[i * 4 + 3] = height;
+    }
+
+    /**
+     * Records a drawable to draw from a camera position and animation time
+     * taken now.
+     *
+     * @param view
+     *            the drawable
+     * @param cameraX
+     *            the left of the camera
+     * @param cameraY
+     *            the top of the camera
+     * @param time
+     *            the animation time in milliseconds
+     */
+
+    public void draw(final ViewDrawable view, final double cameraX,
+            final double cameraY, final long time) {
+        final int i = next();
+        views[i] = view;
+        cameras[i * 2] = cameraX;
+        cameras[i * 2 + 1] = cameraY;
+        times[i] = time;
+    }
+
+    /**
+     * Records a drawable to draw from its live state when the snapshot is
+     * drawn. It must not read anything the simulation updates.
+     *
+     * @param drawable
+     *            the drawable
+     */
+
+    public void drawLive(final Drawable drawable) {
+        drawables[next()] = drawable;
+    }
+
+    private int next() {
+        if (size == textures.length) {
+            textures = Arrays.copyOf(textures, size * 2);
+            drawables = Arrays.copyOf(drawables, size * 2);
+            rects = Arrays.copyOf(rects, size * 2 * 4);
+            views = Arrays.copyOf(views, size * 2);
+            cameras = Arrays.copyOf(cameras, size * 2 * 2);
+            times = Arrays.copyOf(times, size * 2);
+        }
+        return size++;
+    }
+
+    /**
+     * Draws the recorded entries in order.
+     *
+     * @param batch
+     *            the batch to draw with
+     */
+
+    public void render(final SpriteBatch batch) {
+        for (int i = 0; i < size; i++) {
+            if (textures[i] != null) {
+                batch.draw(textures[i], rects[i * 4], rects[i * 4 + 1],
+                        rects[i * 4 + 2], rects[i * 4 + 3]);
+            } else if (views[i] != null) {
+                views[i].render(batch, cameras[i * 2], cameras[i * 2 + 1],
+                        times[i]);
+            } else {
+                drawables[i].render(batch);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets the recorded entries, keeping the buffers.
+     */
+
+    public void clear() {
+        Arrays.fill(textures, 0, size, null);
+        Arrays.fill(drawables, 0, size, null);
+        Arrays.fill(views, 0, size, null);
+        size = 0;
+    }
+
+}
@@ -1,9 +1,9 @@
 package org.jeromerodrigo.lucidengine.graphics;
 
-import org.jeromerodrigo.lucidengine.Drawable;
+import org.jeromerodrigo.lucidengine.Snapshotable;
 import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
 
-public class Sprite implements Drawable {
+public class Sprite implements Snapshotable {
 
     private TextureRegion texRegion;
 
@@ -35,4 +35,9 @@ public class Sprite implements Drawable {
     public void render(final SpriteBatch batch) {
         batch.draw(texRegion, xLoc, yLoc, width, height);
     }
+
+    @Override
+    public void snapshot(final RenderSnapshot snapshot) {
+        snapshot.draw(texRegion, xLoc, yLoc, width, height);
+    }
 }
@@ -1,21 +1,34 @@
 package org.jeromerodrigo.lucidengine.graphics;
 
 import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
 
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.jeromerodrigo.lucidengine.graphics.BatchStats.FlushReason;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexArray;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexBufferObject;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexData;
 import org.jeromerodrigo.lucidengine.graphics.glutils.VertexData;
 import org.jeromerodrigo.lucidengine.graphics.glutils.ShaderProgram;
 import org.jeromerodrigo.lucidengine.graphics.glutils.VertexArray;
 import org.jeromerodrigo.lucidengine.graphics.glutils.VertexAttribute;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexBufferObject;
 import org.jeromerodrigo.lucidengine.graphics.texture.ITexture;
 import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
 import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
 import org.jeromerodrigo.lucidengine.util.MatrixUtil;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL20;
 import org.lwjgl.util.vector.Matrix4f;
 
 /**
@@ -25,10 +38,12 @@ import org.lwjgl.util.vector.Matrix4f;
 public class SpriteBatch {
     public static final String U_TEXTURE = "u_texture";
     public static final String U_PROJ_VIEW = "u_projView";
+    public static final String U_TEXTURES = "u_textures";
 
     public static final String ATTR_COLOR = "Color";
     public static final String ATTR_POSITION = "Position";
     public static final String ATTR_TEXCOORD = "TexCoord";
+    public static final String ATTR_TEXINDEX = "TexIndex";
 
     public static final String DEFAULT_VERT_SHADER = "uniform mat4 "
             + U_PROJ_VIEW + ";\n" + "attribute vec4 " + ATTR_COLOR + ";\n"
@@ -45,12 +60,50 @@ public class SpriteBatch {
             + "	vec4 texColor = texture2D(" + U_TEXTURE + ", vTexCoord);\n"
             + "	gl_FragColor = vColor * texColor;\n" + "}";
 
+    /**
+     * The vertex layout: 2 floats of position, one float holding the color
+     * packed as ABGR bytes and 2 floats of texture coordinates (20 bytes).
+     */
     public static final List<VertexAttribute> ATTRIBUTES = Arrays.asList(
             new VertexAttribute(0, ATTR_POSITION, 2), new VertexAttribute(1,
-                    ATTR_COLOR, 4), new VertexAttribute(2, ATTR_TEXCOORD, 2));
+                    ATTR_COLOR, 4, GL_UNSIGNED_BYTE, true),
+            new VertexAttribute(2, ATTR_TEXCOORD, 2));
+
+    /** The location of the color attribute of {@link #ATTRIBUTES} */
+    private static final int COLOR_LOCATION = ATTRIBUTES.get(1).getLocation();
+
+    /**
+     * The vertex layout of a multi-texture batch: {@link #ATTRIBUTES} followed
+     * by one float holding the texture unit of the vertex (24 bytes).
+     */
+    public static final List<VertexAttribute> MULTI_TEXTURE_ATTRIBUTES;
+
+    static {
+        final List<VertexAttribute> attributes = new ArrayList<VertexAttribute>(
+                ATTRIBUTES);
+        attributes.add(new VertexAttribute(3, ATTR_TEXINDEX, 1));
+        MULTI_TEXTURE_ATTRIBUTES = attributes;
+    }
+
+    /**
+     * The largest batch size (in sprites) an indexed batch can address with
+     * unsigned short indices.
+     */
+    public static final int MAX_INDEXED_SIZE = 65536 / 4;
+
+    /**
+     * The number of low bits of a deferred command's sort key holding the
+     * texture id; the next 16 hold the shader id and the 16 above them the
+     * biased layer.
+     */
+    private static final int KEY_ID_BITS = 16;
+    private static final int KEY_BITS = 3 * KEY_ID_BITS;
+    private static final int KEY_ID_MASK = (1 << KEY_ID_BITS) - 1;
 
     static ShaderProgram defaultShader;
 
+    static final Map<Integer, ShaderProgram> MULTI_TEXTURE_SHADERS = new HashMap<Integer, ShaderProgram>();
+
     protected FloatBuffer buf16;
     protected Matrix4f projMatrix = new Matrix4f();
     protected Matrix4f viewMatrix = new Matrix4f();
@@ -61,37 +114,228 @@ public class SpriteBatch {
     protected Texture texture;
     protected ShaderProgram program;
 
+    /**
+     * The textures bound to each unit in multi-texture mode; a single-texture
+     * batch only uses {@link #texture}.
+     */
+    private final Texture[] textures;
+    private int textureCount;
+    /** The texture unit written into each vertex in multi-texture mode */
+    private float textureSlot;
+
     protected VertexData data;
+    protected IndexData indices;
+
+    /**
+     * Vertices are staged here and handed to {@link #data} in one bulk copy on
+     * flush, rather than one FloatBuffer.put per component.
+     */
+    private final float[] vertices;
+    /** The number of floats per vertex */
+    private final int vertexSize;
 
     private int idx;
     private final int maxIndex;
 
+    /** Whether each sprite is 4 vertices plus shared indices, or 6 vertices */
+    private final boolean indexed;
+    private final int verticesPerSprite;
+
     private final Color color = new Color();
+    /** The batch color packed with {@link Color#toFloatBits()} */
+    private float colorBits = color.toFloatBits();
     private boolean drawing = false;
 
+    private final BatchStats stats = new BatchStats();
+
+    /**
+     * Deferred mode: between begin() and end() every sprite is recorded as a
+     * command instead of being written to the batch, and the commands are
+     * sorted by (layer, shader, texture) before they are emitted.
+     */
+    private boolean deferred;
+    /** True while recorded commands are being emitted to the batch */
+    private boolean emitting;
+    private int layer;
+
+    /** The sort key of each recorded command */
+    private long[] commandKeys;
+    /** The four corners of each recorded command, {@link #vertexSize} floats each */
+    private float[] commandVertices;
+    private int commandCount;
+    private int[] sortOrder;
+    private int[] sortScratch;
+    private final int[] radixCounts = new int[256];
+
+    /** The textures and shaders referenced by the recorded commands, by id */
+    private Texture[] commandTextures;
+    private final Map<Texture, Integer> commandTextureIds = new IdentityHashMap<Texture, Integer>();
+    private int commandTextureCount;
+    private Texture lastCommandTexture;
+    private int lastCommandTextureId;
+    private ShaderProgram[] commandShaders;
+    private int commandShaderCount;
+
     public static ShaderProgram getDefaultShader() throws LWJGLException {
         return defaultShader == null ? (defaultShader = new ShaderProgram(
                 DEFAULT_VERT_SHADER, DEFAULT_FRAG_SHADER, ATTRIBUTES))
                 : defaultShader;
     }
 
+    /**
+     * Returns the default shader for a multi-texture batch sampling from the
+     * given number of texture units, shared across all sprite batches using
+     * that many units.
+     *
+     * @param textureUnits
+     *            the number of texture units
+     * @return the shader
+     * @throws LWJGLException
+     */
+    public static ShaderProgram getDefaultShader(final int textureUnits)
+            throws LWJGLException {
+        if (textureUnits == 1) {
+            return getDefaultShader();
+        }
+
+        ShaderProgram shader = MULTI_TEXTURE_SHADERS.get(textureUnits);
+
+        if (shader == null) {
+            shader = new ShaderProgram(createMultiTextureVertShader(),
+                    createMultiTextureFragShader(textureUnits),
+                    MULTI_TEXTURE_ATTRIBUTES);
+            MULTI_TEXTURE_SHADERS.put(textureUnits, shader);
+        }
+
+        return shader;
+    }
+
+    /**
+     * Creates the vertex shader source of a multi-texture batch.
+     *
+     * @return the shader source
+     */
+    public static String createMultiTextureVertShader() {
+        return "uniform mat4 " + U_PROJ_VIEW + ";\n" + "attribute vec4 "
+                + ATTR_COLOR + ";\n" + "attribute vec2 " + ATTR_TEXCOORD
+                + ";\n" + "attribute vec2 " + ATTR_POSITION + ";\n"
+                + "attribute float " + ATTR_TEXINDEX + ";\n"
+                + "varying vec4 vColor;\n" + "varying vec2 vTexCoord;\n"
+                + "varying float vTexIndex;\n" + "void main() {\n"
+                + "	vColor = " + ATTR_COLOR + ";\n" + "	vTexCoord = "
+                + ATTR_TEXCOORD + ";\n" + "	vTexIndex = " + ATTR_TEXINDEX
+                + ";\n" + "	gl_Position = " + U_PROJ_VIEW + " * vec4("
+                + ATTR_POSITION + ".xy, 0.0, 1.0);\n" + "}";
+    }
+
+    /**
+     * Creates the fragment shader source of a multi-texture batch. GLSL 1.10
+     * can only index sampler arrays with constants, so the texture unit is
+     * picked with a chain of comparisons.
+     *
+     * @param textureUnits
+     *            the number of texture units to sample from
+     * @return the shader source
+     */
+    public static String createMultiTextureFragShader(final int textureUnits) {
+        final StringBuilder src = new StringBuilder();
+        src.append("uniform sampler2D ").append(U_TEXTURES).append('[')
+                .append(textureUnits).append("];\n")
+                .append("varying vec4 vColor;\n")
+                .append("varying vec2 vTexCoord;\n")
+                .append("varying float vTexIndex;\n")
+                .append("void main() {\n").append("	vec4 texColor;\n");
+
+        for (int i = 0; i < textureUnits; i++) {
+            src.append('\t');
+            if (i > 0) {
+                src.append("else ");
+            }
+            if (i < textureUnits - 1) {
+                src.append("if (vTexIndex < ").append(i).append(".5) ");
+            }
+            src.append("texColor = texture2D(").append(U_TEXTURES)
+                    .append('[').append(i).append("], vTexCoord);\n");
+        }
+
+        return src.append("	gl_FragColor = vColor * texColor;\n")
+                .append('}').toString();
+    }
+
     public SpriteBatch(final ShaderProgram program) {
         this(program, 1000);
     }
 
     public SpriteBatch(final ShaderProgram program, final int size) {
-        this(program, 1000, true);
+        this(program, size, true);
     }
 
     public SpriteBatch(final ShaderProgram program, final int size,
             final boolean updateUniforms) {
-        this.program = program;
+        this(program, size, true, 1);
+    }
+
+    /**
+     * Creates a sprite batch that binds up to the given number of textures to
+     * separate texture units and only flushes once all of them are taken. Each
+     * vertex carries the unit of its texture, so the shader must declare the
+     * {@value #ATTR_TEXINDEX} attribute and the {@value #U_TEXTURES} sampler
+     * array; see {@link #getDefaultShader(int)}.
+     *
+     * @param program
+     *            the shader to render with
+     * @param size
+     *            the number of sprites drawn before the batch is flushed
+     * @param indexed
+     *            true to write 4 vertices per sprite and draw them through a
+     *            shared index buffer, false to write 6 vertices per sprite
+     * @param textureUnits
+     *            the number of texture units to use; 1 for a single-texture
+     *            batch
+     */
+    public SpriteBatch(final ShaderProgram program, final int size,
+            final boolean indexed, final int textureUnits) {
+        if (textureUnits < 1) {
+            throw new IllegalArgumentException(
+                    "a batch needs at least one texture unit");
+        }
+        if (textureUnits > 1
+                && textureUnits > GL11
+                        .glGetInteger(GL20.GL_MAX_TEXTURE_IMAGE_UNITS)) {
+            throw new IllegalArgumentException("only "
+                    + GL11.glGetInteger(GL20.GL_MAX_TEXTURE_IMAGE_UNITS)
+                    + " texture units are available");
+        }
+        if (indexed && size > MAX_INDEXED_SIZE) {
+            throw new IllegalArgumentException("an indexed batch can hold at most "
+                    + MAX_INDEXED_SIZE + " sprites");
+        }
 
-        // later we can do some abstraction to replace this with VBOs...
-        this.data = new VertexArray(size * 6, ATTRIBUTES);
+        this.program = program;
+        this.indexed = indexed;
+        verticesPerSprite = indexed ? 4 : 6;
+        textures = new Texture[textureUnits];
+
+        final List<VertexAttribute> attributes = textureUnits > 1 ? MULTI_TEXTURE_ATTRIBUTES
+                : ATTRIBUTES;
+        final boolean useBuffers = VertexBufferObject.isSupported();
+
+        // stream through a VBO where we can, client-side arrays otherwise
+        this.data = useBuffers ? new VertexBufferObject(size
+                * verticesPerSprite, attributes) : new VertexArray(size
+                * verticesPerSprite, attributes);
+
+        vertexSize = data.getTotalNumComponents();
+        vertices = new float[size * verticesPerSprite * vertexSize];
+
+        if (indexed) {
+            final short[] quadIndices = createQuadIndices(size);
+            indices = useBuffers ? new IndexBufferObject(quadIndices)
+                    : new IndexArray(quadIndices);
+        }
 
         // max indices before we need to flush the renderer
-        maxIndex = size * 6;
+        maxIndex = size * verticesPerSprite;
 
         // default size
         resize(Display.getWidth(), Display.getHeight());
@@ -112,6 +356,120 @@ public class SpriteBatch {
         this(1000);
     }
 
+    /**
+     * Creates a multi-texture sprite batch with the default shader for the
+     * given number of texture units.
+     *
+     * @param size
+     * @param textureUnits
+     * @throws LWJGLException
+     * @see #SpriteBatch(ShaderProgram, int, boolean, int)
+     */
+    public SpriteBatch(final int size, final int textureUnits)
+            throws LWJGLException {
+        this(getDefaultShader(textureUnits), size, true, textureUnits);
+    }
+
+    /**
+     * Builds the indices of two triangles per quad, for quads whose vertices
+     * are laid out top left, top right, bottom right, bottom left.
+     *
+     * @param size
+     *            the number of quads
+     * @return 6 indices per quad
+     */
+    public static short[] createQuadIndices(final int size) {
+        final short[] quadIndices = new short[size * 6];
+
+        for (int i = 0, v = 0; i < quadIndices.length; i += 6, v += 4) {
+            // top left, top right, bottom left
+            quadIndices[i] = (short) v;
+            quadIndices[i + 1] = (short) (v + 1);
+            quadIndices[i + 2] = (short) (v + 3);
+
+            // top right, bottom right, bottom left
+            quadIndices[i + 3] = (short) (v + 1);
+            quadIndices[i + 4] = (short) (v + 2);
+            quadIndices[i + 5] = (short) (v + 3);
+        }
+
+        return quadIndices;
+    }
+
+    /**
+     * Returns true if this batch writes 4 vertices per sprite and draws them
+     * through a shared index buffer.
+     *
+     * @return true if indexed
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Returns the number of texture units this batch spreads its textures
+     * over; 1 unless in multi-texture mode.
+     *
+     * @return the number of texture units
+     */
+    public int getTextureUnits() {
+        return textures.length;
+    }
+
+    /**
+     * Switches deferred mode on or off. In deferred mode the sprites drawn
+     * between begin() and end() are recorded rather than batched straight
+     * away; end() (or an explicit flush()) sorts them by layer, then shader,
+     * then texture and draws them in that order, so the batch only flushes
+     * when it has to. The sort is stable: sprites sharing layer, shader and
+     * texture keep the order they were drawn in, but sprites on the same layer
+     * with different textures may be reordered, so overlapping sprites whose
+     * order matters belong on different layers.
+     *
+     * @param deferred
+     *            true to record and sort draws, false to batch them in call
+     *            order
+     */
+    public void setDeferred(final boolean deferred) {
+        if (drawing) {
+            throw new IllegalStateException(
+                    "must not be drawing when changing deferred mode");
+        }
+        this.deferred = deferred;
+
+        if (deferred && commandKeys == null) {
+            final int capacity = maxIndex / verticesPerSprite;
+            commandKeys = new long[capacity];
+            commandVertices = new float[capacity * 4 * vertexSize];
+            sortOrder = new int[capacity];
+            sortScratch = new int[capacity];
+            commandTextures = new Texture[16];
+            commandShaders = new ShaderProgram[4];
+        }
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Sets the layer of the sprites drawn from now on in deferred mode; lower
+     * layers are drawn first. begin() resets the layer to 0.
+     *
+     * @param layer
+     *            the layer, within the range of a short
+     */
+    public void setLayer(final int layer) {
+        if (layer < Short.MIN_VALUE || layer > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("layer out of range: " + layer);
+        }
+        this.layer = layer;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
     public Matrix4f getViewMatrix() {
         return viewMatrix;
     }
@@ -139,6 +497,16 @@ public class SpriteBatch {
         updateUniforms();
     }
 
+    /**
+     * Gets this SpriteBatch's color. The returned object is live; change the
+     * color through {@link #setColor(float, float, float, float)} instead.
+     *
+     * @return the color
+     */
+    public Color getColor() {
+        return color;
+    }
+
     /**
      * Sets this SpriteBatch's color to the RGBA values of the given color
      * object.
@@ -165,6 +533,7 @@ public class SpriteBatch {
     public void setColor(final float r, final float g, final float b,
             final float a) {
         color.set(r, g, b, a);
+        colorBits = color.toFloatBits();
     }
 
     /**
@@ -201,6 +570,13 @@ public class SpriteBatch {
         // upload texcoord 0
         program.setUniformi(U_TEXTURE, 0);
 
+        // one sampler per texture unit in multi-texture mode
+        if (textures.length > 1) {
+            for (int i = 0; i < textures.length; i++) {
+                program.setUniformi(U_TEXTURES + "[" + i + "]", i);
+            }
+        }
+
         // reset strict mode
         ShaderProgram.setStrictMode(oldStrict);
     }
@@ -219,8 +595,9 @@ public class SpriteBatch {
             throw new IllegalArgumentException(
                     "shader cannot be null; use getDefaultShader instead");
         }
-        if (drawing) {
-            flush();
+        // a deferred batch records the shader with each command instead
+        if (drawing && !isRecording()) {
+            flush(FlushReason.SHADER_CHANGE);
         }
         this.program = program; // now switch the shader
         if (updateUniforms) {
@@ -245,6 +622,16 @@ public class SpriteBatch {
         return program;
     }
 
+    /**
+     * Gets the counters of the GL work this batch submits. They keep counting
+     * until reset; the engine never resets them.
+     *
+     * @return the live counters
+     */
+    public BatchStats getStats() {
+        return stats;
+    }
+
     public void begin() {
         if (drawing) {
             throw new IllegalStateException(
@@ -254,6 +641,8 @@ public class SpriteBatch {
         program.use();
         idx = 0;
         texture = null;
+        textureCount = 0;
+        layer = 0;
     }
 
     public void end() {
@@ -261,19 +650,94 @@ public class SpriteBatch {
             throw new IllegalStateException(
                     "must be drawing before calling end()");
         }
+        // emit while still drawing so shader switches flush properly
+        if (commandCount > 0) {
+            emitCommands();
+        }
         drawing = false;
-        flush();
+        flush(FlushReason.END);
     }
 
     public void flush() {
+        flush(FlushReason.EXPLICIT);
+    }
+
+    private void flush(final FlushReason reason) {
+        if (commandCount > 0 && !emitting) {
+            emitCommands();
+        }
         if (idx > 0) {
+            data.put(vertices, 0, idx * vertexSize);
             data.flip();
+            stats.flushed(reason);
             render();
             idx = 0;
             data.clear();
         }
     }
 
+    /**
+     * Releases the GL resources held by this batch's vertex data. The batch
+     * must not be used afterwards.
+     */
+    public void dispose() {
+        data.dispose();
+        if (indices != null) {
+            indices.dispose();
+        }
+    }
+
+    /**
+     * Draws quads that were built ahead of time, e.g. a cached chunk of a tile
+     * map, straight from their vertex data. Pending sprites are flushed first.
+     * The vertices must follow {@link #ATTRIBUTES} with 4 corners per quad in
+     * the order of {@link #createQuadIndices(int)}. Like sprites, the quads
+     * take the batch color, so a mesh can be faded or tinted without being
+     * rebuilt; the colors stored in its vertices are ignored.
+     *
+     * @param tex
+     *            the texture of every quad drawn
+     * @param mesh
+     *            the vertex data holding the quads
+     * @param quadIndices
+     *            indices as built by {@link #createQuadIndices(int)}, for at
+     *            least firstQuad + quadCount quads
+     * @param firstQuad
+     *            the first quad to draw
+     * @param quadCount
+     *            the number of quads to draw
+     */
+    public void drawMesh(final Texture tex, final VertexData mesh,
+            final IndexData quadIndices, final int firstQuad,
+            final int quadCount) {
+        if (!drawing) {
+            throw new IllegalStateException(
+                    "must be drawing before calling drawMesh()");
+        }
+        flush();
+
+        if (textures.length > 1) {
+            // the mesh has no texture unit attribute, so it samples unit 0
+            GL13.glActiveTexture(GL13.GL_TEXTURE0);
+            textureCount = 0;
+        }
+        tex.bind();
+        // the next sprite has to rebind its own texture
+        texture = null;
+
+        mesh.bind();
+        // a disabled attribute array reads the current constant value
+        GL20.glDisableVertexAttribArray(COLOR_LOCATION);
+        GL20.glVertexAttrib4f(COLOR_LOCATION, color.r, color.g, color.b,
+                color.a);
+        quadIndices.bind();
+        quadIndices.draw(GL_TRIANGLES, firstQuad * 6, quadCount * 6);
+        stats.meshDrawn(quadCount);
+        stats.texturesBound(1);
+        quadIndices.unbind();
+        mesh.unbind();
+    }
+
     public void drawRegion(final Texture tex, final float srcX,
             final float srcY, final float srcWidth, final float srcHeight,
             final float dstX, final float dstY) {
@@ -336,11 +800,11 @@ public class SpriteBatch {
             final float width, final float height, final float originX,
             final float originY, final float rotationRadians, final float u,
             final float v, final float u2, final float v2) {
-        checkFlush(tex);
-        final float r = color.r;
-        final float g = color.g;
-        final float b = color.b;
-        final float a = color.a;
+        final boolean record = isRecording();
+        if (!record) {
+            checkFlush(tex);
+        }
+        final float c = colorBits;
 
         float x1;
         float y1;
@@ -392,15 +856,33 @@ public class SpriteBatch {
             y4 = y + height;
         }
 
+        if (record) {
+            final int i = recordCommand(tex);
+            commandVertex(i, x1, y1, c, u, v);
+            commandVertex(i + vertexSize, x2, y2, c, u2, v);
+            commandVertex(i + vertexSize * 2, x3, y3, c, u2, v2);
+            commandVertex(i + vertexSize * 3, x4, y4, c, u, v2);
+            return;
+        }
+
+        if (indexed) {
+            // top left, top right, bottom right, bottom left
+            vertex(x1, y1, c, u, v);
+            vertex(x2, y2, c, u2, v);
+            vertex(x3, y3, c, u2, v2);
+            vertex(x4, y4, c, u, v2);
+            return;
+        }
+
         // top left, top right, bottom left
-        vertex(x1, y1, r, g, b, a, u, v);
-        vertex(x2, y2, r, g, b, a, u2, v);
-        vertex(x4, y4, r, g, b, a, u, v2);
+        vertex(x1, y1, c, u, v);
+        vertex(x2, y2, c, u2, v);
+        vertex(x4, y4, c, u, v2);
 
         // top right, bottom right, bottom left
-        vertex(x2, y2, r, g, b, a, u2, v);
-        vertex(x3, y3, r, g, b, a, u2, v2);
-        vertex(x4, y4, r, g, b, a, u, v2);
+        vertex(x2, y2, c, u2, v);
+        vertex(x3, y3, c, u2, v2);
+        vertex(x4, y4, c, u, v2);
     }
 
     public void draw(final ITexture tex, final float x, final float y,
@@ -413,28 +895,301 @@ public class SpriteBatch {
      * Renders a texture using custom vertex attributes; e.g. for different
      * vertex colours. This will ignore the current batch color and
      * "x/y translation", as well as the U/V coordinates of the given ITexture.
+     * The vertices must describe two triangles in the order top left, top
+     * right, bottom left, top right, bottom right, bottom left. An indexed
+     * batch only keeps the four distinct corners; prefer
+     * {@link #drawQuad(ITexture, float[], int)} there.
      *
      * @param tex
      *            the texture to use
      * @param vertices
-     *            an array of 6 vertices, each holding 8 attributes (total = 48
-     *            elements)
+     *            an array of 6 vertices, each holding 5 floats: x, y, the
+     *            color packed with {@link Color#toFloatBits()}, u and v
+     *            (total = 30 elements). A multi-texture batch expects a sixth
+     *            float per vertex, which it overwrites with the texture unit
      * @param offset
      *            the offset from the vertices array to start from
      */
     public void draw(final ITexture tex, final float[] vertices,
             final int offset) {
+        final int comps = vertexSize;
+
+        if (isRecording()) {
+            final int i = recordCommand(tex);
+            System.arraycopy(vertices, offset, commandVertices, i, comps * 2);
+            System.arraycopy(vertices, offset + comps * 4, commandVertices, i
+                    + comps * 2, comps);
+            System.arraycopy(vertices, offset + comps * 2, commandVertices, i
+                    + comps * 3, comps);
+            return;
+        }
+
+        checkFlush(tex);
+        final int dst = idx * comps;
+
+        if (indexed) {
+            System.arraycopy(vertices, offset, this.vertices, dst, comps * 2);
+            System.arraycopy(vertices, offset + comps * 4, this.vertices, dst
+                    + comps * 2, comps);
+            System.arraycopy(vertices, offset + comps * 2, this.vertices, dst
+                    + comps * 3, comps);
+            idx += 4;
+        } else {
+            System.arraycopy(vertices, offset, this.vertices, dst, comps * 6);
+            idx += 6;
+        }
+
+        if (textures.length > 1) {
+            applyTextureSlot(dst);
+        }
+    }
+
+    /**
+     * Renders a quad using custom vertex attributes, as with
+     * {@link #draw(ITexture, float[], int)} but with only the four corners.
+     *
+     * @param tex
+     *            the texture to use
+     * @param vertices
+     *            an array of 4 vertices in the order top left, top right,
+     *            bottom right, bottom left, each holding 5 floats as described
+     *            above (total = 20 elements)
+     * @param offset
+     *            the offset from the vertices array to start from
+     */
+    public void drawQuad(final ITexture tex, final float[] vertices,
+            final int offset) {
+        final int comps = vertexSize;
+
+        if (isRecording()) {
+            System.arraycopy(vertices, offset, commandVertices,
+                    recordCommand(tex), comps * 4);
+            return;
+        }
+
         checkFlush(tex);
-        data.put(vertices, offset, data.getTotalNumComponents() * 6);
-        idx += 6;
+        final int dst = idx * comps;
+
+        if (indexed) {
+            System.arraycopy(vertices, offset, this.vertices, dst, comps * 4);
+            idx += 4;
+        } else {
+            System.arraycopy(vertices, offset, this.vertices, dst, comps * 2);
+            System.arraycopy(vertices, offset + comps * 3, this.vertices, dst
+                    + comps * 2, comps);
+            System.arraycopy(vertices, offset + comps, this.vertices, dst
+                    + comps * 3, comps * 3);
+            idx += 6;
+        }
+
+        if (textures.length > 1) {
+            applyTextureSlot(dst);
+        }
     }
 
-    VertexData vertex(final float x, final float y, final float r,
-            final float g, final float b, final float a, final float u,
-            final float v) {
-        data.put(x).put(y).put(r).put(g).put(b).put(a).put(u).put(v);
+    /**
+     * Writes the current texture unit into the last component of every vertex
+     * staged from the given float offset onwards.
+     */
+    private void applyTextureSlot(final int from) {
+        final int end = idx * vertexSize;
+        for (int i = from + vertexSize - 1; i < end; i += vertexSize) {
+            vertices[i] = textureSlot;
+        }
+    }
+
+    void vertex(final float x, final float y, final float color,
+            final float u, final float v) {
+        final float[] verts = vertices;
+        final int i = idx * vertexSize;
+        verts[i] = x;
+        verts[i + 1] = y;
+        verts[i + 2] = color;
+        verts[i + 3] = u;
+        verts[i + 4] = v;
+        if (textures.length > 1) {
+            verts[i + 5] = textureSlot;
+        }
         idx++;
-        return data;
+    }
+
+    private boolean isRecording() {
+        return deferred && drawing && !emitting;
+    }
+
+    /**
+     * Records a command for the given sprite under the current layer and
+     * shader.
+     *
+     * @return the offset in {@link #commandVertices} to write its four
+     *         corners to
+     */
+    private int recordCommand(final ITexture sprite) {
+        if (sprite == null || sprite.getTexture() == null) {
+            throw new IllegalArgumentException("null texture");
+        }
+
+        if (commandCount == commandKeys.length) {
+            final int capacity = commandCount * 2;
+            commandKeys = Arrays.copyOf(commandKeys, capacity);
+            commandVertices = Arrays.copyOf(commandVertices, capacity * 4
+                    * vertexSize);
+            sortOrder = new int[capacity];
+            sortScratch = new int[capacity];
+        }
+
+        final long key = (long) (layer - Short.MIN_VALUE) << 2 * KEY_ID_BITS
+                | (long) shaderId(program) << KEY_ID_BITS
+                | textureId(sprite.getTexture());
+        commandKeys[commandCount] = key;
+
+        return commandCount++ * 4 * vertexSize;
+    }
+
+    private void commandVertex(final int i, final float x, final float y,
+            final float color, final float u, final float v) {
+        final float[] verts = commandVertices;
+        verts[i] = x;
+        verts[i + 1] = y;
+        verts[i + 2] = color;
+        verts[i + 3] = u;
+        verts[i + 4] = v;
+    }
+
+    private int textureId(final Texture tex) {
+        if (tex == lastCommandTexture) {
+            return lastCommandTextureId;
+        }
+
+        Integer id = commandTextureIds.get(tex);
+
+        if (id == null) {
+            if (commandTextureCount > KEY_ID_MASK) {
+                throw new IllegalStateException(
+                        "too many textures in one deferred batch");
+            }
+            if (commandTextureCount == commandTextures.length) {
+                commandTextures = Arrays.copyOf(commandTextures,
+                        commandTextureCount * 2);
+            }
+            id = commandTextureCount;
+            commandTextures[commandTextureCount++] = tex;
+            commandTextureIds.put(tex, id);
+        }
+
+        lastCommandTexture = tex;
+        lastCommandTextureId = id;
+        return id;
+    }
+
+    private int shaderId(final ShaderProgram shader) {
+        for (int i = 0; i < commandShaderCount; i++) {
+            if (commandShaders[i] == shader) {
+                return i;
+            }
+        }
+
+        if (commandShaderCount > KEY_ID_MASK) {
+            throw new IllegalStateException(
+                    "too many shaders in one deferred batch");
+        }
+        if (commandShaderCount == commandShaders.length) {
+            commandShaders = Arrays.copyOf(commandShaders,
+                    commandShaderCount * 2);
+        }
+        commandShaders[commandShaderCount] = shader;
+        return commandShaderCount++;
+    }
+
+    /**
+     * Sorts the recorded commands and draws them through the regular batching
+     * path, switching shaders as needed and restoring the current one
+     * afterwards.
+     */
+    private void emitCommands() {
+        emitting = true;
+
+        final ShaderProgram current = program;
+        final int[] order = sortCommands();
+        final int quadSize = 4 * vertexSize;
+
+        for (int i = 0; i < commandCount; i++) {
+            final int cmd = order[i];
+            final long key = commandKeys[cmd];
+            final ShaderProgram shader = commandShaders[(int) (key >>> KEY_ID_BITS)
+                    & KEY_ID_MASK];
+
+            if (shader != program) {
+                setShader(shader);
+            }
+
+            drawQuad(commandTextures[(int) key & KEY_ID_MASK],
+                    commandVertices, cmd * quadSize);
+        }
+
+        if (program != current) {
+            setShader(current);
+        }
+
+        // drop the references so textures and shaders can be collected
+        Arrays.fill(commandTextures, 0, commandTextureCount, null);
+        Arrays.fill(commandShaders, 0, commandShaderCount, null);
+        commandTextureIds.clear();
+        commandTextureCount = 0;
+        commandShaderCount = 0;
+        lastCommandTexture = null;
+        commandCount = 0;
+
+        emitting = false;
+    }
+
+    /**
+     * Sorts the recorded commands by key with a least significant digit radix
+     * sort, one byte per pass. Passes where every key has the same byte are
+     * skipped, which is most of them when few layers, shaders and textures are
+     * in use. Being stable, it keeps commands with equal keys in call order.
+     *
+     * @return the command indices in sorted order
+     */
+    private int[] sortCommands() {
+        final int n = commandCount;
+        final long[] keys = commandKeys;
+        final int[] counts = radixCounts;
+        int[] src = sortOrder;
+        int[] dst = sortScratch;
+
+        for (int i = 0; i < n; i++) {
+            src[i] = i;
+        }
+
+        for (int shift = 0; shift < KEY_BITS; shift += 8) {
+            Arrays.fill(counts, 0);
+
+            for (int i = 0; i < n; i++) {
+                counts[(int) (keys[i] >>> shift) & 0xFF]++;
+            }
+
+            if (counts[(int) (keys[0] >>> shift) & 0xFF] == n) {
+                continue;
+            }
+
+            for (int b = 0, sum = 0; b < counts.length; b++) {
+                final int count = counts[b];
+                counts[b] = sum;
+                sum += count;
+            }
+
+            for (int i = 0; i < n; i++) {
+                final int cmd = src[i];
+                dst[counts[(int) (keys[cmd] >>> shift) & 0xFF]++] = cmd;
+            }
+
+            final int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+
+        return src;
     }
 
     protected void checkFlush(final ITexture sprite) {
@@ -442,22 +1197,75 @@ public class SpriteBatch {
             throw new IllegalArgumentException("null texture");
         }
 
+        if (textures.length > 1) {
+            checkFlushMultiTexture(sprite.getTexture());
+            return;
+        }
+
         // we need to bind a different texture/type. this is
-        // for convenience; ideally the user should order
-        // their rendering wisely to minimize texture binds
-        if (sprite.getTexture() != this.texture || idx >= maxIndex) {
+        // for convenience; deferred mode orders the rendering
+        // to minimize texture binds
+        if (idx >= maxIndex) {
+            flush(FlushReason.BUFFER_FULL);
+            this.texture = sprite.getTexture();
+        } else if (sprite.getTexture() != this.texture) {
             // apply the last texture
-            flush();
+            flush(FlushReason.TEXTURE_CHANGE);
             this.texture = sprite.getTexture();
         }
     }
 
+    /**
+     * Finds or assigns the texture unit of the given texture, flushing only
+     * when the batch is full or every unit already holds another texture.
+     */
+    private void checkFlushMultiTexture(final Texture tex) {
+        if (idx >= maxIndex) {
+            // the bound textures stay valid for the next batch
+            flush(FlushReason.BUFFER_FULL);
+        }
+
+        for (int i = 0; i < textureCount; i++) {
+            if (textures[i] == tex) {
+                textureSlot = i;
+                return;
+            }
+        }
+
+        if (textureCount == textures.length) {
+            flush(FlushReason.TEXTURE_CHANGE);
+            textureCount = 0;
+        }
+
+        textures[textureCount] = tex;
+        textureSlot = textureCount++;
+        this.texture = tex;
+    }
+
     private void render() {
-        if (texture != null) {
+        if (textures.length > 1) {
+            // bind the highest unit first so unit 0 is left active
+            for (int i = textureCount - 1; i >= 0; i--) {
+                GL13.glActiveTexture(GL13.GL_TEXTURE0 + i);
+                textures[i].bind();
+            }
+            stats.texturesBound(textureCount);
+        } else if (texture != null) {
             texture.bind();
+            stats.texturesBound(1);
         }
         data.bind();
-        data.draw(GL_TRIANGLES, 0, idx);
+
+        if (indexed) {
+            indices.bind();
+            indices.draw(GL_TRIANGLES, 0, idx / 4 * 6);
+            indices.unbind();
+        } else {
+            data.draw(GL_TRIANGLES, 0, idx);
+        }
+
+        stats.rendered(idx / verticesPerSprite, idx);
+
         data.unbind();
     }
 }
@@ -0,0 +1,60 @@
+package org.jeromerodrigo.lucidengine.graphics.glutils;
+
+import static org.lwjgl.opengl.GL11.glDrawElements;
+
+import java.nio.ShortBuffer;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A client-side array of unsigned short indices, used alongside a VertexArray
+ * when vertex buffer objects are not available.
+ */
+public class IndexArray implements IndexData {
+
+    private transient final ShortBuffer buffer;
+
+    /**
+     * Constructs an index array holding a copy of the given indices
+     * @param indices the indices, each referring to a vertex of the bound
+     *  vertex data
+     */
+    public IndexArray(final short[] indices) {
+        buffer = BufferUtils.createShortBuffer(indices.length);
+        buffer.put(indices);
+        buffer.flip();
+    }
+
+    @Override
+    public ShortBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int getIndexCount() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public void bind() {
+        // client-side indices are passed on draw()
+    }
+
+    @Override
+    public void draw(final int geom, final int first, final int count) {
+        buffer.limit(first + count);
+        buffer.position(first);
+        glDrawElements(geom, buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void unbind() {
+        // nothing was bound
+    }
+
+    @Override
+    public void dispose() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,86 @@
+package org.jeromerodrigo.lucidengine.graphics.glutils;
+
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_SHORT;
+import static org.lwjgl.opengl.GL11.glDrawElements;
+import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+
+import java.nio.ShortBuffer;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A static GL_ELEMENT_ARRAY_BUFFER of unsigned short indices. The indices are
+ * uploaded once on construction and never change afterwards.
+ */
+public class IndexBufferObject implements IndexData {
+
+    private transient final ShortBuffer buffer;
+    private transient int bufferId;
+
+    /**
+     * Constructs an index buffer and uploads the given indices
+     * @param indices the indices, each referring to a vertex of the bound
+     *  vertex data
+     */
+    public IndexBufferObject(final short[] indices) {
+        buffer = BufferUtils.createShortBuffer(indices.length);
+        buffer.put(indices);
+        buffer.flip();
+
+        bufferId = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, bufferId);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, buffer, GL_STATIC_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public ShortBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int getIndexCount() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns the OpenGL handle of the GPU buffer
+     * @return the buffer handle
+     */
+    public int getID() {
+        return bufferId;
+    }
+
+    @Override
+    public void bind() {
+        if (bufferId == 0) {
+            throw new IllegalStateException(
+                    "trying to bind an index buffer that was disposed");
+        }
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, bufferId);
+    }
+
+    @Override
+    public void draw(final int geom, final int first, final int count) {
+        // 2 bytes per unsigned short
+        glDrawElements(geom, count, GL_UNSIGNED_SHORT, first * 2L);
+    }
+
+    @Override
+    public void unbind() {
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void dispose() {
+        if (bufferId != 0) {
+            glDeleteBuffers(bufferId);
+            bufferId = 0;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.jeromerodrigo.lucidengine.graphics.glutils;
+
+import java.nio.ShortBuffer;
+
+public interface IndexData {
+
+    void bind();
+    void draw(int geom, int first, int count);
+    void unbind();
+    void dispose();
+
+    ShortBuffer getBuffer();
+
+    int getIndexCount();
+
+}
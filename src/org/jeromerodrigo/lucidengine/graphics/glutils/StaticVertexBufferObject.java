@@ -0,0 +1,200 @@
+package org.jeromerodrigo.lucidengine.graphics.glutils;
+
+import static org.lwjgl.opengl.GL11.glDrawArrays;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * A VertexData implementation for geometry that rarely or never changes. The
+ * vertices are uploaded to a GL_STATIC_DRAW buffer on the first bind after
+ * they were written, and every later bind only points the attributes at the
+ * GPU copy. The client-side staging buffer is let go once uploaded, so the
+ * vertices don't take memory twice; writing to the object again stages them
+ * in a new one.
+ */
+public class StaticVertexBufferObject implements VertexData {
+
+    protected transient VertexAttribute[] attributes;
+
+    private transient int totalComponents;
+    private transient final int stride;
+    /** Null once the staged vertices were uploaded */
+    private transient FloatBuffer buffer;
+    private transient final int vertCount;
+    private transient int bufferId;
+
+    /** Whether the staging buffer changed since the last upload */
+    private transient boolean dirty;
+
+    /**
+     * Constructs a static vertex buffer object
+     * @param vertCount the number of VERTICES; e.g. 3 verts to make a triangle,
+     *  regardless of number of attributes
+     * @param attributes a list of attributes per vertex
+     */
+    public StaticVertexBufferObject(final int vertCount,
+            final VertexAttribute... attributes) {
+        this.attributes = attributes;
+        int vertexBytes = 0;
+        for (final VertexAttribute attribute : attributes) {
+            vertexBytes += attribute.getSizeInBytes();
+        }
+        if (vertexBytes % 4 != 0) {
+            throw new IllegalArgumentException(
+                    "vertex size must be a multiple of 4 bytes");
+        }
+        stride = vertexBytes;
+        // packed attributes still take whole float slots in the buffer
+        totalComponents = vertexBytes / 4;
+        this.vertCount = vertCount;
+
+        this.buffer = BufferUtils.createFloatBuffer(vertCount * totalComponents);
+
+        bufferId = glGenBuffers();
+    }
+
+    public StaticVertexBufferObject(final int vertCount,
+            final List<VertexAttribute> attributes) {
+        this(vertCount, attributes.toArray(new VertexAttribute[attributes
+                .size()]));
+    }
+
+    @Override
+    public StaticVertexBufferObject flip() {
+        staging().flip();
+        dirty = true;
+        return this;
+    }
+
+    @Override
+    public StaticVertexBufferObject clear() {
+        staging().clear();
+        return this;
+    }
+
+    @Override
+    public StaticVertexBufferObject put(final float[] verts, final int offset,
+            final int length) {
+        staging().put(verts, offset, length);
+        return this;
+    }
+
+    /**
+     * Puts a value into the staging buffer
+     */
+
+    @Override
+    public StaticVertexBufferObject put(final float vertex) {
+        staging().put(vertex);
+        return this;
+    }
+
+    /**
+     * Returns the client-side staging buffer, allocating a new one if the
+     * last one was uploaded
+     * @return staging buffer
+     */
+
+    @Override
+    public FloatBuffer getBuffer() {
+        return staging();
+    }
+
+    private FloatBuffer staging() {
+        if (buffer == null) {
+            buffer = BufferUtils.createFloatBuffer(vertCount * totalComponents);
+        }
+        return buffer;
+    }
+
+    @Override
+    public int getTotalNumComponents() {
+        return totalComponents;
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertCount;
+    }
+
+    /**
+     * Returns the OpenGL handle of the GPU buffer
+     * @return the buffer handle
+     */
+    public int getID() {
+        return bufferId;
+    }
+
+    /**
+     * Binds the GPU buffer, uploading the staged vertices first if they were
+     * flipped since the last upload and dropping the staging buffer.
+     */
+
+    @Override
+    public void bind() {
+        if (bufferId == 0) {
+            throw new IllegalStateException(
+                    "trying to bind a vertex buffer that was disposed");
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, bufferId);
+
+        if (dirty) {
+            glBufferData(GL_ARRAY_BUFFER, buffer, GL_STATIC_DRAW);
+            buffer = null;
+            dirty = false;
+        }
+
+        int offset = 0;
+
+        for (final VertexAttribute attribute : attributes) {
+            glEnableVertexAttribArray(attribute.getLocation());
+            glVertexAttribPointer(attribute.getLocation(),
+                    attribute.getNumComponents(), attribute.getType(),
+                    attribute.isNormalized(), stride, offset);
+            offset += attribute.getSizeInBytes();
+        }
+    }
+
+    @Override
+    public void draw(final int geom, final int first, final int count) {
+        glDrawArrays(geom, first, count);
+    }
+
+    /**
+     * Unbinds the vertex buffer
+     */
+
+    @Override
+    public void unbind() {
+        for (final VertexAttribute attribute : attributes) {
+            glDisableVertexAttribArray(attribute.getLocation());
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Releases the GPU buffer
+     */
+
+    @Override
+    public void dispose() {
+        if (bufferId != 0) {
+            glDeleteBuffers(bufferId);
+            bufferId = 0;
+        }
+        buffer = null;
+    }
+}
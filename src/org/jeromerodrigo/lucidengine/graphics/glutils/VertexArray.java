@@ -1,10 +1,13 @@
 package org.jeromerodrigo.lucidengine.graphics.glutils;
 
+import static org.lwjgl.opengl.GL11.GL_BYTE;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
 import static org.lwjgl.opengl.GL11.glDrawArrays;
 import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.List;
 
@@ -15,6 +18,8 @@ public class VertexArray implements VertexData {
     protected transient VertexAttribute[] attributes;
 
     private transient int totalComponents;
+    private transient final int stride;
+    private transient final ByteBuffer bytes;
     private transient final FloatBuffer buffer;
     private transient final int vertCount;
 
@@ -26,13 +31,22 @@ public class VertexArray implements VertexData {
      */
     public VertexArray(final int vertCount, final VertexAttribute ... attributes) {
         this.attributes = attributes;
+        int vertexBytes = 0;
         for (final VertexAttribute attribute : attributes) {
-            totalComponents += attribute.getNumComponents();
+            vertexBytes += attribute.getSizeInBytes();
         }
+        if (vertexBytes % 4 != 0) {
+            throw new IllegalArgumentException(
+                    "vertex size must be a multiple of 4 bytes");
+        }
+        stride = vertexBytes;
+        // packed attributes still take whole float slots in the buffer
+        totalComponents = vertexBytes / 4;
         this.vertCount = vertCount;
 
-        //our buffer which holds our data
-        this.buffer = BufferUtils.createFloatBuffer(vertCount * totalComponents);
+        //our buffer which holds our data; the float view is used for writing
+        this.bytes = BufferUtils.createByteBuffer(vertCount * stride);
+        this.buffer = bytes.asFloatBuffer();
     }
 
     public VertexArray(final int vertCount, final List<VertexAttribute> attributes) {
@@ -78,7 +92,7 @@ public class VertexArray implements VertexData {
     }
 
     /**
-     * Gets the total number of components of the vertex array
+     * Gets the number of floats each vertex occupies in the vertex array
      */
 
     @Override
@@ -102,15 +116,23 @@ public class VertexArray implements VertexData {
     @Override
     public void bind() {
         int offset = 0;
-        //4 bytes per float
-        final int stride = totalComponents * 4;
 
         for (final VertexAttribute attribute : attributes) {
-            buffer.position(offset);
             glEnableVertexAttribArray(attribute.getLocation());
-            glVertexAttribPointer(attribute.getLocation(), attribute.getNumComponents(),
-                    false, stride, buffer);
-            offset += attribute.getNumComponents();
+            if (attribute.getType() == GL_FLOAT) {
+                //4 bytes per float
+                buffer.position(offset / 4);
+                glVertexAttribPointer(attribute.getLocation(),
+                        attribute.getNumComponents(), attribute.isNormalized(),
+                        stride, buffer);
+            } else {
+                bytes.position(offset);
+                glVertexAttribPointer(attribute.getLocation(),
+                        attribute.getNumComponents(),
+                        attribute.getType() != GL_BYTE,
+                        attribute.isNormalized(), stride, bytes);
+            }
+            offset += attribute.getSizeInBytes();
         }
     }
 
@@ -129,4 +151,13 @@ public class VertexArray implements VertexData {
             glDisableVertexAttribArray(attribute.getLocation());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Client-side arrays hold no GL resources
+     */
+
+    @Override
+    public void dispose() {
+        // nothing to release
+    }
+}
@@ -1,16 +1,48 @@
 package org.jeromerodrigo.lucidengine.graphics.glutils;
 
+import static org.lwjgl.opengl.GL11.GL_BYTE;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+
 public class VertexAttribute {
 
     private transient final String name;
     private transient final int numComponents;
     private transient final int location;
+    private transient final int type;
+    private transient final boolean normalized;
 
     public VertexAttribute(final int location, final String name,
             final int numComponents) {
+        this(location, name, numComponents, GL_FLOAT, false);
+    }
+
+    /**
+     * Creates a vertex attribute of the given component type.
+     *
+     * @param location
+     *            the attribute location
+     * @param name
+     *            the attribute name in the shader
+     * @param numComponents
+     *            the number of components, e.g. 4 for an RGBA color
+     * @param type
+     *            the component type; GL_FLOAT, GL_UNSIGNED_BYTE or GL_BYTE
+     * @param normalized
+     *            whether integer components are mapped to [0, 1] (or [-1, 1]
+     *            for signed types) when read by the shader
+     */
+    public VertexAttribute(final int location, final String name,
+            final int numComponents, final int type, final boolean normalized) {
+        if (type != GL_FLOAT && type != GL_UNSIGNED_BYTE && type != GL_BYTE) {
+            throw new IllegalArgumentException("unsupported component type: "
+                    + type);
+        }
         this.location = location;
         this.name = name;
         this.numComponents = numComponents;
+        this.type = type;
+        this.normalized = normalized;
     }
 
     public final String getName() {
@@ -25,8 +57,25 @@ public class VertexAttribute {
         return location;
     }
 
+    public final int getType() {
+        return type;
+    }
+
+    public final boolean isNormalized() {
+        return normalized;
+    }
+
+    /**
+     * Gets the number of bytes this attribute occupies in a vertex
+     *
+     * @return the size in bytes
+     */
+    public final int getSizeInBytes() {
+        return type == GL_FLOAT ? numComponents * 4 : numComponents;
+    }
+
     @Override
     public String toString() {
         return name +" (" + numComponents+")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,268 @@
+package org.jeromerodrigo.lucidengine.graphics.glutils;
+
+import static org.lwjgl.opengl.GL11.glDrawArrays;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL15.glUnmapBuffer;
+import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.GL_MAP_INVALIDATE_RANGE_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_UNSYNCHRONIZED_BIT;
+import static org.lwjgl.opengl.GL30.GL_MAP_WRITE_BIT;
+import static org.lwjgl.opengl.GL30.glMapBufferRange;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * A VertexData implementation that streams its vertices into a GPU-side vertex
+ * buffer object. The GPU buffer is treated as a ring of batch-sized ranges:
+ * every flush writes into a fresh range, and once the ring is exhausted the
+ * buffer storage is orphaned so the driver can hand us new memory without
+ * waiting on draws that are still in flight.
+ *
+ * When the context supports glMapBufferRange the range is written through an
+ * unsynchronized mapping, otherwise glBufferSubData is used.
+ */
+public class VertexBufferObject implements VertexData {
+
+    /**
+     * The number of batch-sized ranges held by the GPU buffer before it is
+     * orphaned.
+     */
+    public static final int DEFAULT_RING_SIZE = 3;
+
+    protected transient VertexAttribute[] attributes;
+
+    private transient int totalComponents;
+    private transient final int stride;
+    private transient final FloatBuffer buffer;
+    private transient final int vertCount;
+
+    private transient final int capacityBytes;
+    private transient final boolean mapRange;
+    private transient int bufferId;
+
+    /** The byte offset at which the next batch will be written. */
+    private transient int writeOffset;
+
+    /** The byte offset of the batch that is currently bound. */
+    private transient int drawOffset;
+
+    private transient ByteBuffer mapped;
+
+    /**
+     * Returns true if the context supports vertex buffer objects (OpenGL 1.5).
+     *
+     * @return true if VBOs are supported
+     */
+    public static boolean isSupported() {
+        final ContextCapabilities c = GLContext.getCapabilities();
+        return c != null && c.OpenGL15;
+    }
+
+    /**
+     * Constructs a vertex buffer object
+     * @param vertCount the number of VERTICES per batch; e.g. 3 verts to make a
+     *  triangle, regardless of number of attributes
+     * @param attributes a list of attributes per vertex
+     */
+    public VertexBufferObject(final int vertCount,
+            final VertexAttribute... attributes) {
+        this(vertCount, DEFAULT_RING_SIZE, attributes);
+    }
+
+    public VertexBufferObject(final int vertCount,
+            final List<VertexAttribute> attributes) {
+        this(vertCount, attributes.toArray(new VertexAttribute[attributes
+                .size()]));
+    }
+
+    /**
+     * Constructs a vertex buffer object
+     * @param vertCount the number of VERTICES per batch
+     * @param ringSize the number of batches the GPU buffer can hold before
+     *  it is orphaned
+     * @param attributes a list of attributes per vertex
+     */
+    public VertexBufferObject(final int vertCount, final int ringSize,
+            final VertexAttribute... attributes) {
+        if (ringSize < 1) {
+            throw new IllegalArgumentException("ring size must be at least 1");
+        }
+
+        this.attributes = attributes;
+        int vertexBytes = 0;
+        for (final VertexAttribute attribute : attributes) {
+            vertexBytes += attribute.getSizeInBytes();
+        }
+        if (vertexBytes % 4 != 0) {
+            throw new IllegalArgumentException(
+                    "vertex size must be a multiple of 4 bytes");
+        }
+        stride = vertexBytes;
+        // packed attributes still take whole float slots in the buffer
+        totalComponents = vertexBytes / 4;
+        this.vertCount = vertCount;
+
+        // client-side staging area, uploaded on bind()
+        this.buffer = BufferUtils.createFloatBuffer(vertCount * totalComponents);
+
+        capacityBytes = vertCount * stride * ringSize;
+
+        final ContextCapabilities c = GLContext.getCapabilities();
+        mapRange = c.OpenGL30;
+
+        bufferId = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, bufferId);
+        glBufferData(GL_ARRAY_BUFFER, capacityBytes, GL_STREAM_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public VertexBufferObject flip() {
+        buffer.flip();
+        return this;
+    }
+
+    @Override
+    public VertexBufferObject clear() {
+        buffer.clear();
+        return this;
+    }
+
+    @Override
+    public VertexBufferObject put(final float[] verts, final int offset,
+            final int length) {
+        buffer.put(verts, offset, length);
+        return this;
+    }
+
+    /**
+     * Puts a value into the staging buffer
+     */
+
+    @Override
+    public VertexBufferObject put(final float vertex) {
+        buffer.put(vertex);
+        return this;
+    }
+
+    /**
+     * Returns the client-side staging buffer
+     * @return staging buffer
+     */
+
+    @Override
+    public FloatBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int getTotalNumComponents() {
+        return totalComponents;
+    }
+
+    @Override
+    public int getVertexCount() {
+        return vertCount;
+    }
+
+    /**
+     * Returns the OpenGL handle of the GPU buffer
+     * @return the buffer handle
+     */
+    public int getID() {
+        return bufferId;
+    }
+
+    /**
+     * Uploads the staged vertices into the next free range of the GPU buffer
+     * and points the vertex attributes at it. The staging buffer must have been
+     * flipped beforehand.
+     */
+
+    @Override
+    public void bind() {
+        if (bufferId == 0) {
+            throw new IllegalStateException(
+                    "trying to bind a vertex buffer that was disposed");
+        }
+
+        final int bytes = buffer.remaining() * 4;
+
+        glBindBuffer(GL_ARRAY_BUFFER, bufferId);
+
+        if (writeOffset + bytes > capacityBytes) {
+            // orphan the storage; in-flight draws keep the old block
+            glBufferData(GL_ARRAY_BUFFER, capacityBytes, GL_STREAM_DRAW);
+            writeOffset = 0;
+        }
+
+        if (mapRange && bytes > 0) {
+            // nothing in flight can be reading this range, skip the sync
+            mapped = glMapBufferRange(GL_ARRAY_BUFFER, writeOffset, bytes,
+                    GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_RANGE_BIT
+                    | GL_MAP_UNSYNCHRONIZED_BIT, mapped);
+            mapped.order(ByteOrder.nativeOrder()).asFloatBuffer().put(buffer);
+            glUnmapBuffer(GL_ARRAY_BUFFER);
+        } else {
+            glBufferSubData(GL_ARRAY_BUFFER, writeOffset, buffer);
+        }
+        buffer.rewind();
+
+        drawOffset = writeOffset;
+        writeOffset += bytes;
+
+        int offset = drawOffset;
+
+        for (final VertexAttribute attribute : attributes) {
+            glEnableVertexAttribArray(attribute.getLocation());
+            glVertexAttribPointer(attribute.getLocation(),
+                    attribute.getNumComponents(), attribute.getType(),
+                    attribute.isNormalized(), stride, offset);
+            offset += attribute.getSizeInBytes();
+        }
+    }
+
+    @Override
+    public void draw(final int geom, final int first, final int count) {
+        glDrawArrays(geom, first, count);
+    }
+
+    /**
+     * Unbinds the vertex buffer
+     */
+
+    @Override
+    public void unbind() {
+        for (final VertexAttribute attribute : attributes) {
+            glDisableVertexAttribArray(attribute.getLocation());
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Releases the GPU buffer
+     */
+
+    @Override
+    public void dispose() {
+        if (bufferId != 0) {
+            glDeleteBuffers(bufferId);
+            bufferId = 0;
+        }
+    }
+}
@@ -7,6 +7,7 @@ public interface VertexData {
     void bind();
     void draw(int geom, int first, int count);
     void unbind();
+    void dispose();
 
     VertexData clear();
     VertexData flip();
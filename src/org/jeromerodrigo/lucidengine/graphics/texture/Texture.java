@@ -28,7 +28,6 @@ import static org.lwjgl.opengl.GL11.glTexSubImage2D;
 import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
@@ -36,8 +35,6 @@ import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.EXTFramebufferObject;
 import org.lwjgl.opengl.GLContext;
 
-import de.matthiasmann.twl.utils.PNGDecoder;
-
 /**
  * This is a minimal implementation of an OpenGL texture loader. A more complete
  * implementation would support multiple filetypes (JPEG, BMP, TGA, etc), allow
@@ -85,6 +82,25 @@ public final class Texture implements ITexture {
         // does nothing... for subclasses
     }
 
+    /**
+     * Creates a texture of the given size without an OpenGL texture behind
+     * it, so it needs no GL context, e.g. to stand in for a real one where
+     * textures are only compared or measured. It is never valid and can't be
+     * bound.
+     *
+     * @param width
+     *            the width of the texture
+     * @param height
+     *            the height of the texture
+     * @return the texture
+     */
+    public static Texture createPlaceholder(final int width, final int height) {
+        final Texture texture = new Texture();
+        texture.width = width;
+        texture.height = height;
+        return texture;
+    }
+
     /**
      * Creates an empty OpenGL texture with the given width and height, where
      * each pixel is transparent black (0, 0, 0, 0) and the wrap mode is
@@ -135,6 +151,27 @@ public final class Texture implements ITexture {
      */
     public Texture(final int width, final int height, final int filter,
             final int wrap) {
+        this(width, height, filter, wrap, BufferUtils.createByteBuffer(width
+                * height * 4));
+    }
+
+    /**
+     * Creates an OpenGL texture with the given width and height from RGBA
+     * pixel data.
+     * 
+     * @param width
+     *            the width of the texture
+     * @param height
+     *            the height of the texture
+     * @param filter
+     *            the filter to use
+     * @param wrap
+     *            the wrap mode to use
+     * @param pixels
+     *            the RGBA pixels, row by row from the top
+     */
+    public Texture(final int width, final int height, final int filter,
+            final int wrap, final ByteBuffer pixels) {
         glEnable(getTarget());
         id = glGenTextures();
         this.width = width;
@@ -144,8 +181,7 @@ public final class Texture implements ITexture {
         setFilter(filter);
         setWrap(wrap);
 
-        final ByteBuffer buf = BufferUtils.createByteBuffer(width * height * 4);
-        upload(GL_RGBA, buf);
+        upload(GL_RGBA, pixels);
     }
 
     public Texture(final URL pngRef) throws IOException {
@@ -169,40 +205,40 @@ public final class Texture implements ITexture {
     public Texture(final URL pngRef, final int minFilter, final int magFilter,
             final int wrap, final boolean genMipmap) throws IOException {
         // TODO: npot check
-        InputStream input = null;
-        try {
-            input = pngRef.openStream();
-            final PNGDecoder dec = new PNGDecoder(input);
-
-            width = dec.getWidth();
-            height = dec.getHeight();
-            final ByteBuffer buf = BufferUtils.createByteBuffer(4 * width
-                    * height);
-            dec.decode(buf, width * 4, PNGDecoder.Format.RGBA);
-            buf.flip();
-
-            glEnable(getTarget());
-            id = glGenTextures();
-
-            bind();
-            setFilter(minFilter, magFilter);
-            setWrap(wrap);
-            upload(GL_RGBA, buf);
-
-            // use EXT since we are targeting 2.0+
-            if (genMipmap) {
-                EXTFramebufferObject.glGenerateMipmapEXT(getTarget());
-            }
-        } finally {
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (final IOException e) {
-                }
-            }
+        final TextureData data = TextureData.decode(pngRef);
+
+        width = data.width;
+        height = data.height;
+
+        glEnable(getTarget());
+        id = glGenTextures();
+
+        bind();
+        setFilter(minFilter, magFilter);
+        setWrap(wrap);
+        upload(GL_RGBA, data.getPixels());
+
+        // use EXT since we are targeting 2.0+
+        if (genMipmap) {
+            EXTFramebufferObject.glGenerateMipmapEXT(getTarget());
         }
     }
 
+    /**
+     * Creates an OpenGL texture from an image decoded ahead of time, e.g. on a
+     * loader thread.
+     * 
+     * @param data
+     *            the decoded image
+     * @param filter
+     *            the filter to use
+     * @param wrap
+     *            the wrap mode to use
+     */
+    public Texture(final TextureData data, final int filter, final int wrap) {
+        this(data.width, data.height, filter, wrap, data.getPixels());
+    }
+
     private int getTarget() {
         return GL_TEXTURE_2D;
     }
@@ -0,0 +1,204 @@
+package org.jeromerodrigo.lucidengine.graphics.texture;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A set of textures ("pages") holding many images packed together by a
+ * {@link TexturePacker}. Sprites drawn from the same page share a texture, so
+ * SpriteBatch does not have to flush between them.
+ */
+
+public final class TextureAtlas {
+
+    private static final Logger LOG = LogManager.getLogger(TextureAtlas.class);
+
+    private final List<Texture> pages;
+
+    private final Map<String, Texture> pageByName;
+
+    private final Map<String, TexturePacker.Rect> regionByName;
+
+    /**
+     * Packs the images of the given packer and uploads the resulting pages.
+     *
+     * @param packer
+     *            the packer holding the images
+     * @param filter
+     *            the filter of the page textures
+     */
+
+    public TextureAtlas(final TexturePacker packer, final int filter) {
+        this(packer.pack(), filter);
+    }
+
+    /**
+     * Uploads already packed pages.
+     *
+     * @param packedPages
+     *            the pages to upload
+     * @param filter
+     *            the filter of the page textures
+     */
+
+    public TextureAtlas(final List<TexturePacker.Page> packedPages,
+            final int filter) {
+        pages = new ArrayList<Texture>(packedPages.size());
+        pageByName = new HashMap<String, Texture>();
+        regionByName = new HashMap<String, TexturePacker.Rect>();
+
+        for (final TexturePacker.Page packed : packedPages) {
+            final Texture page = new Texture(packed.width, packed.height,
+                    filter, Texture.CLAMP_TO_EDGE, packed.getPixels());
+            pages.add(page);
+
+            for (final Map.Entry<String, TexturePacker.Rect> entry : packed
+                    .getRegions().entrySet()) {
+                pageByName.put(entry.getKey(), page);
+                regionByName.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Packed {} images into {} pages", regionByName.size(),
+                    pages.size());
+        }
+    }
+
+    /**
+     * Checks whether an image was packed into this atlas.
+     *
+     * @param name
+     *            the name the image was added with
+     * @return true if the image is in this atlas
+     */
+
+    public boolean contains(final String name) {
+        return regionByName.containsKey(name);
+    }
+
+    /**
+     * Gets the page holding an image.
+     *
+     * @param name
+     *            the name the image was added with
+     * @return the page, or null if the image is not in this atlas
+     */
+
+    public Texture getPage(final String name) {
+        return pageByName.get(name);
+    }
+
+    /**
+     * Gets a region covering a whole packed image.
+     *
+     * @param name
+     *            the name the image was added with
+     * @return a new region, or null if the image is not in this atlas
+     */
+
+    public TextureRegion findRegion(final String name) {
+        final TexturePacker.Rect rect = regionByName.get(name);
+
+        if (rect == null) {
+            LOG.warn("Image {} not found in atlas!", name);
+            return null;
+        }
+
+        return new TextureRegion(pageByName.get(name), rect.x, rect.y,
+                rect.width, rect.height);
+    }
+
+    /**
+     * Gets a region of a packed image, in pixel coordinates relative to the
+     * original image.
+     *
+     * @param name
+     *            the name the image was added with
+     * @param x
+     *            the pixel coordinate on x-axis within the image
+     * @param y
+     *            the pixel coordinate on y-axis within the image
+     * @param width
+     *            the width of the region
+     * @param height
+     *            the height of the region
+     * @return a new region, or null if the image is not in this atlas
+     */
+
+    public TextureRegion findRegion(final String name, final int x,
+            final int y, final int width, final int height) {
+        final TexturePacker.Rect rect = regionByName.get(name);
+
+        if (rect == null) {
+            LOG.warn("Image {} not found in atlas!", name);
+            return null;
+        }
+
+        return new TextureRegion(pageByName.get(name), rect.x + x, rect.y + y,
+                width, height);
+    }
+
+    /**
+     * Moves an existing region of a standalone image texture onto the page the
+     * image was packed into, keeping the same area of the image and its flip
+     * state.
+     *
+     * @param region
+     *            a region whose texture holds the original image
+     * @param name
+     *            the name the image was added with
+     * @return true if the region was remapped, false if the image is not in
+     *         this atlas
+     */
+
+    public boolean remap(final TextureRegion region, final String name) {
+        final TexturePacker.Rect rect = regionByName.get(name);
+
+        if (rect == null) {
+            return false;
+        }
+
+        final boolean flipX = region.getU() > region.getU2();
+        final boolean flipY = region.getV() > region.getV2();
+
+        if (flipX || flipY) {
+            region.flip(flipX, flipY);
+        }
+
+        region.set(pageByName.get(name), rect.x + region.getRegionX(), rect.y
+                + region.getRegionY(), region.getWidth(), region.getHeight());
+
+        if (flipX || flipY) {
+            region.flip(flipX, flipY);
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the page textures.
+     *
+     * @return the pages
+     */
+
+    public List<Texture> getPages() {
+        return Collections.unmodifiableList(pages);
+    }
+
+    /**
+     * Releases the page textures.
+     */
+
+    public void dispose() {
+        for (final Texture page : pages) {
+            page.dispose();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.jeromerodrigo.lucidengine.graphics.texture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import org.lwjgl.BufferUtils;
+
+import de.matthiasmann.twl.utils.PNGDecoder;
+
+/**
+ * Decoded RGBA pixels of an image, not yet uploaded to OpenGL. Decoding never
+ * touches GL, so it can run on any thread; the upload through
+ * {@link Texture#Texture(TextureData, int, int)} must then happen on the GL
+ * thread.
+ */
+
+public final class TextureData {
+
+    public final int width, height;
+
+    private final ByteBuffer pixels;
+
+    public TextureData(final int width, final int height,
+            final ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Decodes a PNG image.
+     *
+     * @param pngRef
+     *            the location of the PNG
+     * @return the decoded image
+     * @throws IOException
+     *             if the PNG could not be read
+     */
+
+    public static TextureData decode(final URL pngRef) throws IOException {
+        InputStream input = null;
+        try {
+            input = pngRef.openStream();
+            final PNGDecoder dec = new PNGDecoder(input);
+
+            final int width = dec.getWidth();
+            final int height = dec.getHeight();
+            final ByteBuffer buf = BufferUtils.createByteBuffer(4 * width
+                    * height);
+            dec.decode(buf, width * 4, PNGDecoder.Format.RGBA);
+            buf.flip();
+
+            return new TextureData(width, height, buf);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (final IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the RGBA pixels, row by row from the top.
+     *
+     * @return the pixels, positioned at zero
+     */
+
+    public ByteBuffer getPixels() {
+        return pixels;
+    }
+}
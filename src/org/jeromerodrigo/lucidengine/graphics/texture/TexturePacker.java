@@ -0,0 +1,363 @@
+package org.jeromerodrigo.lucidengine.graphics.texture;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * Packs RGBA images into one or more fixed-size pages using the MaxRects
+ * algorithm (best short side fit). Every image is surrounded by a border of
+ * padding pixels that repeats its edge pixels, so filtering near the edge of a
+ * region never samples a neighbouring image.
+ *
+ * This class only works on pixel buffers and never touches OpenGL; use
+ * {@link TextureAtlas} to upload the packed pages.
+ */
+
+public final class TexturePacker {
+
+    private final int pageWidth, pageHeight, padding;
+
+    private final List<Image> images;
+
+    /**
+     * Creates a packer.
+     *
+     * @param pageWidth
+     *            the width of each page in pixels
+     * @param pageHeight
+     *            the height of each page in pixels
+     * @param padding
+     *            the number of edge pixels repeated around each image
+     */
+
+    public TexturePacker(final int pageWidth, final int pageHeight,
+            final int padding) {
+        if (pageWidth <= 0 || pageHeight <= 0 || padding < 0) {
+            throw new IllegalArgumentException("invalid page size or padding");
+        }
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.padding = padding;
+        images = new ArrayList<Image>();
+    }
+
+    /**
+     * Adds an image to be packed.
+     *
+     * @param name
+     *            the unique name of the image
+     * @param width
+     *            the width of the image in pixels
+     * @param height
+     *            the height of the image in pixels
+     * @param pixels
+     *            the RGBA pixels, row by row from the top, starting at the
+     *            buffer's position
+     */
+
+    public void add(final String name, final int width, final int height,
+            final ByteBuffer pixels) {
+        if (width + 2 * padding > pageWidth
+                || height + 2 * padding > pageHeight) {
+            throw new IllegalArgumentException("image " + name
+                    + " does not fit in a page");
+        }
+        for (final Image image : images) {
+            if (image.name.equals(name)) {
+                throw new IllegalArgumentException("duplicate image " + name);
+            }
+        }
+        if (pixels.remaining() < width * height * 4) {
+            throw new IllegalArgumentException("not enough pixels for " + name);
+        }
+        // same byte order as the pages, so whole pixels can be copied as ints
+        images.add(new Image(name, width, height, pixels.slice().order(
+                ByteOrder.nativeOrder())));
+    }
+
+    /**
+     * Decodes a PNG and adds it to be packed.
+     *
+     * @param name
+     *            the unique name of the image
+     * @param pngRef
+     *            the location of the PNG
+     * @throws IOException
+     *             if the PNG could not be read
+     */
+
+    public void add(final String name, final URL pngRef) throws IOException {
+        final TextureData data = TextureData.decode(pngRef);
+        add(name, data.width, data.height, data.getPixels());
+    }
+
+    /**
+     * Packs every image added so far.
+     *
+     * @return the packed pages, in the order they were filled
+     */
+
+    public List<Page> pack() {
+        final List<Image> sorted = new ArrayList<Image>(images);
+
+        // larger images first leaves the small ones to fill the gaps
+        Collections.sort(sorted, new Comparator<Image>() {
+            @Override
+            public int compare(final Image a, final Image b) {
+                final int sideA = Math.max(a.width, a.height);
+                final int sideB = Math.max(b.width, b.height);
+                if (sideA != sideB) {
+                    return sideB - sideA;
+                }
+                return b.width * b.height - a.width * a.height;
+            }
+        });
+
+        final List<Bin> bins = new ArrayList<Bin>();
+        final List<Page> pages = new ArrayList<Page>();
+
+        for (final Image image : sorted) {
+            final int w = image.width + 2 * padding;
+            final int h = image.height + 2 * padding;
+
+            Rect placed = null;
+            int pageIdx = 0;
+
+            for (; pageIdx < bins.size(); pageIdx++) {
+                placed = bins.get(pageIdx).insert(w, h);
+                if (placed != null) {
+                    break;
+                }
+            }
+
+            if (placed == null) {
+                final Bin bin = new Bin(pageWidth, pageHeight);
+                bins.add(bin);
+                pages.add(new Page(pageWidth, pageHeight));
+                placed = bin.insert(w, h);
+            }
+
+            final Page page = pages.get(pageIdx);
+            final Rect region = new Rect(placed.x + padding,
+                    placed.y + padding, image.width, image.height);
+            page.regions.put(image.name, region);
+            blit(image, page, region);
+        }
+
+        return pages;
+    }
+
+    /**
+     * Copies an image into a page, repeating its edge pixels into the padding
+     * around it.
+     */
+
+    private void blit(final Image image, final Page page, final Rect region) {
+        final ByteBuffer src = image.pixels;
+        final ByteBuffer dst = page.pixels;
+
+        for (int dy = -padding; dy < image.height + padding; dy++) {
+            final int sy = Math.min(Math.max(dy, 0), image.height - 1);
+            final int srcRow = sy * image.width;
+            final int dstRow = (region.y + dy) * page.width + region.x;
+
+            for (int dx = -padding; dx < image.width + padding; dx++) {
+                final int sx = Math.min(Math.max(dx, 0), image.width - 1);
+                dst.putInt((dstRow + dx) * 4, src.getInt((srcRow + sx) * 4));
+            }
+        }
+    }
+
+    /**
+     * A rectangle in page pixel coordinates.
+     */
+
+    public static final class Rect {
+
+        public final int x, y, width, height;
+
+        public Rect(final int x, final int y, final int width, final int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        boolean contains(final Rect o) {
+            return o.x >= x && o.y >= y && o.x + o.width <= x + width
+                    && o.y + o.height <= y + height;
+        }
+
+        boolean intersects(final Rect o) {
+            return o.x < x + width && o.x + o.width > x && o.y < y + height
+                    && o.y + o.height > y;
+        }
+
+        @Override
+        public String toString() {
+            return "Rect (" + x + "," + y + "," + width + "," + height + ")";
+        }
+    }
+
+    /**
+     * A packed page: RGBA pixels plus the location of each image within it.
+     */
+
+    public static final class Page {
+
+        public final int width, height;
+
+        private final ByteBuffer pixels;
+
+        private final Map<String, Rect> regions;
+
+        Page(final int width, final int height) {
+            this.width = width;
+            this.height = height;
+            pixels = BufferUtils.createByteBuffer(width * height * 4);
+            regions = new HashMap<String, Rect>();
+        }
+
+        /**
+         * Gets the RGBA pixels of this page, row by row from the top.
+         *
+         * @return the pixels, positioned at zero
+         */
+
+        public ByteBuffer getPixels() {
+            return pixels;
+        }
+
+        /**
+         * Gets the location of every image packed into this page, excluding
+         * padding.
+         *
+         * @return the regions by image name
+         */
+
+        public Map<String, Rect> getRegions() {
+            return Collections.unmodifiableMap(regions);
+        }
+    }
+
+    private static final class Image {
+
+        final String name;
+        final int width, height;
+        final ByteBuffer pixels;
+
+        Image(final String name, final int width, final int height,
+                final ByteBuffer pixels) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * The free space of a single page, kept as a list of maximal free
+     * rectangles.
+     */
+
+    private static final class Bin {
+
+        private final List<Rect> free;
+
+        Bin(final int width, final int height) {
+            free = new ArrayList<Rect>();
+            free.add(new Rect(0, 0, width, height));
+        }
+
+        Rect insert(final int width, final int height) {
+            Rect best = null;
+            int bestShort = Integer.MAX_VALUE;
+            int bestLong = Integer.MAX_VALUE;
+
+            for (final Rect f : free) {
+                if (f.width >= width && f.height >= height) {
+                    final int leftX = f.width - width;
+                    final int leftY = f.height - height;
+                    final int shortSide = Math.min(leftX, leftY);
+                    final int longSide = Math.max(leftX, leftY);
+
+                    if (shortSide < bestShort || shortSide == bestShort
+                            && longSide < bestLong) {
+                        best = new Rect(f.x, f.y, width, height);
+                        bestShort = shortSide;
+                        bestLong = longSide;
+                    }
+                }
+            }
+
+            if (best != null) {
+                place(best);
+            }
+
+            return best;
+        }
+
+        private void place(final Rect used) {
+            final List<Rect> split = new ArrayList<Rect>();
+
+            for (final Iterator<Rect> it = free.iterator(); it.hasNext();) {
+                final Rect f = it.next();
+
+                if (!f.intersects(used)) {
+                    continue;
+                }
+
+                it.remove();
+
+                if (used.x > f.x) {
+                    split.add(new Rect(f.x, f.y, used.x - f.x, f.height));
+                }
+                if (used.x + used.width < f.x + f.width) {
+                    split.add(new Rect(used.x + used.width, f.y, f.x + f.width
+                            - (used.x + used.width), f.height));
+                }
+                if (used.y > f.y) {
+                    split.add(new Rect(f.x, f.y, f.width, used.y - f.y));
+                }
+                if (used.y + used.height < f.y + f.height) {
+                    split.add(new Rect(f.x, used.y + used.height, f.width, f.y
+                            + f.height - (used.y + used.height)));
+                }
+            }
+
+            free.addAll(split);
+            prune();
+        }
+
+        /**
+         * Removes free rectangles that are contained in another one.
+         */
+
+        private void prune() {
+            for (int i = 0; i < free.size(); i++) {
+                for (int j = i + 1; j < free.size(); j++) {
+                    if (free.get(j).contains(free.get(i))) {
+                        free.remove(i);
+                        i--;
+                        break;
+                    }
+                    if (free.get(i).contains(free.get(j))) {
+                        free.remove(j);
+                        j--;
+                    }
+                }
+            }
+        }
+    }
+}
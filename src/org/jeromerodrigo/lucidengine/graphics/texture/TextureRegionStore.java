@@ -68,6 +68,38 @@ public final class TextureRegionStore {
                 yId * height, width, height));
     }
 
+    /**
+     * Moves every stored TextureRegion of a standalone texture onto the atlas
+     * page its image was packed into. Regions keep covering the same area of
+     * the image, so sprites holding them keep working.
+     *
+     * @param atlas
+     *            the atlas the image was packed into
+     * @param texture
+     *            the standalone texture the regions were created from
+     * @param imageName
+     *            the name the image was added to the atlas with
+     * @return the number of regions remapped
+     */
+
+    public static int remap(final TextureAtlas atlas, final Texture texture,
+            final String imageName) {
+        int count = 0;
+
+        for (final TextureRegion region : TEXTURE_REGIONS.values()) {
+            if (region.getTexture() == texture
+                    && atlas.remap(region, imageName)) {
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            LOG.warn("No TextureRegion of {} remapped!", imageName);
+        }
+
+        return count;
+    }
+
     /**
      * Get a TextureRegion by its name.
      *
@@ -0,0 +1,515 @@
+package org.jeromerodrigo.lucidengine.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jeromerodrigo.lucidengine.graphics.BatchStats;
+import org.jeromerodrigo.lucidengine.graphics.BatchStats.FlushReason;
+
+/**
+ * Records how long each phase of recent frames took, and how much GL work
+ * the tracked sprite batches submitted, in a ring buffer of a fixed number of
+ * frames.
+ *
+ * One thread, the game loop, records frames: {@link #beginFrame()}, then
+ * {@link #lap(Phase)} as each phase ends, then {@link #endFrame()}. Any other
+ * thread may read the buffer meanwhile without locking; a frame is only
+ * published once complete, and frames overwritten while being copied are left
+ * out of the copy.
+ *
+ * The counters of tracked batches are never reset: each frame records how
+ * far they moved since the previous one, so game code reading
+ * SpriteBatch.getStats() sees them keep counting.
+ */
+
+public final class FrameProfiler implements FrameProfilerMBean {
+
+    private static final Logger LOG = LogManager.getLogger(FrameProfiler.class);
+
+    /** The phases of a frame, in the order the game loop runs them */
+    public enum Phase {
+
+        /** Game.processInput */
+        INPUT,
+
+        /** Game.update */
+        UPDATE,
+
+        /** Queued GL tasks and clearing the screen */
+        GL_TASKS,
+
+        /** Game.render */
+        RENDER,
+
+        /** Display.update, i.e. swapping buffers and polling input */
+        DISPLAY_UPDATE,
+
+        /** Display.sync, waiting for the target frame rate */
+        SYNC
+
+    }
+
+    /**
+     * The counters of the tracked batches, summed per frame except for
+     * MAX_BATCH_QUADS, the largest of any batch. The flushes by reason follow
+     * FLUSHES in the order of {@link FlushReason}.
+     */
+    public enum Counter {
+        FLUSHES, TEXTURE_CHANGE_FLUSHES, BUFFER_FULL_FLUSHES,
+        SHADER_CHANGE_FLUSHES, END_FLUSHES, EXPLICIT_FLUSHES, RENDER_CALLS,
+        DRAW_CALLS, QUADS, MAX_BATCH_QUADS, VERTICES, TEXTURE_BINDS
+    }
+
+    private static final FlushReason[] REASONS = FlushReason.values();
+
+    private static final int PHASES = Phase.values().length;
+
+    private static final int COUNTERS = Counter.values().length;
+
+    /**
+     * Percentiles of a set of samples, by nearest rank.
+     */
+
+    public static final class Summary {
+
+        public final long p50, p99, max;
+
+        Summary(final long p50, final long p99, final long max) {
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        /**
+         * Summarizes samples.
+         *
+         * @param samples
+         *            the samples, left unchanged
+         * @return the summary, all 0 if there are no samples
+         */
+
+        public static Summary of(final long[] samples) {
+            if (samples.length == 0) {
+                return new Summary(0, 0, 0);
+            }
+
+            final long[] sorted = samples.clone();
+            Arrays.sort(sorted);
+
+            return new Summary(rank(sorted, 50), rank(sorted, 99),
+                    sorted[sorted.length - 1]);
+        }
+
+        private static long rank(final long[] sorted, final int percent) {
+            final int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+
+    private final int capacity;
+
+    private final int mask;
+
+    /** The phase times of each slot, PHASES per slot */
+    private final long[] phaseNanos;
+
+    private final long[] frameNanos;
+
+    /** The counters of each slot, COUNTERS per slot */
+    private final long[] counts;
+
+    /** The frames completed; frame n is in slot n & mask */
+    private volatile long frames;
+
+    /**
+     * A tracked batch and its counters at the end of the previous frame.
+     */
+
+    private static final class Tracked {
+
+        final BatchStats stats;
+
+        final long[] last = new long[COUNTERS];
+
+        Tracked(final BatchStats stats) {
+            this.stats = stats;
+            read(stats, last);
+            stats.sampleMaxBatchQuads();
+        }
+    }
+
+    private final List<Tracked> tracked = new CopyOnWriteArrayList<Tracked>();
+
+    /** The counters of a tracked batch being collected */
+    private final long[] current = new long[COUNTERS];
+
+    private int slot;
+
+    private long frameStart, lapStart;
+
+    /**
+     * @param window
+     *            the least number of recent frames to keep; the buffer is a
+     *            power of two, with a slot to spare for the frame being
+     *            recorded
+     */
+
+    public FrameProfiler(final int window) {
+        if (window < 1 || window > 1 << 20) {
+            throw new IllegalArgumentException("window " + window);
+        }
+
+        int size = 1;
+
+        while (size < window + 1) {
+            size <<= 1;
+        }
+
+        capacity = size;
+        mask = capacity - 1;
+
+        phaseNanos = new long[capacity * PHASES];
+        frameNanos = new long[capacity];
+        counts = new long[capacity * COUNTERS];
+    }
+
+    /**
+     * Adds the counters of a sprite batch to every frame from now on, without
+     * resetting them. Tracking them again has no effect, so batches shared
+     * between scenes are counted once.
+     *
+     * @param stats
+     *            the counters, e.g. SpriteBatch.getStats()
+     */
+
+    public void track(final BatchStats stats) {
+        for (final Tracked t : tracked) {
+            if (t.stats == stats) {
+                return;
+            }
+        }
+
+        tracked.add(new Tracked(stats));
+    }
+
+    public void untrack(final BatchStats stats) {
+        for (final Tracked t : tracked) {
+            if (t.stats == stats) {
+                tracked.remove(t);
+            }
+        }
+    }
+
+    /**
+     * Starts recording a frame.
+     */
+
+    public void beginFrame() {
+        slot = (int) (frames & mask);
+        Arrays.fill(phaseNanos, slot * PHASES, slot * PHASES + PHASES, 0);
+        frameStart = System.nanoTime();
+        lapStart = frameStart;
+    }
+
+    /**
+     * Ends a phase of the frame: the time since the previous lap, or since the
+     * frame began, is added to the phase.
+     *
+     * @param phase
+     *            the phase that just ended
+     */
+
+    public void lap(final Phase phase) {
+        final long now = System.nanoTime();
+        phaseNanos[slot * PHASES + phase.ordinal()] += now - lapStart;
+        lapStart = now;
+    }
+
+    /**
+     * Finishes the frame, collecting how far the tracked counters moved, and
+     * publishes it to readers.
+     */
+
+    public void endFrame() {
+        frameNanos[slot] = lapStart - frameStart;
+
+        final int c = slot * COUNTERS;
+        final int max = Counter.MAX_BATCH_QUADS.ordinal();
+        Arrays.fill(counts, c, c + COUNTERS, 0);
+
+        for (final Tracked t : tracked) {
+            read(t.stats, current);
+
+            for (int i = 0; i < COUNTERS; i++) {
+                // counters lower than last frame were reset by the game
+                counts[c + i] += current[i] >= t.last[i] ? current[i]
+                        - t.last[i] : current[i];
+                t.last[i] = current[i];
+            }
+
+            counts[c + max] = Math.max(counts[c + max],
+                    t.stats.sampleMaxBatchQuads());
+        }
+
+        frames = frames + 1;
+    }
+
+    /**
+     * Reads the counters of a batch that add up, leaving MAX_BATCH_QUADS 0.
+     */
+
+    private static void read(final BatchStats stats, final long[] out) {
+        out[Counter.FLUSHES.ordinal()] = stats.getFlushes();
+
+        for (final FlushReason reason : REASONS) {
+            out[Counter.FLUSHES.ordinal() + 1 + reason.ordinal()] = stats
+                    .getFlushes(reason);
+        }
+
+        out[Counter.RENDER_CALLS.ordinal()] = stats.getRenderCalls();
+        out[Counter.DRAW_CALLS.ordinal()] = stats.getDrawCalls();
+        out[Counter.QUADS.ordinal()] = stats.getQuads();
+        out[Counter.VERTICES.ordinal()] = stats.getVertices();
+        out[Counter.TEXTURE_BINDS.ordinal()] = stats.getTextureBinds();
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public int getWindowSize() {
+        return capacity - 1;
+    }
+
+    /**
+     * Gets the total times of the frames in the window.
+     *
+     * @return the times in nanoseconds, oldest first
+     */
+
+    public long[] getFrameTimes() {
+        return copy(frameNanos, 1, 0);
+    }
+
+    /**
+     * Gets the times a phase took in the frames in the window.
+     *
+     * @param phase
+     *            the phase
+     * @return the times in nanoseconds, oldest first
+     */
+
+    public long[] getPhaseTimes(final Phase phase) {
+        return copy(phaseNanos, PHASES, phase.ordinal());
+    }
+
+    /**
+     * Gets a counter of the frames in the window.
+     *
+     * @param counter
+     *            the counter
+     * @return the counts, oldest first
+     */
+
+    public long[] getCounts(final Counter counter) {
+        return copy(counts, COUNTERS, counter.ordinal());
+    }
+
+    /**
+     * Copies one value of every complete frame in the window, dropping frames
+     * the recording thread overwrote during the copy.
+     */
+
+    private long[] copy(final long[] values, final int stride, final int offset) {
+        final long end = frames;
+        final long start = Math.max(0, end - capacity + 1);
+        final long[] copy = new long[(int) (end - start)];
+
+        for (long f = start; f < end; f++) {
+            copy[(int) (f - start)] = values[(int) (f & mask) * stride + offset];
+        }
+
+        // frame n overwrites frame n - capacity, and the recording thread may
+        // already be writing frame frames
+        final long firstIntact = frames - capacity + 1;
+
+        if (firstIntact > start) {
+            return Arrays.copyOfRange(copy,
+                    (int) Math.min(firstIntact - start, copy.length),
+                    copy.length);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Registers this profiler with the platform MBean server under
+     * org.jeromerodrigo.lucidengine:type=FrameProfiler.
+     *
+     * @return true if registered
+     */
+
+    public boolean registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    getObjectName());
+            return true;
+        } catch (final JMException e) {
+            LOG.error("Could not register the frame profiler MBean", e);
+            return false;
+        }
+    }
+
+    public void unregisterMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    getObjectName());
+        } catch (final JMException e) {
+            LOG.error("Could not unregister the frame profiler MBean", e);
+        }
+    }
+
+    private static ObjectName getObjectName() throws JMException {
+        return new ObjectName("org.jeromerodrigo.lucidengine:type=FrameProfiler");
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    /**
+     * Summarizes the total times of the frames in the window.
+     *
+     * @return the summary, in nanoseconds
+     */
+
+    public Summary summarizeFrames() {
+        return Summary.of(getFrameTimes());
+    }
+
+    /**
+     * Summarizes the times of a phase in the window.
+     *
+     * @param phase
+     *            the phase
+     * @return the summary, in nanoseconds
+     */
+
+    public Summary summarize(final Phase phase) {
+        return Summary.of(getPhaseTimes(phase));
+    }
+
+    /**
+     * Summarizes a counter in the window.
+     *
+     * @param counter
+     *            the counter
+     * @return the summary
+     */
+
+    public Summary summarize(final Counter counter) {
+        return Summary.of(getCounts(counter));
+    }
+
+    @Override
+    public double getFrameTimeP50() {
+        return toMillis(summarizeFrames().p50);
+    }
+
+    @Override
+    public double getFrameTimeP99() {
+        return toMillis(summarizeFrames().p99);
+    }
+
+    @Override
+    public double getFrameTimeMax() {
+        return toMillis(summarizeFrames().max);
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        final String[] names = new String[PHASES];
+
+        for (final Phase phase : Phase.values()) {
+            names[phase.ordinal()] = phase.name();
+        }
+
+        return names;
+    }
+
+    @Override
+    public double[] getPhaseTimeP50() {
+        final double[] times = new double[PHASES];
+
+        for (final Phase phase : Phase.values()) {
+            times[phase.ordinal()] = toMillis(summarize(phase).p50);
+        }
+
+        return times;
+    }
+
+    @Override
+    public double[] getPhaseTimeP99() {
+        final double[] times = new double[PHASES];
+
+        for (final Phase phase : Phase.values()) {
+            times[phase.ordinal()] = toMillis(summarize(phase).p99);
+        }
+
+        return times;
+    }
+
+    @Override
+    public double[] getPhaseTimeMax() {
+        final double[] times = new double[PHASES];
+
+        for (final Phase phase : Phase.values()) {
+            times[phase.ordinal()] = toMillis(summarize(phase).max);
+        }
+
+        return times;
+    }
+
+    @Override
+    public String[] getCounterNames() {
+        final String[] names = new String[COUNTERS];
+
+        for (final Counter counter : Counter.values()) {
+            names[counter.ordinal()] = counter.name();
+        }
+
+        return names;
+    }
+
+    @Override
+    public long[] getCounterP50() {
+        final long[] values = new long[COUNTERS];
+
+        for (final Counter counter : Counter.values()) {
+            values[counter.ordinal()] = summarize(counter).p50;
+        }
+
+        return values;
+    }
+
+    @Override
+    public long[] getCounterMax() {
+        final long[] values = new long[COUNTERS];
+
+        for (final Counter counter : Counter.values()) {
+            values[counter.ordinal()] = summarize(counter).max;
+        }
+
+        return values;
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.jeromerodrigo.lucidengine.profiling;
+
+/**
+ * The JMX view of a {@link FrameProfiler}: summaries of the frames in its
+ * window, times in milliseconds. Phase and counter arrays are indexed like
+ * {@link #getPhaseNames()} and {@link #getCounterNames()}.
+ */
+
+public interface FrameProfilerMBean {
+
+    long getFrameCount();
+
+    int getWindowSize();
+
+    double getFrameTimeP50();
+
+    double getFrameTimeP99();
+
+    double getFrameTimeMax();
+
+    String[] getPhaseNames();
+
+    double[] getPhaseTimeP50();
+
+    double[] getPhaseTimeP99();
+
+    double[] getPhaseTimeMax();
+
+    String[] getCounterNames();
+
+    long[] getCounterP50();
+
+    long[] getCounterMax();
+
+}
@@ -0,0 +1,327 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jeromerodrigo.lucidengine.graphics.GLTaskQueue;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureData;
+
+/**
+ * Loads maps in the background. The map is parsed and its tileset images are
+ * decoded on a worker pool; each decoded image is then posted to a
+ * {@link GLTaskQueue} for upload, which the game loop works through a few
+ * milliseconds per frame. Scenes can keep rendering (e.g. a loading screen
+ * showing {@link Handle#getProgress()}) and poll {@link Handle#isDone()}.
+ *
+ * Once done, create the renderer on the GL thread with
+ * {@link OrthogonalMapRenderer#OrthogonalMapRenderer(TiledMap, org.jeromerodrigo.lucidengine.Camera, Map)}.
+ * Never block the GL thread on {@link Handle#get()}: the uploads it waits for
+ * run on that thread.
+ */
+
+public final class AsyncMapLoader {
+
+    private static final Logger LOG = LogManager
+            .getLogger(AsyncMapLoader.class);
+
+    private final MapLoader loader;
+
+    private final Executor workers;
+
+    private final GLTaskQueue glTasks;
+
+    /**
+     * Creates an asynchronous loader.
+     *
+     * @param loader
+     *            the loader to parse maps with, which must be safe to call from
+     *            worker threads
+     * @param workers
+     *            the pool to parse and decode on
+     * @param glTasks
+     *            the queue to post texture uploads to, usually
+     *            GameEngine.getGLTaskQueue()
+     */
+
+    public AsyncMapLoader(final MapLoader loader, final Executor workers,
+            final GLTaskQueue glTasks) {
+        this.loader = loader;
+        this.workers = workers;
+        this.glTasks = glTasks;
+    }
+
+    /**
+     * Starts loading a map. The load fails if the loader returns no map or
+     * an empty one, with no width or height, as XMLMapLoader does when it
+     * can't read the file.
+     *
+     * @param path
+     *            the map to load
+     * @return the handle of the load
+     */
+
+    public Handle load(final String path) {
+        final Handle handle = new Handle();
+
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadInBackground(path, handle);
+                } catch (final IOException e) {
+                    handle.fail(e);
+                } catch (final RuntimeException e) {
+                    handle.fail(e);
+                }
+            }
+        });
+
+        return handle;
+    }
+
+    private void loadInBackground(final String path, final Handle handle)
+            throws IOException {
+        if (handle.isCancelled()) {
+            return;
+        }
+
+        final TiledMap map = loader.loadMap(path);
+
+        // the loaders log a map they can't read and return it empty
+        if (map == null || map.getWidth() <= 0 || map.getHeight() <= 0) {
+            throw new IOException("Could not load map " + path);
+        }
+
+        final List<Tileset> tilesets = map.getTilesets();
+
+        // parse, then a decode and an upload per tileset
+        handle.start(1 + tilesets.size() * 2);
+        handle.step();
+
+        // only touched on the GL thread
+        final Map<Tileset, Texture> textures = new HashMap<Tileset, Texture>();
+
+        if (tilesets.isEmpty()) {
+            handle.complete(new LoadedMap(map, textures));
+            return;
+        }
+
+        // frees uploaded textures once the load is cancelled or has failed
+        final Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                for (final Texture tex : textures.values()) {
+                    tex.dispose();
+                }
+                textures.clear();
+            }
+        };
+
+        for (final Tileset ts : tilesets) {
+            if (handle.isCancelled()) {
+                glTasks.post(release);
+                return;
+            }
+
+            final TextureData data;
+            try {
+                data = TextureData.decode(ts.SOURCE_URL);
+            } catch (final IOException e) {
+                handle.fail(e);
+                glTasks.post(release);
+                return;
+            } catch (final RuntimeException e) {
+                // e.g. the image of the tileset couldn't be found
+                handle.fail(e);
+                glTasks.post(release);
+                return;
+            }
+            handle.step();
+
+            // upload while the next tileset decodes
+            glTasks.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (handle.isDone()) {
+                        release.run();
+                        return;
+                    }
+
+                    try {
+                        textures.put(ts, new Texture(data, Texture.NEAREST,
+                                Texture.DEFAULT_WRAP));
+                    } catch (final RuntimeException e) {
+                        handle.fail(e);
+                        release.run();
+                        return;
+                    }
+                    handle.step();
+
+                    if (textures.size() == tilesets.size()) {
+                        handle.complete(new LoadedMap(map, textures));
+
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Loaded map {} in the background", path);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A map whose tileset textures are uploaded and ready to render.
+     */
+
+    public static final class LoadedMap {
+
+        private final TiledMap map;
+
+        private final Map<Tileset, Texture> textures;
+
+        LoadedMap(final TiledMap map, final Map<Tileset, Texture> textures) {
+            this.map = map;
+            this.textures = Collections.unmodifiableMap(textures);
+        }
+
+        public TiledMap getMap() {
+            return map;
+        }
+
+        /**
+         * Gets the texture of each tileset.
+         *
+         * @return the textures by tileset
+         */
+
+        public Map<Tileset, Texture> getTextures() {
+            return textures;
+        }
+    }
+
+    /**
+     * The pending result of a background load.
+     */
+
+    public static final class Handle implements Future<LoadedMap> {
+
+        private final AtomicInteger stepsDone = new AtomicInteger();
+
+        private volatile int steps;
+
+        private boolean done;
+        private boolean cancelled;
+        private LoadedMap result;
+        private Throwable failure;
+
+        Handle() {
+            // Created by AsyncMapLoader
+        }
+
+        void start(final int totalSteps) {
+            steps = totalSteps;
+        }
+
+        void step() {
+            stepsDone.incrementAndGet();
+        }
+
+        synchronized void complete(final LoadedMap loaded) {
+            if (!done) {
+                result = loaded;
+                done = true;
+                notifyAll();
+            }
+        }
+
+        synchronized void fail(final Throwable cause) {
+            if (!done) {
+                LOG.error("Could not load map in the background", cause);
+                failure = cause;
+                done = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Gets how far the load has come, for a loading screen.
+         *
+         * @return the progress, from 0 to 1
+         */
+
+        public float getProgress() {
+            final int total = steps;
+            return total == 0 ? 0f : (float) stepsDone.get() / total;
+        }
+
+        @Override
+        public synchronized boolean cancel(final boolean mayInterruptIfRunning) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            done = true;
+            notifyAll();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public synchronized LoadedMap get() throws InterruptedException,
+                ExecutionException {
+            while (!done) {
+                wait();
+            }
+            return getResult();
+        }
+
+        @Override
+        public synchronized LoadedMap get(final long timeout,
+                final TimeUnit unit) throws InterruptedException,
+                ExecutionException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+            while (!done) {
+                final long left = deadline - System.nanoTime();
+
+                if (left <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            }
+            return getResult();
+        }
+
+        private LoadedMap getResult() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams chunks out of a map compiled by {@link MapCompiler}. The file is
+ * memory-mapped by {@link BinaryMapLoader}, so its layers stay out of the heap
+ * and are paged in by the OS; only the resident chunks are copied into
+ * arrays.
+ */
+
+public final class BinaryChunkSource implements ChunkSource {
+
+    private final TiledMap map;
+
+    private final List<String> layerNames;
+
+    private final int chunkSize;
+
+    /**
+     * Opens a compiled map.
+     *
+     * @param path
+     *            the compiled map file
+     * @param chunkSize
+     *            the width and height of a chunk in tiles
+     * @throws IOException
+     *             if the map could not be loaded
+     */
+
+    public BinaryChunkSource(final String path, final int chunkSize)
+            throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+
+        map = BinaryMapLoader.INSTANCE.loadMap(path);
+
+        if (map == null) {
+            throw new IOException("Could not load compiled map " + path);
+        }
+
+        layerNames = Collections.unmodifiableList(new ArrayList<String>(map
+                .getTileLayerNames()));
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Gets the mapped map, e.g. for its collision objects and properties.
+     *
+     * @return the map
+     */
+
+    public TiledMap getMap() {
+        return map;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return map.getTileWidth();
+    }
+
+    @Override
+    public int getTileHeight() {
+        return map.getTileHeight();
+    }
+
+    @Override
+    public List<Tileset> getTilesets() {
+        return map.getTilesets();
+    }
+
+    @Override
+    public List<String> getLayerNames() {
+        return layerNames;
+    }
+
+    @Override
+    public MapChunk loadChunk(final int chunkX, final int chunkY) {
+        final int xStart = chunkX * chunkSize;
+        final int yStart = chunkY * chunkSize;
+
+        if (chunkX < 0 || chunkY < 0 || xStart >= map.getWidth()
+                || yStart >= map.getHeight()) {
+            return null;
+        }
+
+        final TileLayer[] layers = new TileLayer[layerNames.size()];
+
+        for (int l = 0; l < layers.length; l++) {
+            final TileLayer src = map.getTileLayer(layerNames.get(l));
+            final int[] tiles = new int[chunkSize * chunkSize];
+
+            final int width = Math.min(chunkSize, src.getWidth() - xStart);
+            final int yEnd = Math.min(yStart + chunkSize, src.getHeight());
+
+            // copyRow reads through a duplicate, so workers can share src
+            for (int y = yStart; width > 0 && y < yEnd; y++) {
+                src.copyRow(xStart, y, width, tiles, (y - yStart) * chunkSize);
+            }
+
+            layers[l] = new TileLayer(src.getName(), chunkSize, chunkSize,
+                    tiles);
+        }
+
+        return new MapChunk(chunkX, chunkY, layers);
+    }
+
+}
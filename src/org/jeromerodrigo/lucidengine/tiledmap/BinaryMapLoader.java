@@ -0,0 +1,189 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.dyn4j.dynamics.World;
+
+/**
+ * A MapLoader that memory-maps a map compiled by {@link MapCompiler}. Tile
+ * layers are views of the mapped file rather than copies, so loading costs
+ * little more than reading the header; the layers are read-only.
+ */
+
+public final class BinaryMapLoader implements MapLoader {
+
+    private static final Logger LOG = LogManager
+            .getLogger(BinaryMapLoader.class);
+
+    public static final BinaryMapLoader INSTANCE = new BinaryMapLoader();
+
+    /** "LMAP" in little endian */
+    static final int MAGIC = 0x50414D4C;
+
+    static final int VERSION = 3;
+
+    private BinaryMapLoader() {
+        // Prevents instantiation
+    }
+
+    /**
+     * Loads a compiled map.
+     *
+     * @param path
+     *            the compiled map file
+     * @return the map, or null if the file could not be read
+     */
+
+    @Override
+    public TiledMap loadMap(final String path) {
+
+        FileChannel channel = null;
+
+        try {
+
+            channel = FileChannel.open(Paths.get(path),
+                    StandardOpenOption.READ);
+
+            // the mapping stays valid after the channel is closed
+            final MappedByteBuffer buf = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buf.getInt() != MAGIC) {
+                LOG.fatal("Not a compiled map: " + path);
+                return null;
+            }
+
+            final int version = buf.getInt();
+
+            if (version != VERSION) {
+                LOG.fatal("Unsupported compiled map version " + version);
+                return null;
+            }
+
+            final int orientationIdx = buf.getInt();
+            final TiledMap.Orientation orientation = orientationIdx < 0 ? null
+                    : TiledMap.Orientation.values()[orientationIdx];
+            final int width = buf.getInt();
+            final int height = buf.getInt();
+            final int tileWidth = buf.getInt();
+            final int tileHeight = buf.getInt();
+
+            final TiledMap map = new TiledMap(orientation, width, height,
+                    tileWidth, tileHeight);
+
+            final int propertyCount = buf.getInt();
+            for (int i = 0; i < propertyCount; i++) {
+                final String name = getString(buf);
+                map.setProperty(name, getString(buf));
+            }
+
+            final int tilesetCount = buf.getInt();
+            for (int i = 0; i < tilesetCount; i++) {
+                final String source = getString(buf);
+                final Tileset tileset = new Tileset(source, buf.getInt(),
+                        buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt());
+
+                final int animationCount = buf.getInt();
+                for (int a = 0; a < animationCount; a++) {
+                    final int tileId = buf.getInt();
+                    final int[] frameTileIds = new int[buf.getInt()];
+                    final int[] durations = new int[frameTileIds.length];
+
+                    for (int f = 0; f < frameTileIds.length; f++) {
+                        frameTileIds[f] = buf.getInt();
+                        durations[f] = buf.getInt();
+                    }
+                    tileset.addAnimation(new TileAnimation(tileId,
+                            frameTileIds, durations));
+                }
+
+                map.addTileset(tileset);
+            }
+
+            final int objectCount = buf.getInt();
+            final List<CollisionObject> collObjs = new ArrayList<CollisionObject>(
+                    objectCount);
+            for (int i = 0; i < objectCount; i++) {
+                collObjs.add(new CollisionObject(buf.getFloat(),
+                        buf.getFloat(), buf.getFloat(), buf.getFloat(),
+                        tileWidth, tileHeight));
+            }
+            map.setCollisionObjects(collObjs);
+
+            final int layerCount = buf.getInt();
+            for (int i = 0; i < layerCount; i++) {
+                final String name = getString(buf);
+                final int layerWidth = buf.getInt();
+                final int layerHeight = buf.getInt();
+                final boolean visible = buf.getInt() != 0;
+                final float opacity = buf.getFloat();
+                final float parallaxX = buf.getFloat();
+                final float parallaxY = buf.getFloat();
+                final int tileCount = layerWidth * layerHeight;
+
+                buf.position((buf.position() + 3) & ~3);
+
+                if (buf.remaining() < tileCount * 4) {
+                    throw new BufferUnderflowException();
+                }
+
+                final IntBuffer tiles = buf.asIntBuffer();
+                tiles.limit(tileCount);
+                final TileLayer layer = new TileLayer(name, layerWidth,
+                        layerHeight, tiles);
+                layer.setVisible(visible);
+                layer.setOpacity(opacity);
+                layer.setParallax(parallaxX, parallaxY);
+                map.addTileLayer(layer);
+
+                buf.position(buf.position() + tileCount * 4);
+            }
+
+            return map;
+
+        } catch (final IOException e) {
+            LOG.fatal("Could not read compiled map!\n" + e.getMessage());
+        } catch (final BufferUnderflowException e) {
+            LOG.fatal("Compiled map is truncated: " + path);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (final IOException e) {
+                    LOG.error(e);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String getString(final MappedByteBuffer buf) {
+        final byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void loadMapToPhysics(final TiledMap map, final World physics) {
+
+        for (final CollisionObject obj : map.getCollisionObjects()) {
+            physics.addBody(obj);
+        }
+
+    }
+
+}
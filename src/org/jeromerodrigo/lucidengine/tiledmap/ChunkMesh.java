@@ -0,0 +1,95 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexData;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexData;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+
+/**
+ * The cached quads of a block of tiles, laid out as one run of quads per
+ * texture, and the cells of the block holding animated tiles, which are left
+ * out of the mesh and drawn each frame instead. Built and drawn by
+ * {@link ChunkMeshBuilder}.
+ */
+
+public final class ChunkMesh {
+
+    /** Null if every tile of the block is animated */
+    final VertexData mesh;
+    final Texture[] textures;
+    final int[] firstQuads;
+    final int[] quadCounts;
+
+    /** The gid, tileset and x1, y1, x2, y2 bounds of each animated cell */
+    final int[] animatedGids;
+    final Tileset[] animatedTilesets;
+    final float[] animatedBounds;
+
+    ChunkMesh(final VertexData mesh, final Texture[] textures,
+            final int[] firstQuads, final int[] quadCounts,
+            final int[] animatedGids, final Tileset[] animatedTilesets,
+            final float[] animatedBounds) {
+        this.mesh = mesh;
+        this.textures = textures;
+        this.firstQuads = firstQuads;
+        this.quadCounts = quadCounts;
+        this.animatedGids = animatedGids;
+        this.animatedTilesets = animatedTilesets;
+        this.animatedBounds = animatedBounds;
+    }
+
+    /**
+     * Gets the vertices of the cached quads, in the SpriteBatch vertex layout.
+     *
+     * @return the vertices, or null if every tile of the block is animated
+     */
+
+    public VertexData getMesh() {
+        return mesh;
+    }
+
+    public int getTextureCount() {
+        return textures.length;
+    }
+
+    public Texture getTexture(final int run) {
+        return textures[run];
+    }
+
+    /**
+     * Gets the first quad of the run of a texture.
+     *
+     * @param run
+     *            the index of the texture
+     * @return the index of the quad in the mesh
+     */
+
+    public int getFirstQuad(final int run) {
+        return firstQuads[run];
+    }
+
+    public int getQuadCount(final int run) {
+        return quadCounts[run];
+    }
+
+    public int getAnimatedCount() {
+        return animatedGids.length;
+    }
+
+    public int getAnimatedGid(final int cell) {
+        return animatedGids[cell];
+    }
+
+    void render(final SpriteBatch batch, final IndexData quadIndices) {
+        for (int t = 0; t < textures.length; t++) {
+            batch.drawMesh(textures[t], mesh, quadIndices, firstQuads[t],
+                    quadCounts[t]);
+        }
+    }
+
+    void dispose() {
+        if (mesh != null) {
+            mesh.dispose();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeromerodrigo.lucidengine.graphics.Color;
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexArray;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexBufferObject;
+import org.jeromerodrigo.lucidengine.graphics.glutils.IndexData;
+import org.jeromerodrigo.lucidengine.graphics.glutils.StaticVertexBufferObject;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexArray;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexBufferObject;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexData;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
+
+/**
+ * Builds {@link ChunkMesh}es of orthogonal or isometric tiles, holds the quad
+ * indices they are drawn with and draws them. Must be used on the GL thread,
+ * unless the meshes are kept in vertex arrays, which can be built without a
+ * GL context.
+ *
+ * Cells showing an animated tile are not baked into the mesh, so a chunk
+ * never needs rebuilding as animations play: they are kept aside and drawn
+ * through the batch after the mesh, with the frame the {@link TileAnimator}
+ * currently shows.
+ */
+
+public final class ChunkMeshBuilder {
+
+    /** Floats per vertex of the SpriteBatch vertex layout */
+    private static final int VERTEX_SIZE = 5;
+
+    /** The vertex color, which the batch color replaces when drawing */
+    private static final float WHITE = Color.WHITE.toFloatBits();
+
+    private final TilesetIndex tilesets;
+
+    private final Map<Tileset, TextureRegion> regionByTilesetMap;
+
+    private final TileAnimator animator;
+
+    private final int tileWidth, tileHeight;
+
+    private final boolean useBuffers;
+
+    /** Quad indices shared by every chunk */
+    private final IndexData quadIndices;
+
+    /** The quads of the chunk being built, before grouping by texture */
+    private final int[] quadGids;
+    private final Tileset[] quadTilesets;
+    private final float[] quadBounds;
+    private int quadCount;
+
+    /** The animated cells of the chunk being built */
+    private final int[] animatedGids;
+    private final Tileset[] animatedTilesets;
+    private final float[] animatedBounds;
+    private int animatedCount;
+
+    private final float[] uvs = new float[4];
+
+    private final IsometricLayout.TileVisitor collector = new IsometricLayout.TileVisitor() {
+        @Override
+        public void visit(final int x, final int y, final int gid,
+                final Tileset tileset, final float x1, final float y1,
+                final float x2, final float y2) {
+            addQuad(gid, tileset, x1, y1, x2, y2);
+        }
+    };
+
+    /**
+     * @param tilesets
+     *            the tilesets the gids refer to
+     * @param regionByTilesetMap
+     *            the image of each tileset
+     * @param animator
+     *            the animator of the tilesets
+     * @param tileWidth
+     *            the width of a map cell in pixels
+     * @param tileHeight
+     *            the height of a map cell in pixels
+     * @param chunkSize
+     *            the width and height in tiles of the largest chunk to build
+     * @param useBuffers
+     *            true to keep the meshes in GL buffer objects, usually
+     *            {@link VertexBufferObject#isSupported()}; false for vertex
+     *            arrays
+     */
+
+    public ChunkMeshBuilder(final List<Tileset> tilesets,
+            final Map<Tileset, TextureRegion> regionByTilesetMap,
+            final TileAnimator animator, final int tileWidth,
+            final int tileHeight, final int chunkSize, final boolean useBuffers) {
+        this.tilesets = new TilesetIndex(tilesets);
+        this.regionByTilesetMap = regionByTilesetMap;
+        this.animator = animator;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+
+        final int maxQuads = chunkSize * chunkSize;
+
+        if (maxQuads * 4 > 0x10000) {
+            throw new IllegalArgumentException("chunk size " + chunkSize
+                    + " needs more than 16 bit indices");
+        }
+
+        quadGids = new int[maxQuads];
+        quadTilesets = new Tileset[maxQuads];
+        quadBounds = new float[maxQuads * 4];
+        animatedGids = new int[maxQuads];
+        animatedTilesets = new Tileset[maxQuads];
+        animatedBounds = new float[maxQuads * 4];
+
+        this.useBuffers = useBuffers;
+        final short[] indices = SpriteBatch.createQuadIndices(maxQuads);
+        quadIndices = useBuffers ? new IndexBufferObject(indices)
+                : new IndexArray(indices);
+    }
+
+    /**
+     * Draws a chunk in the batch color: its mesh, then its animated cells at
+     * their current frame.
+     *
+     * @param batch
+     *            the batch to draw with
+     * @param chunk
+     *            the chunk
+     */
+
+    void render(final SpriteBatch batch, final ChunkMesh chunk) {
+        chunk.render(batch, quadIndices);
+
+        final int[] gids = chunk.animatedGids;
+
+        if (gids.length == 0) {
+            return;
+        }
+
+        final float[] bounds = chunk.animatedBounds;
+
+        for (int c = 0; c < gids.length; c++) {
+            final Tileset tileset = chunk.animatedTilesets[c];
+            final TextureRegion image = regionByTilesetMap.get(tileset);
+            final int b = c * 4;
+
+            // frames are tiles of the same tileset
+            tileset.getRegionUVs(animator.getFrame(gids[c]), image, uvs, 0);
+
+            batch.draw(image.getTexture(), bounds[b], bounds[b + 1],
+                    bounds[b + 2] - bounds[b], bounds[b + 3] - bounds[b + 1],
+                    uvs[0], uvs[1], uvs[2], uvs[3]);
+        }
+    }
+
+    /**
+     * Builds the quads of a block of an orthogonal layer, grouped by texture.
+     *
+     * @param layer
+     *            the layer
+     * @param xStart
+     *            the first column of the block in the layer
+     * @param yStart
+     *            the first row of the block in the layer
+     * @param xEnd
+     *            the column after the block
+     * @param yEnd
+     *            the row after the block
+     * @param mapX
+     *            the map column of column 0 of the layer
+     * @param mapY
+     *            the map row of row 0 of the layer
+     * @return the chunk, or null if it holds no tiles
+     */
+
+    public ChunkMesh build(final TileLayer layer, final int xStart,
+            final int yStart, final int xEnd, final int yEnd, final int mapX,
+            final int mapY) {
+
+        final IntBuffer tiles = layer.getTiles();
+        quadCount = 0;
+        animatedCount = 0;
+
+        for (int y = yStart; y < yEnd; y++) {
+            for (int x = xStart, i = layer.getIndex(xStart, y); x < xEnd; x++, i++) {
+                final int gid = tiles.get(i) & TileLayer.GID_MASK;
+                final Tileset tileset = tilesets.find(gid);
+
+                // empty, or a gid no tileset covers
+                if (tileset == null) {
+                    continue;
+                }
+
+                final float x1 = (float) (mapX + x) * tileWidth;
+                final float y1 = (float) (mapY + y) * tileHeight;
+
+                addQuad(gid, tileset, x1, y1, x1 + tileset.TILE_W, y1
+                        + tileset.TILE_H);
+            }
+        }
+
+        return assemble();
+    }
+
+    /**
+     * Builds the quads of a block of an isometric layer, grouped by texture.
+     * Grouping reorders the tiles, so this is only right for layers whose
+     * tiles don't overlap; see {@link IsometricLayout#isFlat()}.
+     *
+     * @param layout
+     *            the layout of the map
+     * @param layer
+     *            the layer
+     * @param xStart
+     *            the first column of the block
+     * @param yStart
+     *            the first row of the block
+     * @param xEnd
+     *            the column after the block
+     * @param yEnd
+     *            the row after the block
+     * @return the chunk, or null if it holds no tiles
+     */
+
+    public ChunkMesh buildIsometric(final IsometricLayout layout,
+            final TileLayer layer, final int xStart, final int yStart,
+            final int xEnd, final int yEnd) {
+
+        quadCount = 0;
+        animatedCount = 0;
+        layout.visitBlock(layer, xStart, yStart, xEnd, yEnd, collector);
+        return assemble();
+    }
+
+    private void addQuad(final int gid, final Tileset tileset,
+            final float x1, final float y1, final float x2, final float y2) {
+
+        if (animator.isAnimated(gid)) {
+            final int c = animatedCount++;
+            animatedGids[c] = gid;
+            animatedTilesets[c] = tileset;
+            animatedBounds[c * 4] = x1;
+            animatedBounds[c * 4 + 1] = y1;
+            animatedBounds[c * 4 + 2] = x2;
+            animatedBounds[c * 4 + 3] = y2;
+            return;
+        }
+
+        final int q = quadCount++;
+        quadGids[q] = gid;
+        quadTilesets[q] = tileset;
+        quadBounds[q * 4] = x1;
+        quadBounds[q * 4 + 1] = y1;
+        quadBounds[q * 4 + 2] = x2;
+        quadBounds[q * 4 + 3] = y2;
+    }
+
+    /**
+     * Lays the collected quads out in one run per texture.
+     */
+
+    private ChunkMesh assemble() {
+
+        if (quadCount == 0 && animatedCount == 0) {
+            return null;
+        }
+
+        final int[] chunkAnimatedGids = Arrays.copyOf(animatedGids,
+                animatedCount);
+        final Tileset[] chunkAnimatedTilesets = Arrays.copyOf(
+                animatedTilesets, animatedCount);
+        final float[] chunkAnimatedBounds = Arrays.copyOf(animatedBounds,
+                animatedCount * 4);
+
+        if (quadCount == 0) {
+            return new ChunkMesh(null, new Texture[0], new int[0], new int[0],
+                    chunkAnimatedGids, chunkAnimatedTilesets,
+                    chunkAnimatedBounds);
+        }
+
+        // count the tiles of each texture so they can be laid out in runs
+        final Map<Texture, Integer> textureIdx = new IdentityHashMap<Texture, Integer>();
+        final Texture[] textures = new Texture[quadCount];
+        final int[] counts = new int[quadCount];
+        final int[] quadTextures = new int[quadCount];
+        int textureCount = 0;
+
+        for (int q = 0; q < quadCount; q++) {
+            final Texture texture = regionByTilesetMap.get(quadTilesets[q])
+                    .getTexture();
+            Integer t = textureIdx.get(texture);
+
+            if (t == null) {
+                t = textureCount;
+                textures[textureCount++] = texture;
+                textureIdx.put(texture, t);
+            }
+
+            quadTextures[q] = t;
+            counts[t]++;
+        }
+
+        final int[] firstQuads = new int[textureCount];
+
+        for (int t = 1; t < textureCount; t++) {
+            firstQuads[t] = firstQuads[t - 1] + counts[t - 1];
+        }
+
+        final int[] next = firstQuads.clone();
+        final float[] verts = new float[quadCount * 4 * VERTEX_SIZE];
+
+        for (int q = 0; q < quadCount; q++) {
+            final Tileset tileset = quadTilesets[q];
+
+            tileset.getRegionUVs(quadGids[q], regionByTilesetMap.get(tileset),
+                    uvs, 0);
+
+            final float u = uvs[0];
+            final float v = uvs[1];
+            final float u2 = uvs[2];
+            final float v2 = uvs[3];
+
+            final float x1 = quadBounds[q * 4];
+            final float y1 = quadBounds[q * 4 + 1];
+            final float x2 = quadBounds[q * 4 + 2];
+            final float y2 = quadBounds[q * 4 + 3];
+
+            int i = next[quadTextures[q]]++ * 4 * VERTEX_SIZE;
+
+            // top left, top right, bottom right, bottom left
+            i = vertex(verts, i, x1, y1, WHITE, u, v);
+            i = vertex(verts, i, x2, y1, WHITE, u2, v);
+            i = vertex(verts, i, x2, y2, WHITE, u2, v2);
+            vertex(verts, i, x1, y2, WHITE, u, v2);
+        }
+
+        final VertexData mesh = useBuffers ? new StaticVertexBufferObject(
+                quadCount * 4, SpriteBatch.ATTRIBUTES) : new VertexArray(
+                quadCount * 4, SpriteBatch.ATTRIBUTES);
+        mesh.put(verts, 0, verts.length);
+        mesh.flip();
+
+        return new ChunkMesh(mesh, Arrays.copyOf(textures, textureCount),
+                firstQuads, Arrays.copyOf(counts, textureCount),
+                chunkAnimatedGids, chunkAnimatedTilesets, chunkAnimatedBounds);
+    }
+
+    private static int vertex(final float[] verts, final int i,
+            final float x, final float y, final float color, final float u,
+            final float v) {
+        verts[i] = x;
+        verts[i + 1] = y;
+        verts[i + 2] = color;
+        verts[i + 3] = u;
+        verts[i + 4] = v;
+        return i + VERTEX_SIZE;
+    }
+
+    public void dispose() {
+        quadIndices.dispose();
+    }
+}
@@ -0,0 +1,56 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Supplies the chunks of a map too large to keep in memory, for a
+ * {@link ChunkStreamer}. Chunks are loaded from worker threads, so
+ * implementations must be thread-safe.
+ */
+
+public interface ChunkSource {
+
+    /**
+     * Gets the width and height of a chunk in tiles.
+     *
+     * @return the chunk size
+     */
+
+    int getChunkSize();
+
+    int getTileWidth();
+
+    int getTileHeight();
+
+    /**
+     * Gets the tilesets the gids of the chunks refer to.
+     *
+     * @return the tilesets
+     */
+
+    List<Tileset> getTilesets();
+
+    /**
+     * Gets the names of the layers of every chunk.
+     *
+     * @return the layer names, in drawing order
+     */
+
+    List<String> getLayerNames();
+
+    /**
+     * Loads a chunk.
+     *
+     * @param chunkX
+     *            the column of the chunk, in chunks
+     * @param chunkY
+     *            the row of the chunk, in chunks
+     * @return the chunk, or null if the map has none there
+     * @throws IOException
+     *             if the chunk could not be read
+     */
+
+    MapChunk loadChunk(int chunkX, int chunkY) throws IOException;
+
+}
@@ -0,0 +1,328 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the chunks of a {@link ChunkSource} around the view resident. At most
+ * a set number of chunks are held, the least recently viewed ones being
+ * evicted first; chunks ahead of the view in its direction of travel are
+ * loaded on a worker pool before they come into view.
+ *
+ * Everything but the loading happens on the thread calling
+ * {@link #update(double, double, int, int)}, so eviction listeners and the
+ * chunks returned by {@link #getChunk(int, int)} need no synchronization.
+ */
+
+public final class ChunkStreamer {
+
+    private static final Logger LOG = LogManager.getLogger(ChunkStreamer.class);
+
+    /**
+     * Notified when a chunk leaves memory, e.g. to release what was built from
+     * it.
+     */
+
+    public interface EvictionListener {
+
+        void chunkEvicted(MapChunk chunk);
+
+    }
+
+    private final ChunkSource source;
+
+    private final Executor workers;
+
+    private final int chunkSize;
+
+    private final int maxResident;
+
+    /** The current bound, raised if the view alone needs more chunks */
+    private int capacity;
+
+    private int prefetchDistance = 1;
+
+    private EvictionListener listener;
+
+    /** Chunks in access order; null for chunks the source doesn't have */
+    private final LinkedHashMap<Long, MapChunk> resident;
+
+    private final Set<Long> pending = Collections
+            .newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    private final Queue<Loaded> loaded = new ConcurrentLinkedQueue<Loaded>();
+
+    private int firstX, firstY, lastX, lastY;
+
+    private double lastViewX, lastViewY;
+
+    private boolean hasView;
+
+    private volatile boolean disposed;
+
+    /**
+     * Creates a streamer.
+     *
+     * @param source
+     *            the source of the chunks
+     * @param workers
+     *            the pool to prefetch on
+     * @param maxResident
+     *            the most chunks to keep in memory, including those in view
+     *            and being prefetched
+     */
+
+    public ChunkStreamer(final ChunkSource source, final Executor workers,
+            final int maxResident) {
+        if (maxResident <= 0) {
+            throw new IllegalArgumentException(
+                    "maxResident must be positive");
+        }
+
+        this.source = source;
+        this.workers = workers;
+        this.maxResident = maxResident;
+        capacity = maxResident;
+        chunkSize = source.getChunkSize();
+
+        resident = new LinkedHashMap<Long, MapChunk>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Long, MapChunk> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                evicted(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public ChunkSource getSource() {
+        return source;
+    }
+
+    /**
+     * Sets how many chunks ahead of the view are prefetched.
+     *
+     * @param chunks
+     *            the distance in chunks, 0 to disable prefetching
+     */
+
+    public void setPrefetchDistance(final int chunks) {
+        if (chunks < 0) {
+            throw new IllegalArgumentException(
+                    "prefetch distance must not be negative");
+        }
+        prefetchDistance = chunks;
+    }
+
+    public void setEvictionListener(final EvictionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Pages chunks in and out around the view. Chunks in view that were not
+     * prefetched in time are loaded on the calling thread.
+     *
+     * @param viewX
+     *            the left of the view in map pixels
+     * @param viewY
+     *            the top of the view in map pixels
+     * @param viewWidth
+     *            the width of the view in pixels
+     * @param viewHeight
+     *            the height of the view in pixels
+     */
+
+    public void update(final double viewX, final double viewY,
+            final int viewWidth, final int viewHeight) {
+
+        final int spanX = chunkSize * source.getTileWidth();
+        final int spanY = chunkSize * source.getTileHeight();
+
+        firstX = (int) Math.floor(viewX / spanX);
+        firstY = (int) Math.floor(viewY / spanY);
+        lastX = (int) Math.floor((viewX + viewWidth - 1) / spanX);
+        lastY = (int) Math.floor((viewY + viewHeight - 1) / spanY);
+
+        // prefetch past the edges the view is moving towards
+        int aheadX0 = firstX, aheadX1 = lastX;
+        int aheadY0 = firstY, aheadY1 = lastY;
+
+        if (hasView) {
+            if (viewX > lastViewX) {
+                aheadX1 += prefetchDistance;
+            } else if (viewX < lastViewX) {
+                aheadX0 -= prefetchDistance;
+            }
+            if (viewY > lastViewY) {
+                aheadY1 += prefetchDistance;
+            } else if (viewY < lastViewY) {
+                aheadY0 -= prefetchDistance;
+            }
+        }
+
+        lastViewX = viewX;
+        lastViewY = viewY;
+        hasView = true;
+
+        // never evict what this frame draws or has just asked for
+        capacity = Math.max(maxResident, (aheadX1 - aheadX0 + 1)
+                * (aheadY1 - aheadY0 + 1));
+
+        Loaded done;
+        while ((done = loaded.poll()) != null) {
+            pending.remove(done.key);
+
+            if (!resident.containsKey(done.key)) {
+                resident.put(done.key, done.chunk);
+            }
+        }
+
+        for (int cy = aheadY0; cy <= aheadY1; cy++) {
+            for (int cx = aheadX0; cx <= aheadX1; cx++) {
+                if (cx < firstX || cx > lastX || cy < firstY || cy > lastY) {
+                    prefetch(cx, cy);
+                }
+            }
+        }
+
+        // touched last, so the view is the most recently used
+        for (int cy = firstY; cy <= lastY; cy++) {
+            for (int cx = firstX; cx <= lastX; cx++) {
+                final Long key = key(cx, cy);
+
+                if (resident.get(key) == null && !resident.containsKey(key)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Loading chunk {},{} on demand", cx, cy);
+                    }
+                    resident.put(key, load(cx, cy));
+                }
+            }
+        }
+    }
+
+    private void prefetch(final int cx, final int cy) {
+        final Long key = key(cx, cy);
+
+        if (resident.containsKey(key) || !pending.add(key)) {
+            return;
+        }
+
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (disposed) {
+                    pending.remove(key);
+                    return;
+                }
+                try {
+                    loaded.add(new Loaded(key, source.loadChunk(cx, cy)));
+                } catch (final IOException e) {
+                    LOG.error("Could not prefetch chunk " + cx + "," + cy, e);
+                    pending.remove(key);
+                } catch (final RuntimeException e) {
+                    LOG.error("Could not prefetch chunk " + cx + "," + cy, e);
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    private MapChunk load(final int cx, final int cy) {
+        try {
+            return source.loadChunk(cx, cy);
+        } catch (final IOException e) {
+            LOG.error("Could not load chunk " + cx + "," + cy, e);
+            return null;
+        }
+    }
+
+    private void evicted(final MapChunk chunk) {
+        if (chunk != null && listener != null) {
+            listener.chunkEvicted(chunk);
+        }
+    }
+
+    /**
+     * Gets a resident chunk.
+     *
+     * @param chunkX
+     *            the column of the chunk
+     * @param chunkY
+     *            the row of the chunk
+     * @return the chunk, or null if it is not resident or the source has none
+     */
+
+    public MapChunk getChunk(final int chunkX, final int chunkY) {
+        return resident.get(key(chunkX, chunkY));
+    }
+
+    /** @return the column of the leftmost chunk in view at the last update */
+    public int getFirstVisibleX() {
+        return firstX;
+    }
+
+    /** @return the row of the topmost chunk in view at the last update */
+    public int getFirstVisibleY() {
+        return firstY;
+    }
+
+    /** @return the column of the rightmost chunk in view at the last update */
+    public int getLastVisibleX() {
+        return lastX;
+    }
+
+    /** @return the row of the bottom chunk in view at the last update */
+    public int getLastVisibleY() {
+        return lastY;
+    }
+
+    public int getResidentCount() {
+        return resident.size();
+    }
+
+    /**
+     * Evicts every chunk and drops prefetches still in flight. The worker pool
+     * is not shut down.
+     */
+
+    public void dispose() {
+        disposed = true;
+
+        for (final MapChunk chunk : resident.values()) {
+            evicted(chunk);
+        }
+        resident.clear();
+        loaded.clear();
+    }
+
+    private static Long key(final int chunkX, final int chunkY) {
+        return (long) chunkX << 32 | chunkY & 0xFFFFFFFFL;
+    }
+
+    private static final class Loaded {
+
+        final Long key;
+        final MapChunk chunk;
+
+        Loaded(final Long key, final MapChunk chunk) {
+            this.key = key;
+            this.chunk = chunk;
+        }
+    }
+}
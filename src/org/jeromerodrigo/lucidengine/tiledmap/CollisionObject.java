@@ -8,6 +8,8 @@ import org.dyn4j.geometry.Vector2;
 
 public class CollisionObject extends Body {
 
+    private final float mapX, mapY, mapWidth, mapHeight;
+
     /**
      * Creates a rectangular collision object. Used to be added to the physics
      * engine/world.
@@ -30,6 +32,11 @@ public class CollisionObject extends Body {
             final float height, final int tileWidth, final int tileHeight) {
         super();
 
+        mapX = x;
+        mapY = y;
+        mapWidth = width;
+        mapHeight = height;
+
         final Polygon poly = Geometry.createPolygon(new Vector2(0, 0),
                 new Vector2(width, 0), new Vector2(width, height), new Vector2(
                         0, height));
@@ -42,4 +49,36 @@ public class CollisionObject extends Body {
         setMass(Type.INFINITE);
     }
 
+    /**
+     * @return the x component of the location as given in the map
+     */
+
+    public float getMapX() {
+        return mapX;
+    }
+
+    /**
+     * @return the y component of the location as given in the map
+     */
+
+    public float getMapY() {
+        return mapY;
+    }
+
+    /**
+     * @return the width of the rectangle
+     */
+
+    public float getMapWidth() {
+        return mapWidth;
+    }
+
+    /**
+     * @return the height of the rectangle
+     */
+
+    public float getMapHeight() {
+        return mapHeight;
+    }
+
 }
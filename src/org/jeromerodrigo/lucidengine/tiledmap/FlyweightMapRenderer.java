@@ -0,0 +1,215 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeromerodrigo.lucidengine.Camera;
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureAtlas;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
+
+/**
+ * Renders the tile layers of an orthogonal map straight from their gids. The
+ * only per-tile state is one texture and one set of texture coordinates per
+ * tile id, so memory grows with the number of distinct tiles in the tilesets
+ * rather than with the map; each frame the visible cells are read from the
+ * layers and emitted into the batch as quads.
+ *
+ * Tile animations cost nothing per cell: before drawing, the entry of each
+ * animated tile id is pointed at the frame the {@link TileAnimator} shows at
+ * the time being drawn.
+ *
+ * Prefer {@link OrthogonalMapRenderer} when its chunk meshes fit in memory,
+ * as it doesn't touch individual cells when drawing.
+ */
+
+public class FlyweightMapRenderer extends MapRenderer {
+
+    /** Floats per tile id in {@link #regions}: u, v, u2, v2, width, height */
+    private static final int REGION_SIZE = 6;
+
+    /** The gid of index 0 of the tables */
+    private final int baseGid;
+
+    /** The texture of each tile id, null for ids no tileset covers */
+    private final Texture[] textures;
+
+    private final float[] regions;
+
+    /** The tileset and image of each animation of the animator */
+    private final Tileset[] animatedTilesets;
+    private final TextureRegion[] animatedImages;
+
+    public FlyweightMapRenderer(final TiledMap map, final Camera cam) {
+        this(map, cam, (TextureAtlas) null);
+    }
+
+    /**
+     * Creates a renderer taking tileset images from an atlas where possible.
+     *
+     * @see MapRenderer#loadTilesetRegions(List, TextureAtlas)
+     */
+
+    public FlyweightMapRenderer(final TiledMap map, final Camera cam,
+            final TextureAtlas atlas) {
+        this(map, cam, loadTilesetRegions(map.getTilesets(), atlas));
+    }
+
+    /**
+     * Creates a renderer from tileset textures that were already uploaded.
+     *
+     * @see MapRenderer#wrapTilesetTextures(Map)
+     */
+
+    public FlyweightMapRenderer(final TiledMap map, final Camera cam,
+            final Map<Tileset, Texture> textures) {
+        this(map, cam, wrapTilesetTextures(textures));
+    }
+
+    private FlyweightMapRenderer(final TiledMap map, final Camera cam,
+            final HashMap<Tileset, TextureRegion> regionByTilesetMap) {
+        super(map, cam, regionByTilesetMap);
+
+        int first = Integer.MAX_VALUE;
+        int last = 0;
+
+        for (final Tileset ts : map.getTilesets()) {
+            first = Math.min(first, ts.FIRST_GID);
+            last = Math.max(last, ts.LAST_GID);
+        }
+
+        baseGid = first;
+        final int count = last >= first ? last - first + 1 : 0;
+
+        textures = new Texture[count];
+        regions = new float[count * REGION_SIZE];
+
+        for (final Tileset ts : map.getTilesets()) {
+            final TextureRegion image = regionByTilesetMap.get(ts);
+
+            for (int gid = ts.FIRST_GID; gid <= ts.LAST_GID; gid++) {
+                final int r = (gid - baseGid) * REGION_SIZE;
+
+                textures[gid - baseGid] = image.getTexture();
+                ts.getRegionUVs(gid, image, regions, r);
+                regions[r + 4] = ts.TILE_W;
+                regions[r + 5] = ts.TILE_H;
+            }
+        }
+
+        animatedTilesets = new Tileset[animator.getAnimationCount()];
+        animatedImages = new TextureRegion[animatedTilesets.length];
+
+        for (int a = 0; a < animatedTilesets.length; a++) {
+            animatedTilesets[a] = map.getTileset(animator.getAnimatedGid(a));
+            animatedImages[a] = regionByTilesetMap.get(animatedTilesets[a]);
+        }
+
+        updateAnimations();
+    }
+
+    /**
+     * Points the entry of every animated tile id at its current frame.
+     */
+
+    private void updateAnimations() {
+        for (int a = 0; a < animatedTilesets.length; a++) {
+            animatedTilesets[a].getRegionUVs(animator.getCurrentGid(a),
+                    animatedImages[a], regions,
+                    (animator.getAnimatedGid(a) - baseGid) * REGION_SIZE);
+        }
+    }
+
+    @Override
+    protected TiledMap.Orientation getRenderOrientation() {
+        return TiledMap.Orientation.ORTHOGONAL;
+    }
+
+    @Override
+    public void render(final SpriteBatch batch, final float xRender,
+            final float yRender, final int mapX, final int mapY,
+            final int tilesX, final int tilesY) {
+
+        setAnimationTime(map.getTileAnimator().getTime());
+
+        for (final TileLayer layer : map.getTileLayers()) {
+
+            if (layer.isShown()) {
+                final float alpha = applyOpacity(batch, layer);
+                renderLayer(batch, layer, mapX, mapY, mapX + tilesX, mapY
+                        + tilesY, xRender, yRender);
+                restoreAlpha(batch, alpha);
+            }
+
+        }
+
+    }
+
+    @Override
+    protected void setAnimationTime(final long time) {
+        if (time != animator.getTime()) {
+            super.setAnimationTime(time);
+            updateAnimations();
+        }
+    }
+
+    @Override
+    protected void renderLayer(final SpriteBatch batch, final int index,
+            final float left, final float top, final float right,
+            final float bottom, final float offsetX, final float offsetY) {
+
+        final int tileWidth = map.getTileWidth();
+        final int tileHeight = map.getTileHeight();
+
+        renderLayer(batch, map.getTileLayers().get(index),
+                (int) Math.floor(left / tileWidth),
+                (int) Math.floor(top / tileHeight),
+                (int) Math.floor(right / tileWidth) + 1,
+                (int) Math.floor(bottom / tileHeight) + 2, offsetX, offsetY);
+
+    }
+
+    /**
+     * Draws the cells of a layer within a block of tiles, shifted by an offset
+     * in pixels.
+     */
+
+    private void renderLayer(final SpriteBatch batch, final TileLayer layer,
+            final int mapX, final int mapY, final int mapXEnd,
+            final int mapYEnd, final float offsetX, final float offsetY) {
+
+        final int xStart = mapX < 0 ? 0 : mapX;
+        final int yStart = mapY < 0 ? 0 : mapY;
+        final int xEnd = Math.min(mapXEnd, layer.getWidth());
+        final int yEnd = Math.min(mapYEnd, layer.getHeight());
+        final int tileWidth = map.getTileWidth();
+        final int tileHeight = map.getTileHeight();
+
+        final IntBuffer tiles = layer.getTiles();
+
+        for (int y = yStart; y < yEnd; y++) {
+
+            final float drawY = offsetY + y * tileHeight;
+
+            for (int x = xStart, i = layer.getIndex(xStart, y); x < xEnd; x++, i++) {
+
+                final int id = (tiles.get(i) & TileLayer.GID_MASK) - baseGid;
+
+                // empty cells are gid 0, below every tileset
+                if (id < 0 || id >= textures.length || textures[id] == null) {
+                    continue;
+                }
+
+                final int r = id * REGION_SIZE;
+
+                batch.draw(textures[id], offsetX + x * tileWidth, drawY,
+                        regions[r + 4], regions[r + 5], regions[r],
+                        regions[r + 1], regions[r + 2], regions[r + 3]);
+            }
+        }
+    }
+
+}
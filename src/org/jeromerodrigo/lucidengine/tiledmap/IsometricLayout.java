@@ -0,0 +1,276 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+/**
+ * The screen layout of an isometric map, as Tiled draws it: cell (x, y) is a
+ * diamond whose top corner is at ((x - y) * tileWidth / 2 + originX, (x + y)
+ * * tileHeight / 2), with the origin chosen so the map starts at screen x 0.
+ * A tile image sits on the bottom-left of its cell's bounding box, so tiles
+ * taller than a cell reach up over the cells behind them.
+ *
+ * Tiles are visited back to front: by diagonal row x + y, then by x. Cells in
+ * one diagonal row never overlap each other, so that is a correct painter's
+ * order.
+ *
+ * Doesn't touch GL, so it can be tested headless.
+ */
+
+public final class IsometricLayout {
+
+    /**
+     * Receives the tiles of a layer in drawing order.
+     */
+
+    public interface TileVisitor {
+
+        /**
+         * @param x
+         *            the column of the cell
+         * @param y
+         *            the row of the cell
+         * @param gid
+         *            the gid of the tile, without its flip flags
+         * @param tileset
+         *            the tileset of the gid
+         * @param x1
+         *            the left of the tile image on screen
+         * @param y1
+         *            the top of the tile image
+         * @param x2
+         *            the right of the tile image
+         * @param y2
+         *            the bottom of the tile image
+         */
+
+        void visit(int x, int y, int gid, Tileset tileset, float x1, float y1,
+                float x2, float y2);
+
+    }
+
+    private final TiledMap map;
+
+    private final float halfWidth, halfHeight;
+
+    private final int tileHeight;
+
+    private final float originX;
+
+    /** The largest tile image, at least a cell */
+    private final int maxImageWidth, maxImageHeight;
+
+    public IsometricLayout(final TiledMap map) {
+        this.map = map;
+
+        halfWidth = map.getTileWidth() / 2f;
+        halfHeight = map.getTileHeight() / 2f;
+        tileHeight = map.getTileHeight();
+        originX = map.getHeight() * halfWidth;
+
+        int maxW = map.getTileWidth();
+        int maxH = map.getTileHeight();
+
+        for (final Tileset ts : map.getTilesets()) {
+            maxW = Math.max(maxW, ts.TILE_W);
+            maxH = Math.max(maxH, ts.TILE_H);
+        }
+
+        maxImageWidth = maxW;
+        maxImageHeight = maxH;
+    }
+
+    /**
+     * Returns true if no tile image is larger than a cell, in which case the
+     * tiles of a layer don't overlap and can be drawn in any order.
+     *
+     * @return true if every tile is flat
+     */
+
+    public boolean isFlat() {
+        return maxImageWidth == map.getTileWidth()
+                && maxImageHeight == map.getTileHeight();
+    }
+
+    /**
+     * Gets the screen x of the top corner of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the x in pixels
+     */
+
+    public float getScreenX(final int x, final int y) {
+        return originX + (x - y) * halfWidth;
+    }
+
+    /**
+     * Gets the screen y of the top corner of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the y in pixels
+     */
+
+    public float getScreenY(final int x, final int y) {
+        return (x + y) * halfHeight;
+    }
+
+    /**
+     * Visits, back to front, the tiles of a layer whose images intersect a
+     * screen rectangle. Only the diagonal rows crossing the rectangle, and the
+     * span of each row crossing it, are walked, rather than a bounding box of
+     * cells.
+     *
+     * @param layer
+     *            the layer
+     * @param left
+     *            the left of the rectangle
+     * @param top
+     *            the top of the rectangle
+     * @param right
+     *            the right of the rectangle
+     * @param bottom
+     *            the bottom of the rectangle
+     * @param visitor
+     *            the visitor
+     */
+
+    public void visitVisible(final TileLayer layer, final float left,
+            final float top, final float right, final float bottom,
+            final TileVisitor visitor) {
+
+        final int width = layer.getWidth();
+        final int height = layer.getHeight();
+
+        final int sFirst = Math.max(0, getFirstDiagonal(top));
+        final int sLast = Math.min(width + height - 2, getLastDiagonal(bottom));
+        final int dFirst = getFirstColumn(left);
+        final int dLast = getLastColumn(right);
+
+        for (int s = sFirst; s <= sLast; s++) {
+
+            // x = (s + d) / 2, within the row and the map
+            final int xFirst = Math.max(Math.max(0, s - (height - 1)),
+                    (int) Math.ceil((s + dFirst) / 2.0));
+            final int xLast = Math.min(Math.min(width - 1, s),
+                    (int) Math.floor((s + dLast) / 2.0));
+
+            for (int x = xFirst; x <= xLast; x++) {
+                visitCell(layer, x, s - x, left, top, right, bottom, visitor);
+            }
+        }
+    }
+
+    /**
+     * Gets the block of cells holding every tile whose image can intersect a
+     * screen rectangle, e.g. to find the cached chunks in view.
+     *
+     * @param left
+     *            the left of the rectangle
+     * @param top
+     *            the top of the rectangle
+     * @param right
+     *            the right of the rectangle
+     * @param bottom
+     *            the bottom of the rectangle
+     * @param out
+     *            receives the first column, first row, last column and last
+     *            row of the block, which may lie outside the map
+     */
+
+    public void getVisibleBlock(final float left, final float top,
+            final float right, final float bottom, final int[] out) {
+
+        final int sFirst = getFirstDiagonal(top);
+        final int sLast = getLastDiagonal(bottom);
+        final int dFirst = getFirstColumn(left);
+        final int dLast = getLastColumn(right);
+
+        // the corners of the diamond s, d bounds in x = (s + d) / 2 and
+        // y = (s - d) / 2
+        out[0] = (int) Math.floor((sFirst + dFirst) / 2.0);
+        out[1] = (int) Math.floor((sFirst - dLast) / 2.0);
+        out[2] = (int) Math.ceil((sLast + dLast) / 2.0);
+        out[3] = (int) Math.ceil((sLast - dFirst) / 2.0);
+    }
+
+    /** The first diagonal row s = x + y whose images can reach below top */
+    private int getFirstDiagonal(final float top) {
+        return (int) Math.floor((top - tileHeight) / halfHeight);
+    }
+
+    /** The last diagonal row whose images can reach above bottom */
+    private int getLastDiagonal(final float bottom) {
+        return (int) Math.ceil((bottom - tileHeight + maxImageHeight)
+                / halfHeight);
+    }
+
+    /** The first column d = x - y whose images can reach right of left */
+    private int getFirstColumn(final float left) {
+        return (int) Math.floor((left - originX + halfWidth - maxImageWidth)
+                / halfWidth);
+    }
+
+    /** The last column whose images can reach left of right */
+    private int getLastColumn(final float right) {
+        return (int) Math.ceil((right - originX + halfWidth) / halfWidth);
+    }
+
+    /**
+     * Visits, back to front, every tile of a block of a layer.
+     *
+     * @param layer
+     *            the layer
+     * @param xStart
+     *            the first column
+     * @param yStart
+     *            the first row
+     * @param xEnd
+     *            the column after the block
+     * @param yEnd
+     *            the row after the block
+     * @param visitor
+     *            the visitor
+     */
+
+    public void visitBlock(final TileLayer layer, final int xStart,
+            final int yStart, final int xEnd, final int yEnd,
+            final TileVisitor visitor) {
+
+        for (int s = xStart + yStart; s <= xEnd + yEnd - 2; s++) {
+
+            final int xFirst = Math.max(xStart, s - (yEnd - 1));
+            final int xLast = Math.min(xEnd - 1, s - yStart);
+
+            for (int x = xFirst; x <= xLast; x++) {
+                visitCell(layer, x, s - x, Float.NEGATIVE_INFINITY,
+                        Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+                        Float.POSITIVE_INFINITY, visitor);
+            }
+        }
+    }
+
+    private void visitCell(final TileLayer layer, final int x, final int y,
+            final float left, final float top, final float right,
+            final float bottom, final TileVisitor visitor) {
+
+        final int gid = layer.getTile(x, y) & TileLayer.GID_MASK;
+        final Tileset tileset = map.getTileset(gid);
+
+        if (tileset == null) {
+            return;
+        }
+
+        final float x1 = getScreenX(x, y) - halfWidth;
+        final float y2 = getScreenY(x, y) + tileHeight;
+        final float x2 = x1 + tileset.TILE_W;
+        final float y1 = y2 - tileset.TILE_H;
+
+        if (x2 > left && x1 < right && y2 > top && y1 < bottom) {
+            visitor.visit(x, y, gid, tileset, x1, y1, x2, y2);
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeromerodrigo.lucidengine.Camera;
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexBufferObject;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureAtlas;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
+import org.lwjgl.util.vector.Vector2f;
+
+/**
+ * Renders the tile layers of an isometric map, laid out by an
+ * {@link IsometricLayout}.
+ *
+ * If no tile is larger than a cell, tiles never overlap and their order
+ * doesn't matter, so the layers are cached as static chunks of
+ * {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE} tiles like
+ * {@link OrthogonalMapRenderer} does, and a frame draws the chunks whose
+ * bounds intersect the view. Otherwise each frame walks the tiles
+ * intersecting the view in diamond space and draws them back to front.
+ *
+ * The camera should be created without map bounds, as those assume an
+ * orthogonal map.
+ */
+
+public class IsometricMapRenderer extends MapRenderer {
+
+    /** The width and height of a chunk in tiles */
+    public static final int CHUNK_SIZE = 32;
+
+    private final IsometricLayout layout;
+
+    /** The tile layers, in document order */
+    private final TileLayer[] layers;
+
+    /** Null unless the map is flat and cached */
+    private final ChunkMeshBuilder meshBuilder;
+
+    /** The chunks of each layer, indexed [layer][cx][cy]; null if empty */
+    private final ChunkMesh[][][] chunks;
+
+    private final boolean[] hasTiles;
+
+    private final Vector2f shift = new Vector2f();
+
+    private final int[] visibleBlock = new int[4];
+
+    private final TileDrawer drawer = new TileDrawer();
+
+    public IsometricMapRenderer(final TiledMap map, final Camera cam) {
+        this(map, cam, (TextureAtlas) null);
+    }
+
+    /**
+     * Creates a renderer taking tileset images from an atlas where possible.
+     *
+     * @see MapRenderer#loadTilesetRegions(List, TextureAtlas)
+     */
+
+    public IsometricMapRenderer(final TiledMap map, final Camera cam,
+            final TextureAtlas atlas) {
+        this(map, cam, loadTilesetRegions(map.getTilesets(), atlas));
+    }
+
+    /**
+     * Creates a renderer from tileset textures that were already uploaded.
+     *
+     * @see MapRenderer#wrapTilesetTextures(Map)
+     */
+
+    public IsometricMapRenderer(final TiledMap map, final Camera cam,
+            final Map<Tileset, Texture> textures) {
+        this(map, cam, wrapTilesetTextures(textures));
+    }
+
+    private IsometricMapRenderer(final TiledMap map, final Camera cam,
+            final HashMap<Tileset, TextureRegion> regionByTilesetMap) {
+        super(map, cam, regionByTilesetMap);
+
+        layout = new IsometricLayout(map);
+
+        layers = map.getTileLayers().toArray(
+                new TileLayer[map.getTileLayers().size()]);
+        hasTiles = new boolean[layers.length];
+
+        if (layout.isFlat()) {
+            meshBuilder = new ChunkMeshBuilder(map.getTilesets(),
+                    regionByTilesetMap, animator, map.getTileWidth(),
+                    map.getTileHeight(), CHUNK_SIZE,
+                    VertexBufferObject.isSupported());
+            chunks = new ChunkMesh[layers.length][][];
+
+            for (int l = 0; l < layers.length; l++) {
+                buildLayer(l);
+            }
+        } else {
+            meshBuilder = null;
+            chunks = null;
+        }
+    }
+
+    /**
+     * Returns true if the layers are cached as static chunks.
+     *
+     * @return true if cached
+     */
+
+    public boolean isCached() {
+        return chunks != null;
+    }
+
+    private void buildLayer(final int l) {
+        final TileLayer layer = layers[l];
+
+        final int chunksX = (layer.getWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final int chunksY = (layer.getHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        chunks[l] = new ChunkMesh[chunksX][chunksY];
+        hasTiles[l] = false;
+
+        for (int cx = 0; cx < chunksX; cx++) {
+            for (int cy = 0; cy < chunksY; cy++) {
+                final int xStart = cx * CHUNK_SIZE;
+                final int yStart = cy * CHUNK_SIZE;
+
+                chunks[l][cx][cy] = meshBuilder.buildIsometric(layout, layer,
+                        xStart, yStart,
+                        Math.min(xStart + CHUNK_SIZE, layer.getWidth()),
+                        Math.min(yStart + CHUNK_SIZE, layer.getHeight()));
+                hasTiles[l] |= chunks[l][cx][cy] != null;
+            }
+        }
+    }
+
+    @Override
+    protected TiledMap.Orientation getRenderOrientation() {
+        return TiledMap.Orientation.ISOMETRIC;
+    }
+
+    @Override
+    public void render(final SpriteBatch batch, final float xRender,
+            final float yRender, final int mapX, final int mapY,
+            final int tilesX, final int tilesY) {
+
+        setAnimationTime(map.getTileAnimator().getTime());
+
+        for (final TileLayer layer : layers) {
+
+            if (!layer.isShown()) {
+                continue;
+            }
+
+            final int xStart = mapX < 0 ? 0 : mapX;
+            final int yStart = mapY < 0 ? 0 : mapY;
+            final int xEnd = Math.min(mapX + tilesX, layer.getWidth());
+            final int yEnd = Math.min(mapY + tilesY, layer.getHeight());
+
+            final float alpha = applyOpacity(batch, layer);
+            drawer.begin(batch, xRender, yRender);
+            layout.visitBlock(layer, xStart, yStart, xEnd, yEnd, drawer);
+            drawer.end();
+            restoreAlpha(batch, alpha);
+        }
+
+    }
+
+    @Override
+    protected void renderLayer(final SpriteBatch batch, final int index,
+            final float left, final float top, final float right,
+            final float bottom, final float offsetX, final float offsetY) {
+
+        if (chunks == null) {
+            drawer.begin(batch, offsetX, offsetY);
+            layout.visitVisible(layers[index], left, top, right, bottom,
+                    drawer);
+            drawer.end();
+            return;
+        }
+
+        if (hasTiles[index]) {
+            renderChunks(batch, index, left, top, right, bottom, offsetX,
+                    offsetY);
+        }
+
+    }
+
+    /**
+     * Draws the chunks of a layer whose bounds intersect a screen rectangle,
+     * shifted by an offset in pixels.
+     */
+
+    private void renderChunks(final SpriteBatch batch, final int l,
+            final float left, final float top, final float right,
+            final float bottom, final float offsetX, final float offsetY) {
+
+        final TileLayer layer = layers[l];
+        final ChunkMesh[][] layerChunks = chunks[l];
+        final float halfWidth = map.getTileWidth() / 2f;
+
+        // only the chunks crossing the block of cells under the view
+        layout.getVisibleBlock(left, top, right, bottom, visibleBlock);
+
+        final int xFirst = Math.max(0, visibleBlock[0]);
+        final int yFirst = Math.max(0, visibleBlock[1]);
+        final int xLast = Math.min(layer.getWidth() - 1, visibleBlock[2]);
+        final int yLast = Math.min(layer.getHeight() - 1, visibleBlock[3]);
+
+        if (xFirst > xLast || yFirst > yLast) {
+            return;
+        }
+
+        final boolean shifted = offsetX != 0f || offsetY != 0f;
+
+        if (shifted) {
+            // sprites batched so far keep the unshifted view
+            batch.flush();
+            shift.set(offsetX, offsetY);
+            batch.getViewMatrix().translate(shift);
+            batch.updateUniforms();
+        }
+
+        for (int cx = xFirst / CHUNK_SIZE; cx <= xLast / CHUNK_SIZE; cx++) {
+
+            final int chunkX = cx * CHUNK_SIZE;
+            final int chunkXLast = Math.min(chunkX + CHUNK_SIZE,
+                    layer.getWidth()) - 1;
+
+            for (int cy = yFirst / CHUNK_SIZE; cy <= yLast / CHUNK_SIZE; cy++) {
+
+                if (layerChunks[cx][cy] == null) {
+                    continue;
+                }
+
+                final int chunkY = cy * CHUNK_SIZE;
+                final int chunkYLast = Math.min(chunkY + CHUNK_SIZE,
+                        layer.getHeight()) - 1;
+
+                // the bounding box of the chunk's diamond
+                final float x1 = layout.getScreenX(chunkX, chunkYLast)
+                        - halfWidth;
+                final float x2 = layout.getScreenX(chunkXLast, chunkY)
+                        + halfWidth;
+                final float y1 = layout.getScreenY(chunkX, chunkY);
+                final float y2 = layout.getScreenY(chunkXLast, chunkYLast)
+                        + map.getTileHeight();
+
+                if (x2 > left && x1 < right && y2 > top && y1 < bottom) {
+                    meshBuilder.render(batch, layerChunks[cx][cy]);
+                }
+            }
+        }
+
+        if (shifted) {
+            // animated tiles queued above still need the shifted view
+            batch.flush();
+            shift.set(-offsetX, -offsetY);
+            batch.getViewMatrix().translate(shift);
+            batch.updateUniforms();
+        }
+
+    }
+
+    private void disposeLayer(final int l) {
+        if (chunks[l] == null) {
+            return;
+        }
+
+        for (final ChunkMesh[] column : chunks[l]) {
+            for (final ChunkMesh chunk : column) {
+                if (chunk != null) {
+                    chunk.dispose();
+                }
+            }
+        }
+        chunks[l] = null;
+    }
+
+    /**
+     * Releases the vertex data of every chunk.
+     */
+
+    public void dispose() {
+        if (chunks == null) {
+            return;
+        }
+
+        for (int l = 0; l < layers.length; l++) {
+            disposeLayer(l);
+        }
+        meshBuilder.dispose();
+    }
+
+    /**
+     * Draws the tiles of a layer one by one into the batch.
+     */
+
+    private final class TileDrawer implements IsometricLayout.TileVisitor {
+
+        private final float[] uvs = new float[4];
+
+        private SpriteBatch batch;
+        private float offsetX, offsetY;
+
+        void begin(final SpriteBatch batch, final float offsetX,
+                final float offsetY) {
+            this.batch = batch;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        @Override
+        public void visit(final int x, final int y, final int gid,
+                final Tileset tileset, final float x1, final float y1,
+                final float x2, final float y2) {
+            final TextureRegion image = regionByTilesetMap.get(tileset);
+
+            tileset.getRegionUVs(animator.getFrame(gid), image, uvs, 0);
+
+            batch.draw(image.getTexture(), x1 + offsetX, y1 + offsetY, x2
+                    - x1, y2 - y1, uvs[0], uvs[1], uvs[2], uvs[3]);
+        }
+
+        void end() {
+            batch = null;
+        }
+    }
+}
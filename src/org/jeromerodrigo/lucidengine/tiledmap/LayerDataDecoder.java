@@ -0,0 +1,420 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Decodes the text of a TMX {@code <data>} element written as CSV or base64,
+ * optionally zlib or gzip compressed, straight into a layer's tile array. The
+ * text is consumed chunk by chunk as the parser reports it and every stage
+ * works on reusable buffers, so no intermediate strings or arrays are built
+ * per layer.
+ */
+
+final class LayerDataDecoder {
+
+    private static final int NONE = 0, ZLIB = 1, GZIP = 2;
+
+    private static final int[] BASE64 = new int[128];
+
+    static {
+        Arrays.fill(BASE64, -1);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = i;
+        }
+    }
+
+    // gzip header flags (RFC 1952)
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+    private final char[] chars = new char[4096];
+    private final byte[] raw = new byte[3072];
+    private final byte[] inflated = new byte[8192];
+
+    private Inflater zlibInflater;
+    private Inflater gzipInflater;
+
+    private boolean csv;
+    private int compression;
+    private Inflater inflater;
+
+    private int[] tiles;
+    private int count;
+    private String layerName;
+
+    // CSV state: the number being read, and whether any digit was seen
+    private long number;
+    private boolean inNumber;
+
+    // base64 state: the bits of the current quad and how many chars it holds
+    private int quad;
+    private int quadChars;
+    private boolean padded;
+    private int rawLength;
+
+    // little endian gid assembly
+    private int word;
+    private int wordBytes;
+
+    // gzip header state
+    private int gzipRead;
+    private int gzipFlags;
+    private int gzipSkip;
+    private boolean gzipHeaderDone;
+
+    /**
+     * Starts decoding the data of a layer.
+     *
+     * @param encoding
+     *            the encoding attribute; "csv" or "base64"
+     * @param compressionName
+     *            the compression attribute; null, "zlib" or "gzip"
+     * @param layer
+     *            the name of the layer, for error messages
+     * @param layerTiles
+     *            the array to write the gids to
+     * @throws XMLStreamException
+     *             if the encoding or compression is not supported
+     */
+
+    void begin(final String encoding, final String compressionName,
+            final String layer, final int[] layerTiles)
+            throws XMLStreamException {
+
+        if ("csv".equals(encoding)) {
+            csv = true;
+        } else if ("base64".equals(encoding)) {
+            csv = false;
+        } else {
+            throw new XMLStreamException("Unsupported encoding " + encoding
+                    + " in layer " + layer);
+        }
+
+        if (compressionName == null) {
+            compression = NONE;
+            inflater = null;
+        } else if ("zlib".equals(compressionName)) {
+            compression = ZLIB;
+            if (zlibInflater == null) {
+                zlibInflater = new Inflater();
+            }
+            inflater = zlibInflater;
+        } else if ("gzip".equals(compressionName)) {
+            compression = GZIP;
+            if (gzipInflater == null) {
+                // gzip wraps a raw deflate stream; the header is skipped here
+                gzipInflater = new Inflater(true);
+            }
+            inflater = gzipInflater;
+        } else {
+            throw new XMLStreamException("Unsupported compression "
+                    + compressionName + " in layer " + layer);
+        }
+
+        if (csv && compression != NONE) {
+            throw new XMLStreamException("CSV data cannot be compressed, layer "
+                    + layer);
+        }
+
+        if (inflater != null) {
+            inflater.reset();
+        }
+
+        tiles = layerTiles;
+        layerName = layer;
+        count = 0;
+        number = 0;
+        inNumber = false;
+        quad = 0;
+        quadChars = 0;
+        padded = false;
+        rawLength = 0;
+        word = 0;
+        wordBytes = 0;
+        gzipRead = 0;
+        gzipFlags = 0;
+        gzipSkip = 0;
+        gzipHeaderDone = false;
+    }
+
+    /**
+     * Decodes the text the reader is currently positioned on.
+     *
+     * @param xmlr
+     *            a reader positioned on a CHARACTERS, CDATA or SPACE event
+     * @throws XMLStreamException
+     *             if the text is malformed
+     */
+
+    void characters(final XMLStreamReader xmlr) throws XMLStreamException {
+        int start = 0;
+        int read;
+
+        do {
+            read = xmlr.getTextCharacters(start, chars, 0, chars.length);
+            start += read;
+
+            if (csv) {
+                decodeCsv(read);
+            } else {
+                decodeBase64(read);
+            }
+        } while (read == chars.length);
+    }
+
+    /**
+     * Finishes decoding the current layer.
+     *
+     * @throws XMLStreamException
+     *             if the data did not hold exactly one gid per cell
+     */
+
+    void end() throws XMLStreamException {
+        if (csv) {
+            if (inNumber) {
+                emit((int) number);
+            }
+        } else {
+            if (quadChars == 1) {
+                throw new XMLStreamException("Truncated base64 in layer "
+                        + layerName);
+            }
+            if (quadChars > 1 && !padded) {
+                // unpadded trailing quad
+                finishQuad();
+            }
+            flushRaw();
+        }
+
+        if (count != tiles.length || wordBytes != 0) {
+            throw new XMLStreamException("Layer " + layerName + " holds "
+                    + count + " tiles, expected " + tiles.length);
+        }
+
+        tiles = null;
+    }
+
+    /**
+     * Releases the native resources of the inflaters.
+     */
+
+    void dispose() {
+        if (zlibInflater != null) {
+            zlibInflater.end();
+            zlibInflater = null;
+        }
+        if (gzipInflater != null) {
+            gzipInflater.end();
+            gzipInflater = null;
+        }
+    }
+
+    private void decodeCsv(final int length) throws XMLStreamException {
+        for (int i = 0; i < length; i++) {
+            final char c = chars[i];
+
+            if (c >= '0' && c <= '9') {
+                number = number * 10 + (c - '0');
+                inNumber = true;
+            } else if (c == ',' || Character.isWhitespace(c)) {
+                if (inNumber) {
+                    // gids are unsigned; flip flags live in the top bits
+                    emit((int) number);
+                    number = 0;
+                    inNumber = false;
+                }
+            } else {
+                throw new XMLStreamException("Unexpected '" + c
+                        + "' in CSV data of layer " + layerName);
+            }
+        }
+    }
+
+    private void decodeBase64(final int length) throws XMLStreamException {
+        for (int i = 0; i < length; i++) {
+            final char c = chars[i];
+
+            if (c == '=') {
+                if (!padded) {
+                    finishQuad();
+                    padded = true;
+                }
+                continue;
+            }
+
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+
+            final int bits = c < 128 ? BASE64[c] : -1;
+
+            if (bits < 0 || padded) {
+                throw new XMLStreamException("Unexpected '" + c
+                        + "' in base64 data of layer " + layerName);
+            }
+
+            quad = quad << 6 | bits;
+
+            if (++quadChars == 4) {
+                raw[rawLength] = (byte) (quad >> 16);
+                raw[rawLength + 1] = (byte) (quad >> 8);
+                raw[rawLength + 2] = (byte) quad;
+                rawLength += 3;
+                quad = 0;
+                quadChars = 0;
+
+                if (rawLength == raw.length) {
+                    flushRaw();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the bytes of a quad cut short by padding.
+     */
+
+    private void finishQuad() throws XMLStreamException {
+        if (quadChars < 2) {
+            return;
+        }
+
+        final int bits = quad << 6 * (4 - quadChars);
+        raw[rawLength++] = (byte) (bits >> 16);
+
+        if (quadChars == 3) {
+            raw[rawLength++] = (byte) (bits >> 8);
+        }
+
+        quad = 0;
+        quadChars = 0;
+        flushRaw();
+    }
+
+    /**
+     * Hands the decoded bytes on, through the inflater if compressed.
+     */
+
+    private void flushRaw() throws XMLStreamException {
+        int offset = 0;
+
+        if (compression == GZIP && !gzipHeaderDone) {
+            offset = skipGzipHeader(rawLength);
+        }
+
+        if (compression == NONE) {
+            assemble(raw, offset, rawLength);
+        } else if (offset < rawLength && !inflater.finished()) {
+            inflater.setInput(raw, offset, rawLength - offset);
+
+            try {
+                // the inflater keeps reading raw, so drain it before reuse
+                while (!inflater.needsInput() && !inflater.finished()) {
+                    final int n = inflater.inflate(inflated);
+
+                    if (n == 0 && inflater.needsDictionary()) {
+                        throw new XMLStreamException(
+                                "Preset dictionary in layer " + layerName);
+                    }
+
+                    assemble(inflated, 0, n);
+                }
+            } catch (final DataFormatException e) {
+                throw new XMLStreamException("Corrupt compressed data in layer "
+                        + layerName + ": " + e.getMessage());
+            }
+        }
+
+        rawLength = 0;
+    }
+
+    /**
+     * Consumes gzip header bytes from the start of {@link #raw}.
+     *
+     * @return the offset of the first byte after the header, or length if
+     *         the header continues in the next chunk
+     */
+
+    private int skipGzipHeader(final int length) throws XMLStreamException {
+        int i = 0;
+
+        while (i < length && !gzipHeaderDone) {
+            final int b = raw[i++] & 0xFF;
+
+            if (gzipRead < 10) {
+                if (gzipRead == 0 && b != 0x1f || gzipRead == 1 && b != 0x8b
+                        || gzipRead == 2 && b != 8) {
+                    throw new XMLStreamException("Bad gzip header in layer "
+                            + layerName);
+                }
+                if (gzipRead == 3) {
+                    gzipFlags = b;
+                }
+                gzipRead++;
+            } else if ((gzipFlags & FEXTRA) != 0) {
+                // two length bytes, then that many bytes of extra field
+                if (gzipRead == 10) {
+                    gzipSkip = b;
+                    gzipRead++;
+                } else if (gzipRead == 11) {
+                    gzipSkip |= b << 8;
+                    gzipRead++;
+                } else {
+                    gzipSkip--;
+                }
+                if (gzipRead == 12 && gzipSkip == 0) {
+                    gzipFlags &= ~FEXTRA;
+                }
+            } else if ((gzipFlags & FNAME) != 0) {
+                if (b == 0) {
+                    gzipFlags &= ~FNAME;
+                }
+            } else if ((gzipFlags & FCOMMENT) != 0) {
+                if (b == 0) {
+                    gzipFlags &= ~FCOMMENT;
+                }
+            } else if ((gzipFlags & FHCRC) != 0) {
+                if (++gzipSkip == 2) {
+                    gzipFlags &= ~FHCRC;
+                }
+            }
+
+            if (gzipRead >= 10
+                    && (gzipFlags & (FEXTRA | FNAME | FCOMMENT | FHCRC)) == 0) {
+                gzipHeaderDone = true;
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Assembles little endian gids from decoded bytes.
+     */
+
+    private void assemble(final byte[] bytes, final int offset, final int end)
+            throws XMLStreamException {
+        for (int i = offset; i < end; i++) {
+            word |= (bytes[i] & 0xFF) << 8 * wordBytes;
+
+            if (++wordBytes == 4) {
+                emit(word);
+                word = 0;
+                wordBytes = 0;
+            }
+        }
+    }
+
+    private void emit(final int gid) throws XMLStreamException {
+        if (count == tiles.length) {
+            throw new XMLStreamException("Too many tiles in layer " + layerName);
+        }
+        tiles[count++] = gid;
+    }
+
+}
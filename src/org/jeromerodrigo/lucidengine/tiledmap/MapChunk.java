@@ -0,0 +1,46 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+/**
+ * A square block of a streamed map, holding one {@link TileLayer} per layer of
+ * its {@link ChunkSource}, in the order of {@link ChunkSource#getLayerNames()}.
+ */
+
+public final class MapChunk {
+
+    private final int chunkX, chunkY;
+
+    private final TileLayer[] layers;
+
+    /**
+     * @param chunkX
+     *            the column of the chunk, in chunks
+     * @param chunkY
+     *            the row of the chunk, in chunks
+     * @param layers
+     *            the tiles of each layer, all chunk size square
+     */
+
+    public MapChunk(final int chunkX, final int chunkY,
+            final TileLayer[] layers) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.layers = layers;
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkY() {
+        return chunkY;
+    }
+
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    public TileLayer getLayer(final int index) {
+        return layers[index];
+    }
+
+}
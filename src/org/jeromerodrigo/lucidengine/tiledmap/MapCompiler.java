@@ -0,0 +1,184 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Writes a TiledMap in the binary format read by {@link BinaryMapLoader}, so
+ * maps can be compiled once offline instead of parsing TMX on every launch.
+ *
+ * All values are little endian ints or floats; strings are an int byte count
+ * followed by UTF-8 bytes. The file holds, in order: the magic number and
+ * version; orientation (ordinal, -1 if unknown), width, height, tile width
+ * and tile height; the map properties as name/value pairs; the tilesets as
+ * source, image width and height, tile width and height, first gid and tile
+ * animations, each as tile id and frame count followed by the tile id and
+ * duration of every frame; the collision rectangles as x, y, width and
+ * height; and the tile layers, in document order, as name, width, height,
+ * visible (0 or 1), opacity and horizontal and vertical parallax followed,
+ * from the next 4-byte boundary, by the row-major gids.
+ */
+
+public final class MapCompiler {
+
+    private ByteBuffer out = ByteBuffer.allocate(64 * 1024).order(
+            ByteOrder.LITTLE_ENDIAN);
+
+    private MapCompiler() {
+        // Use compile()
+    }
+
+    /**
+     * Compiles a map to a file.
+     *
+     * @param map
+     *            the map to compile
+     * @param path
+     *            the file to write, replaced if it exists
+     * @throws IOException
+     *             if the file could not be written
+     */
+
+    public static void compile(final TiledMap map, final String path)
+            throws IOException {
+        final MapCompiler compiler = new MapCompiler();
+        compiler.write(map);
+
+        final ByteBuffer data = compiler.out;
+        data.flip();
+
+        final FileChannel channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void write(final TiledMap map) {
+        putInt(BinaryMapLoader.MAGIC);
+        putInt(BinaryMapLoader.VERSION);
+
+        putInt(map.getOrientation() == null ? -1 : map.getOrientation()
+                .ordinal());
+        putInt(map.getWidth());
+        putInt(map.getHeight());
+        putInt(map.getTileWidth());
+        putInt(map.getTileHeight());
+
+        putInt(map.getProperties().size());
+        for (final Map.Entry<String, String> property : map.getProperties()
+                .entrySet()) {
+            putString(property.getKey());
+            putString(property.getValue());
+        }
+
+        putInt(map.getTilesets().size());
+        for (final Tileset ts : map.getTilesets()) {
+            putString(ts.SOURCE);
+            putInt(ts.WIDTH);
+            putInt(ts.HEIGHT);
+            putInt(ts.TILE_W);
+            putInt(ts.TILE_H);
+            putInt(ts.FIRST_GID);
+
+            putInt(ts.getAnimations().size());
+            for (final TileAnimation anim : ts.getAnimations()) {
+                putInt(anim.getTileId());
+                putInt(anim.getFrameCount());
+                for (int f = 0; f < anim.getFrameCount(); f++) {
+                    putInt(anim.getFrameTileId(f));
+                    putInt(anim.getFrameDuration(f));
+                }
+            }
+        }
+
+        putInt(map.getCollisionObjects().size());
+        for (final CollisionObject obj : map.getCollisionObjects()) {
+            ensure(16);
+            out.putFloat(obj.getMapX());
+            out.putFloat(obj.getMapY());
+            out.putFloat(obj.getMapWidth());
+            out.putFloat(obj.getMapHeight());
+        }
+
+        putInt(map.getTileLayers().size());
+        for (final TileLayer layer : map.getTileLayers()) {
+            putString(layer.getName());
+            putInt(layer.getWidth());
+            putInt(layer.getHeight());
+            putInt(layer.isVisible() ? 1 : 0);
+            ensure(12);
+            out.putFloat(layer.getOpacity());
+            out.putFloat(layer.getParallaxX());
+            out.putFloat(layer.getParallaxY());
+
+            // align the gids so they can be viewed as an IntBuffer in place
+            ensure(3);
+            while (out.position() % 4 != 0) {
+                out.put((byte) 0);
+            }
+
+            final IntBuffer tiles = layer.getTiles().duplicate();
+            tiles.clear();
+            ensure(tiles.remaining() * 4);
+            out.asIntBuffer().put(tiles);
+            out.position(out.position() + layer.getWidth() * layer.getHeight()
+                    * 4);
+        }
+    }
+
+    private void putInt(final int value) {
+        ensure(4);
+        out.putInt(value);
+    }
+
+    private void putString(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        out.put(bytes);
+    }
+
+    private void ensure(final int bytes) {
+        if (out.remaining() < bytes) {
+            final ByteBuffer bigger = ByteBuffer.allocate(
+                    Math.max(out.capacity() * 2, out.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            out.flip();
+            bigger.put(out);
+            out = bigger;
+        }
+    }
+
+    /**
+     * Compiles a TMX map.
+     *
+     * @param args
+     *            the TMX file to read and the binary file to write
+     * @throws IOException
+     *             if the binary file could not be written
+     */
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: MapCompiler <map.tmx> <map.bin>");
+            System.exit(1);
+        }
+
+        compile(XMLMapLoader.INSTANCE.loadMap(args[0]), args[1]);
+    }
+
+}
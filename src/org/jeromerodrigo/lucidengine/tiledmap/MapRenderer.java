@@ -1,12 +1,50 @@
 package org.jeromerodrigo.lucidengine.tiledmap;
 
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jeromerodrigo.lucidengine.Camera;
-import org.jeromerodrigo.lucidengine.Drawable;
+import org.jeromerodrigo.lucidengine.Snapshotable;
+import org.jeromerodrigo.lucidengine.ViewDrawable;
+import org.jeromerodrigo.lucidengine.graphics.Color;
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
 import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureAtlas;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
+
+/**
+ * Base of the map renderers. Tile layers are drawn in document order, skipping
+ * those that are hidden or fully transparent, each scrolled by its parallax
+ * factors and faded by its opacity through the batch color, so changing the
+ * opacity costs nothing. {@link #renderLayers(SpriteBatch, int, int)} draws a
+ * range of layers, so the entities can be drawn between the layers below and
+ * above them:
+ *
+ * <pre>
+ * final int split = map.getTileLayerIndex(&quot;Above&quot;);
+ * renderer.renderLayers(batch, 0, split);
+ * // draw entities
+ * renderer.renderLayers(batch, split, map.getTileLayers().size());
+ * </pre>
+ *
+ * Renderers draw from a camera position and an animation time, read from the
+ * camera and the map's {@link TileAnimator} unless given. They play the
+ * animations on an animator of their own, set to that time, so a
+ * {@link RenderSnapshot} can record the two values on the simulation thread
+ * and have the map drawn from them on another.
+ *
+ * Renderers get the tileset images in one of three ways, each a constructor:
+ * loaded from the tilesets' image files, taken from a texture atlas where
+ * possible (see {@link #loadTilesetRegions(List, TextureAtlas)}), or from
+ * textures that were already uploaded (see {@link #wrapTilesetTextures(Map)}).
+ */
 
-public abstract class MapRenderer implements Drawable {
+public abstract class MapRenderer implements Snapshotable, ViewDrawable {
 
     private static final Logger LOG = LogManager.getLogger(MapRenderer.class);
 
@@ -14,7 +52,37 @@ public abstract class MapRenderer implements Drawable {
 
     protected final Camera camera;
 
+    /** The image of each tileset, possibly a region of a shared texture */
+    protected final Map<Tileset, TextureRegion> regionByTilesetMap;
+
+    /** Plays the map's animations at the time being drawn */
+    protected final TileAnimator animator;
+
+    /**
+     * Creates a renderer without tileset images, for subclasses that load
+     * their own.
+     *
+     * @param map
+     *            the map to render
+     * @param cam
+     *            the camera to render from
+     */
+
     public MapRenderer(final TiledMap map, final Camera cam) {
+        this(map, cam, new HashMap<Tileset, TextureRegion>());
+    }
+
+    /**
+     * @param map
+     *            the map to render
+     * @param cam
+     *            the camera to render from
+     * @param regionByTilesetMap
+     *            the image of every tileset of the map
+     */
+
+    protected MapRenderer(final TiledMap map, final Camera cam,
+            final Map<Tileset, TextureRegion> regionByTilesetMap) {
 
         if (!map.getOrientation().equals(getRenderOrientation())) {
             LOG.fatal("Map orientation not supported!");
@@ -22,12 +90,278 @@ public abstract class MapRenderer implements Drawable {
 
         this.map = map;
         camera = cam;
+        this.regionByTilesetMap = regionByTilesetMap;
+        animator = new TileAnimator(map.getTilesets());
 
     }
 
+    /**
+     * Loads the image of every tileset, taking it from a texture atlas where
+     * possible, so tiles of different tilesets can share a texture.
+     *
+     * @param tilesets
+     *            the tilesets
+     * @param atlas
+     *            the atlas holding tileset images under their Tileset.SOURCE
+     *            name; tilesets missing from it (or all of them if null) get
+     *            their own texture
+     * @return the image of each tileset
+     */
+
+    protected static HashMap<Tileset, TextureRegion> loadTilesetRegions(
+            final List<Tileset> tilesets, final TextureAtlas atlas) {
+        final HashMap<Tileset, TextureRegion> regionByTilesetMap = new HashMap<Tileset, TextureRegion>();
+
+        for (final Tileset ts : tilesets) {
+
+            if (atlas != null && atlas.contains(ts.SOURCE)) {
+                regionByTilesetMap.put(ts, atlas.findRegion(ts.SOURCE));
+                continue;
+            }
+
+            Texture tex = null;
+
+            try {
+                tex = new Texture(ts.SOURCE_URL, Texture.NEAREST);
+            } catch (final IOException e) {
+                LOG.fatal(e);
+            }
+
+            regionByTilesetMap.put(ts, new TextureRegion(tex));
+        }
+
+        return regionByTilesetMap;
+    }
+
+    /**
+     * Wraps tileset textures that were already uploaded, e.g. by an
+     * {@link AsyncMapLoader}.
+     *
+     * @param textures
+     *            the texture of every tileset
+     * @return the image of each tileset
+     */
+
+    protected static HashMap<Tileset, TextureRegion> wrapTilesetTextures(
+            final Map<Tileset, Texture> textures) {
+        final HashMap<Tileset, TextureRegion> regionByTilesetMap = new HashMap<Tileset, TextureRegion>();
+
+        for (final Map.Entry<Tileset, Texture> entry : textures.entrySet()) {
+            regionByTilesetMap.put(entry.getKey(),
+                    new TextureRegion(entry.getValue()));
+        }
+
+        return regionByTilesetMap;
+    }
+
     protected abstract TiledMap.Orientation getRenderOrientation();
 
     protected abstract void render(SpriteBatch batch, float xRender,
             float yRender, int mapX, int mapY, int tilesX, int tilesY);
 
+    /**
+     * Renders a range of tile layers from the camera.
+     *
+     * @param batch
+     *            the batch to draw with
+     * @param firstLayer
+     *            the index of the first layer in {@link TiledMap#getTileLayers()}
+     * @param endLayer
+     *            the index after the last layer
+     */
+
+    public void renderLayers(final SpriteBatch batch, final int firstLayer,
+            final int endLayer) {
+        renderLayers(batch, firstLayer, endLayer, camera.getX(),
+                camera.getY(), map.getTileAnimator().getTime());
+    }
+
+    /**
+     * Renders a range of tile layers from a camera position at a point in
+     * time, e.g. recorded by the simulation.
+     *
+     * @param batch
+     *            the batch to draw with
+     * @param firstLayer
+     *            the index of the first layer in {@link TiledMap#getTileLayers()}
+     * @param endLayer
+     *            the index after the last layer
+     * @param cameraX
+     *            the left of the camera
+     * @param cameraY
+     *            the top of the camera
+     * @param time
+     *            the animation time in milliseconds
+     */
+
+    public void renderLayers(final SpriteBatch batch, final int firstLayer,
+            final int endLayer, final double cameraX, final double cameraY,
+            final long time) {
+
+        final List<TileLayer> layers = map.getTileLayers();
+
+        if (firstLayer < 0 || endLayer > layers.size()
+                || firstLayer > endLayer) {
+            throw new IllegalArgumentException("no layers " + firstLayer
+                    + " to " + endLayer + " in a map of " + layers.size());
+        }
+
+        setAnimationTime(time);
+
+        for (int l = firstLayer; l < endLayer; l++) {
+
+            final TileLayer layer = layers.get(l);
+
+            if (!layer.isShown()) {
+                continue;
+            }
+
+            final float offsetX = getParallaxOffsetX(layer, cameraX);
+            final float offsetY = getParallaxOffsetY(layer, cameraY);
+
+            // Translate the view to the layer's coordinates
+            final float left = (float) cameraX - offsetX;
+            final float top = (float) cameraY - offsetY;
+
+            final float alpha = applyOpacity(batch, layer);
+            renderLayer(batch, l, left, top, left + camera.displayWidth, top
+                    + camera.displayHeight, offsetX, offsetY);
+            restoreAlpha(batch, alpha);
+        }
+
+    }
+
+    /**
+     * Sets the time the animations are drawn at.
+     *
+     * @param time
+     *            the animation time in milliseconds
+     */
+
+    protected void setAnimationTime(final long time) {
+        if (time != animator.getTime()) {
+            animator.setTime(time);
+        }
+    }
+
+    /**
+     * Fades the batch color by a layer's opacity.
+     *
+     * @param batch
+     *            the batch
+     * @param layer
+     *            the layer about to be drawn
+     * @return the alpha to restore with
+     *         {@link #restoreAlpha(SpriteBatch, float)}
+     */
+
+    protected static float applyOpacity(final SpriteBatch batch,
+            final TileLayer layer) {
+        final Color color = batch.getColor();
+        final float alpha = color.a;
+
+        if (layer.getOpacity() < 1f) {
+            batch.setColor(color.r, color.g, color.b, alpha
+                    * layer.getOpacity());
+        }
+
+        return alpha;
+    }
+
+    protected static void restoreAlpha(final SpriteBatch batch,
+            final float alpha) {
+        final Color color = batch.getColor();
+
+        if (color.a != alpha) {
+            batch.setColor(color.r, color.g, color.b, alpha);
+        }
+    }
+
+    /**
+     * Draws the tiles of a shown layer intersecting the view, with the batch
+     * color already faded by the layer's opacity.
+     *
+     * @param batch
+     *            the batch to draw with
+     * @param index
+     *            the index of the layer in {@link TiledMap#getTileLayers()}
+     * @param left
+     *            the left of the view in the layer's coordinates
+     * @param top
+     *            the top of the view
+     * @param right
+     *            the right of the view
+     * @param bottom
+     *            the bottom of the view
+     * @param offsetX
+     *            how far the layer is shifted horizontally for its parallax
+     * @param offsetY
+     *            how far the layer is shifted vertically
+     */
+
+    protected abstract void renderLayer(SpriteBatch batch, int index,
+            float left, float top, float right, float bottom, float offsetX,
+            float offsetY);
+
+    /**
+     * Renders every tile layer from the camera.
+     */
+
+    @Override
+    public void render(final SpriteBatch batch) {
+        renderLayers(batch, 0, map.getTileLayers().size());
+    }
+
+    /**
+     * Renders every tile layer from a camera position at a point in time.
+     */
+
+    @Override
+    public void render(final SpriteBatch batch, final double cameraX,
+            final double cameraY, final long time) {
+        renderLayers(batch, 0, map.getTileLayers().size(), cameraX, cameraY,
+                time);
+    }
+
+    /**
+     * Records the camera position and the animation time.
+     */
+
+    @Override
+    public void snapshot(final RenderSnapshot snapshot) {
+        snapshot.draw(this, camera.getX(), camera.getY(), map
+                .getTileAnimator().getTime());
+    }
+
+    /**
+     * Gets how far a layer is shifted horizontally for its parallax, so that
+     * it scrolls at its factor times the camera's speed.
+     *
+     * @param layer
+     *            the layer
+     * @param cameraX
+     *            the left of the camera
+     * @return the shift in pixels
+     */
+
+    protected float getParallaxOffsetX(final TileLayer layer,
+            final double cameraX) {
+        return (float) (cameraX * (1f - layer.getParallaxX()));
+    }
+
+    /**
+     * Gets how far a layer is shifted vertically for its parallax.
+     *
+     * @param layer
+     *            the layer
+     * @param cameraY
+     *            the top of the camera
+     * @return the shift in pixels
+     */
+
+    protected float getParallaxOffsetY(final TileLayer layer,
+            final double cameraY) {
+        return (float) (cameraY * (1f - layer.getParallaxY()));
+    }
+
 }
@@ -1,88 +1,115 @@
 package org.jeromerodrigo.lucidengine.tiledmap;
 
-import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.jeromerodrigo.lucidengine.Camera;
-import org.jeromerodrigo.lucidengine.graphics.Sprite;
 import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexBufferObject;
 import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureAtlas;
 import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
 import org.lwjgl.util.vector.Vector2f;
 
+/**
+ * Renders the tile layers of an orthogonal map. Tile layers are static, so
+ * each one is split into chunks of {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE}
+ * tiles whose quads are built once and kept in GPU memory; a frame only draws
+ * the chunks intersecting the view, without touching individual tiles.
+ * Cells showing animated tiles are the exception: they are drawn one by one
+ * at the frame the {@link TileAnimator} shows at the time being drawn.
+ *
+ * The meshes take memory for every tile of the map; for maps where that is
+ * too much, see {@link FlyweightMapRenderer}.
+ *
+ * @author Jerome
+ */
+
 public class OrthogonalMapRenderer extends MapRenderer {
 
-    private static final Logger LOG = LogManager
-            .getLogger(OrthogonalMapRenderer.class);
+    /** The width and height of a chunk in tiles */
+    public static final int CHUNK_SIZE = 32;
 
-    private final Map<String, Sprite[][]> spriteArrayByLayerName;
+    private final ChunkMeshBuilder meshBuilder;
 
-    public OrthogonalMapRenderer(final TiledMap map, final Camera cam) {
-        super(map, cam);
+    /** The tile layers, in document order */
+    private final TileLayer[] layers;
 
-        final Map<Tileset, Texture> textureByTilesetMap = new HashMap<Tileset, Texture>();
+    /** The chunks of each layer, indexed [layer][cx][cy]; null if empty */
+    private final ChunkMesh[][][] chunks;
 
-        for (final Tileset ts : map.getTilesets()) {
-            String fileSource = ts.SOURCE;
+    private final boolean[] hasTiles;
 
-            if (ts.SOURCE.startsWith("../")) {
-                fileSource = "res/" + fileSource.substring(3);
-            }
+    private final Vector2f shift = new Vector2f();
 
-            Texture tex = null;
+    public OrthogonalMapRenderer(final TiledMap map, final Camera cam) {
+        this(map, cam, (TextureAtlas) null);
+    }
 
-            try {
-                tex = new Texture(ts.SOURCE_URL, Texture.NEAREST);
-            } catch (final IOException e) {
-                LOG.fatal(e);
-            }
+    /**
+     * Creates a renderer taking tileset images from an atlas where possible.
+     *
+     * @see MapRenderer#loadTilesetRegions(List, TextureAtlas)
+     */
 
-            textureByTilesetMap.put(ts, tex);
-        }
+    public OrthogonalMapRenderer(final TiledMap map, final Camera cam,
+            final TextureAtlas atlas) {
+        this(map, cam, loadTilesetRegions(map.getTilesets(), atlas));
+    }
 
-        spriteArrayByLayerName = new HashMap<String, Sprite[][]>();
+    /**
+     * Creates a renderer from tileset textures that were already uploaded.
+     *
+     * @see MapRenderer#wrapTilesetTextures(Map)
+     */
 
-        for (final String layerName : map.getTileLayerNames()) {
+    public OrthogonalMapRenderer(final TiledMap map, final Camera cam,
+            final Map<Tileset, Texture> textures) {
+        this(map, cam, wrapTilesetTextures(textures));
+    }
 
-            final int[][] tiles = map.getTilesAt(layerName);
+    private OrthogonalMapRenderer(final TiledMap map, final Camera cam,
+            final HashMap<Tileset, TextureRegion> regionByTilesetMap) {
+        super(map, cam, regionByTilesetMap);
 
-            final Sprite[][] spriteArray = new Sprite[tiles.length][tiles[0].length];
+        meshBuilder = new ChunkMeshBuilder(map.getTilesets(),
+                regionByTilesetMap, animator, map.getTileWidth(),
+                map.getTileHeight(), CHUNK_SIZE,
+                VertexBufferObject.isSupported());
 
-            for (int x = 0; x < tiles.length; x++) {
-                for (int y = 0; y < tiles[x].length; y++) {
+        layers = map.getTileLayers().toArray(
+                new TileLayer[map.getTileLayers().size()]);
+        chunks = new ChunkMesh[layers.length][][];
+        hasTiles = new boolean[layers.length];
 
-                    Tileset tileset = null;
+        for (int l = 0; l < layers.length; l++) {
+            buildLayer(l);
+        }
 
-                    for (final Tileset ts : map.getTilesets()) {
+    }
 
-                        if (tiles[x][y] >= ts.FIRST_GID
-                                && tiles[x][y] <= ts.LAST_GID) {
-                            tileset = ts;
-                            break;
-                        }
-                    }
+    private void buildLayer(final int l) {
+        final TileLayer layer = layers[l];
 
-                    if (tiles[x][y] != 0) {
+        final int chunksX = (layer.getWidth() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final int chunksY = (layer.getHeight() + CHUNK_SIZE - 1) / CHUNK_SIZE;
 
-                        final int xid = tileset.getTileIdByMapId(tiles[x][y])[0] - 1;
-                        final int yid = tileset.getTileIdByMapId(tiles[x][y])[1] - 1;
+        chunks[l] = new ChunkMesh[chunksX][chunksY];
+        hasTiles[l] = false;
 
-                        spriteArray[x][y] = new Sprite(new TextureRegion(
-                                textureByTilesetMap.get(tileset), xid
-                                * map.getTileWidth(), yid
-                                * map.getTileHeight(), tileset.TILE_W,
-                                tileset.TILE_H), 0, 0, tileset.TILE_W,
-                                tileset.TILE_H);
-                    }
-                }
-            }
+        for (int cx = 0; cx < chunksX; cx++) {
+            for (int cy = 0; cy < chunksY; cy++) {
+                final int xStart = cx * CHUNK_SIZE;
+                final int yStart = cy * CHUNK_SIZE;
 
-            spriteArrayByLayerName.put(layerName, spriteArray);
+                chunks[l][cx][cy] = meshBuilder.build(layer, xStart, yStart,
+                        Math.min(xStart + CHUNK_SIZE, layer.getWidth()),
+                        Math.min(yStart + CHUNK_SIZE, layer.getHeight()), 0,
+                        0);
+                hasTiles[l] |= chunks[l][cx][cy] != null;
+            }
         }
-
     }
 
     @Override
@@ -95,48 +122,122 @@ public class OrthogonalMapRenderer extends MapRenderer {
             final float yRender, final int mapX, final int mapY,
             final int tilesX, final int tilesY) {
 
+        setAnimationTime(map.getTileAnimator().getTime());
+
+        for (int l = 0; l < layers.length; l++) {
+
+            if (layers[l].isShown() && hasTiles[l]) {
+                final float alpha = applyOpacity(batch, layers[l]);
+                renderChunks(batch, l, mapX, mapY, mapX + tilesX, mapY
+                        + tilesY, xRender, yRender);
+                restoreAlpha(batch, alpha);
+            }
+
+        }
+
+    }
+
+    @Override
+    protected void renderLayer(final SpriteBatch batch, final int index,
+            final float left, final float top, final float right,
+            final float bottom, final float offsetX, final float offsetY) {
+
+        if (!hasTiles[index]) {
+            return;
+        }
+
+        final int tileWidth = map.getTileWidth();
+        final int tileHeight = map.getTileHeight();
+
+        renderChunks(batch, index, (int) Math.floor(left / tileWidth),
+                (int) Math.floor(top / tileHeight),
+                (int) Math.floor(right / tileWidth) + 1,
+                (int) Math.floor(bottom / tileHeight) + 2, offsetX, offsetY);
+
+    }
+
+    /**
+     * Draws the chunks of a layer intersecting a block of tiles, shifted by
+     * an offset in pixels.
+     */
+
+    private void renderChunks(final SpriteBatch batch, final int l,
+            final int mapX, final int mapY, final int mapXEnd,
+            final int mapYEnd, final float offsetX, final float offsetY) {
+
+        final TileLayer layer = layers[l];
+
         final int xStart = mapX < 0 ? 0 : mapX;
         final int yStart = mapY < 0 ? 0 : mapY;
+        final int xEnd = Math.min(mapXEnd, layer.getWidth());
+        final int yEnd = Math.min(mapYEnd, layer.getHeight());
 
-        int xEnd = xStart + tilesX;
-        int yEnd = yStart + tilesY;
-
-        xEnd = xEnd > map.getWidth() ? map.getWidth() : xEnd;
-        yEnd = yEnd > map.getHeight() ? map.getHeight() : yEnd;
+        if (xStart >= xEnd || yStart >= yEnd) {
+            return;
+        }
 
-        batch.getViewMatrix().translate(new Vector2f(xRender, yRender));
+        final int cxStart = xStart / CHUNK_SIZE;
+        final int cyStart = yStart / CHUNK_SIZE;
+        final int cxEnd = (xEnd - 1) / CHUNK_SIZE;
+        final int cyEnd = (yEnd - 1) / CHUNK_SIZE;
 
-        for (final String layerName : spriteArrayByLayerName.keySet()) {
+        final boolean shifted = offsetX != 0f || offsetY != 0f;
 
-            final Sprite[][] spriteArray = spriteArrayByLayerName
-                    .get(layerName);
+        if (shifted) {
+            // sprites batched so far keep the unshifted view
+            batch.flush();
+            shift.set(offsetX, offsetY);
+            batch.getViewMatrix().translate(shift);
+            batch.updateUniforms();
+        }
 
-            for (int x = xStart; x < xEnd; x++) {
+        final ChunkMesh[][] layerChunks = chunks[l];
 
-                for (int y = yStart; y < yEnd; y++) {
+        for (int cx = cxStart; cx <= cxEnd; cx++) {
 
-                    if (spriteArray[x][y] != null) {
-                        spriteArray[x][y].setLocation(x * map.getTileWidth(), y
-                                * map.getTileHeight());
-                        spriteArray[x][y].render(batch);
-                    }
+            for (int cy = cyStart; cy <= cyEnd; cy++) {
 
+                if (layerChunks[cx][cy] != null) {
+                    meshBuilder.render(batch, layerChunks[cx][cy]);
                 }
 
             }
 
         }
 
+        if (shifted) {
+            // animated tiles queued above still need the shifted view
+            batch.flush();
+            shift.set(-offsetX, -offsetY);
+            batch.getViewMatrix().translate(shift);
+            batch.updateUniforms();
+        }
+
     }
 
-    @Override
-    public void render(final SpriteBatch batch) {
-        // Translate to map coordinates
-        final int mapX = (int) Math.round(camera.getX()) / map.getTileWidth();
-        final int mapY = (int) Math.round(camera.getY()) / map.getTileHeight();
-
-        render(batch, 0, 0, mapX, mapY,
-                camera.displayWidth / map.getTileWidth() + 1,
-                camera.displayHeight / map.getTileHeight() + 2);
+    private void disposeLayer(final int l) {
+        if (chunks[l] == null) {
+            return;
+        }
+
+        for (final ChunkMesh[] column : chunks[l]) {
+            for (final ChunkMesh chunk : column) {
+                if (chunk != null) {
+                    chunk.dispose();
+                }
+            }
+        }
+        chunks[l] = null;
+    }
+
+    /**
+     * Releases the vertex data of every chunk.
+     */
+
+    public void dispose() {
+        for (int l = 0; l < layers.length; l++) {
+            disposeLayer(l);
+        }
+        meshBuilder.dispose();
     }
 }
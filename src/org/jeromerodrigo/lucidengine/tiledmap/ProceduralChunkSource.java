@@ -0,0 +1,112 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A ChunkSource that generates an unbounded map, tile by tile. Subclasses
+ * implement {@link #generateTile(int, int, int)}, which is called from worker
+ * threads and must depend only on its arguments, so a chunk that is evicted
+ * and loaded again comes back the same.
+ */
+
+public abstract class ProceduralChunkSource implements ChunkSource {
+
+    private final int chunkSize;
+
+    private final int tileWidth, tileHeight;
+
+    private final List<Tileset> tilesets;
+
+    private final List<String> layerNames;
+
+    /**
+     * @param chunkSize
+     *            the width and height of a chunk in tiles
+     * @param tileWidth
+     *            the width of a map cell in pixels
+     * @param tileHeight
+     *            the height of a map cell in pixels
+     * @param tilesets
+     *            the tilesets the generated gids refer to
+     * @param layerNames
+     *            the names of the generated layers, in drawing order
+     */
+
+    protected ProceduralChunkSource(final int chunkSize, final int tileWidth,
+            final int tileHeight, final List<Tileset> tilesets,
+            final String... layerNames) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tilesets = Collections.unmodifiableList(tilesets);
+        this.layerNames = Collections.unmodifiableList(Arrays
+                .asList(layerNames.clone()));
+    }
+
+    /**
+     * Generates a tile.
+     *
+     * @param layer
+     *            the index of the layer in {@link #getLayerNames()}
+     * @param x
+     *            the map column, which may be negative
+     * @param y
+     *            the map row, which may be negative
+     * @return the gid, or 0 for an empty cell
+     */
+
+    protected abstract int generateTile(int layer, int x, int y);
+
+    @Override
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    @Override
+    public List<Tileset> getTilesets() {
+        return tilesets;
+    }
+
+    @Override
+    public List<String> getLayerNames() {
+        return layerNames;
+    }
+
+    @Override
+    public MapChunk loadChunk(final int chunkX, final int chunkY) {
+        final int xStart = chunkX * chunkSize;
+        final int yStart = chunkY * chunkSize;
+        final TileLayer[] layers = new TileLayer[layerNames.size()];
+
+        for (int l = 0; l < layers.length; l++) {
+            final int[] tiles = new int[chunkSize * chunkSize];
+
+            for (int y = 0, i = 0; y < chunkSize; y++) {
+                for (int x = 0; x < chunkSize; x++, i++) {
+                    tiles[i] = generateTile(l, xStart + x, yStart + y);
+                }
+            }
+
+            layers[l] = new TileLayer(layerNames.get(l), chunkSize,
+                    chunkSize, tiles);
+        }
+
+        return new MapChunk(chunkX, chunkY, layers);
+    }
+
+}
@@ -0,0 +1,185 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.jeromerodrigo.lucidengine.Camera;
+import org.jeromerodrigo.lucidengine.Snapshotable;
+import org.jeromerodrigo.lucidengine.ViewDrawable;
+import org.jeromerodrigo.lucidengine.graphics.RenderSnapshot;
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexBufferObject;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureAtlas;
+
+/**
+ * Renders an orthogonal map streamed by a {@link ChunkStreamer}, for maps too
+ * large to load as a whole TiledMap. Each frame updates the streamer from the
+ * camera, then draws the chunks in view, layer by layer. Chunk meshes are
+ * built the first time a chunk is drawn and released when the streamer evicts
+ * it. Like a {@link MapRenderer}, it can be recorded into a RenderSnapshot as
+ * a camera position and an animation time.
+ */
+
+public class StreamingMapRenderer implements Snapshotable, ViewDrawable,
+        ChunkStreamer.EvictionListener {
+
+    private final ChunkStreamer streamer;
+
+    private final Camera camera;
+
+    private final TileAnimator animator;
+
+    /** Plays the animations at the time being drawn */
+    private final TileAnimator drawAnimator;
+
+    private final ChunkMeshBuilder meshBuilder;
+
+    private final int layerCount;
+
+    private final Map<MapChunk, ChunkMesh[]> meshesByChunk = new IdentityHashMap<MapChunk, ChunkMesh[]>();
+
+    public StreamingMapRenderer(final ChunkStreamer streamer, final Camera cam) {
+        this(streamer, cam, null);
+    }
+
+    /**
+     * Creates a renderer that takes tileset images from a texture atlas where
+     * possible.
+     *
+     * @param streamer
+     *            the streamer of the map, whose eviction listener becomes this
+     *            renderer
+     * @param cam
+     *            the camera to render from, usually unbounded
+     * @param atlas
+     *            the atlas holding tileset images under their Tileset.SOURCE
+     *            name, or null
+     */
+
+    public StreamingMapRenderer(final ChunkStreamer streamer,
+            final Camera cam, final TextureAtlas atlas) {
+        this.streamer = streamer;
+        camera = cam;
+
+        final ChunkSource source = streamer.getSource();
+
+        animator = new TileAnimator(source.getTilesets());
+        drawAnimator = new TileAnimator(source.getTilesets());
+        meshBuilder = new ChunkMeshBuilder(source.getTilesets(),
+                MapRenderer.loadTilesetRegions(source.getTilesets(),
+                        atlas), drawAnimator, source.getTileWidth(),
+                source.getTileHeight(), source.getChunkSize(),
+                VertexBufferObject.isSupported());
+        layerCount = source.getLayerNames().size();
+
+        streamer.setEvictionListener(this);
+    }
+
+    @Override
+    public void render(final SpriteBatch batch) {
+        render(batch, camera.getX(), camera.getY(), animator.getTime());
+    }
+
+    @Override
+    public void render(final SpriteBatch batch, final double cameraX,
+            final double cameraY, final long time) {
+        if (time != drawAnimator.getTime()) {
+            drawAnimator.setTime(time);
+        }
+
+        streamer.update(cameraX, cameraY, camera.displayWidth,
+                camera.displayHeight);
+
+        for (int l = 0; l < layerCount; l++) {
+
+            for (int cy = streamer.getFirstVisibleY(); cy <= streamer
+                    .getLastVisibleY(); cy++) {
+
+                for (int cx = streamer.getFirstVisibleX(); cx <= streamer
+                        .getLastVisibleX(); cx++) {
+
+                    final MapChunk chunk = streamer.getChunk(cx, cy);
+
+                    if (chunk == null) {
+                        continue;
+                    }
+
+                    final ChunkMesh mesh = getMeshes(chunk)[l];
+
+                    if (mesh != null) {
+                        meshBuilder.render(batch, mesh);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the camera position and the animation time.
+     */
+
+    @Override
+    public void snapshot(final RenderSnapshot snapshot) {
+        snapshot.draw(this, camera.getX(), camera.getY(), animator.getTime());
+    }
+
+    /**
+     * Gets the animator playing the tile animations of the source's
+     * tilesets. Update it once per frame.
+     *
+     * @return the animator
+     */
+
+    public TileAnimator getTileAnimator() {
+        return animator;
+    }
+
+    private ChunkMesh[] getMeshes(final MapChunk chunk) {
+        ChunkMesh[] meshes = meshesByChunk.get(chunk);
+
+        if (meshes == null) {
+            final int size = streamer.getSource().getChunkSize();
+            meshes = new ChunkMesh[layerCount];
+
+            for (int l = 0; l < layerCount; l++) {
+                meshes[l] = meshBuilder.build(chunk.getLayer(l), 0, 0, size,
+                        size, chunk.getChunkX() * size, chunk.getChunkY()
+                                * size);
+            }
+            meshesByChunk.put(chunk, meshes);
+        }
+
+        return meshes;
+    }
+
+    @Override
+    public void chunkEvicted(final MapChunk chunk) {
+        final ChunkMesh[] meshes = meshesByChunk.remove(chunk);
+
+        if (meshes != null) {
+            for (final ChunkMesh mesh : meshes) {
+                if (mesh != null) {
+                    mesh.dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the meshes of every chunk and the streamer.
+     */
+
+    public void dispose() {
+        streamer.dispose();
+
+        for (final ChunkMesh[] meshes : meshesByChunk.values()) {
+            for (final ChunkMesh mesh : meshes) {
+                if (mesh != null) {
+                    mesh.dispose();
+                }
+            }
+        }
+        meshesByChunk.clear();
+        meshBuilder.dispose();
+    }
+}
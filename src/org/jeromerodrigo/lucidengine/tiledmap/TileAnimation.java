@@ -0,0 +1,103 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.Arrays;
+
+/**
+ * The animation of a tile of a tileset, as defined by a TMX
+ * &lt;tile&gt;&lt;animation&gt; element: a loop of frames, each showing
+ * another tile of the same tileset for a number of milliseconds. Cells holding
+ * the animated tile show the current frame instead.
+ */
+
+public final class TileAnimation {
+
+    private final int tileId;
+
+    private final int[] frameTileIds;
+
+    /** The time each frame ends at, from the start of the loop */
+    private final int[] frameEnds;
+
+    /**
+     * @param tileId
+     *            the local id of the animated tile
+     * @param frameTileIds
+     *            the local id of the tile shown by each frame
+     * @param durations
+     *            the duration of each frame in milliseconds
+     */
+
+    public TileAnimation(final int tileId, final int[] frameTileIds,
+            final int[] durations) {
+
+        if (frameTileIds.length == 0
+                || frameTileIds.length != durations.length) {
+            throw new IllegalArgumentException("tile " + tileId + " has "
+                    + frameTileIds.length + " frames and " + durations.length
+                    + " durations");
+        }
+
+        this.tileId = tileId;
+        this.frameTileIds = frameTileIds.clone();
+        frameEnds = new int[durations.length];
+
+        int end = 0;
+
+        for (int i = 0; i < durations.length; i++) {
+            if (durations[i] <= 0) {
+                throw new IllegalArgumentException("frame " + i + " of tile "
+                        + tileId + " lasts " + durations[i] + "ms");
+            }
+            end += durations[i];
+            frameEnds[i] = end;
+        }
+    }
+
+    public int getTileId() {
+        return tileId;
+    }
+
+    public int getFrameCount() {
+        return frameTileIds.length;
+    }
+
+    public int getFrameTileId(final int frame) {
+        return frameTileIds[frame];
+    }
+
+    public int getFrameDuration(final int frame) {
+        return frame == 0 ? frameEnds[0] : frameEnds[frame]
+                - frameEnds[frame - 1];
+    }
+
+    /**
+     * Gets the duration of one loop of the animation.
+     *
+     * @return the duration in milliseconds
+     */
+
+    public int getDuration() {
+        return frameEnds[frameEnds.length - 1];
+    }
+
+    /**
+     * Gets the frame shown at a time.
+     *
+     * @param time
+     *            the time in milliseconds since the animation started
+     * @return the index of the frame
+     */
+
+    public int getFrameAt(final long time) {
+        int t = (int) (time % getDuration());
+
+        if (t < 0) {
+            t += getDuration();
+        }
+
+        // the first frame ending after t
+        final int i = Arrays.binarySearch(frameEnds, t);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+}
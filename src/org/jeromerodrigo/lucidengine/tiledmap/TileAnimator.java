@@ -0,0 +1,186 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.jeromerodrigo.lucidengine.Updateable;
+
+/**
+ * Plays the tile animations of a set of tilesets against one clock. Each
+ * update evaluates every animation once, so a frame costs the number of
+ * animated tiles in the tilesets, however many cells show them; renderers
+ * then look up the tile to draw for a gid with {@link #getFrame(int)}.
+ *
+ * Several animators, e.g. of a map and of a streamed map, can be kept in step
+ * by driving them with {@link #setTime(long)} from a common clock.
+ */
+
+public final class TileAnimator implements Updateable {
+
+    /** The gid of index 0 of {@link #animationIdx} */
+    private final int baseGid;
+
+    /** The animation of each gid from baseGid, or -1 if it has none */
+    private final int[] animationIdx;
+
+    private final TileAnimation[] animations;
+
+    /** The gid of the tile each animation belongs to */
+    private final int[] animatedGids;
+
+    /** The first gid of each animation's tileset */
+    private final int[] firstGids;
+
+    /** The gid each animation currently shows */
+    private final int[] current;
+
+    private long time;
+
+    /**
+     * @param tilesets
+     *            the tilesets whose animations to play
+     */
+
+    public TileAnimator(final Collection<Tileset> tilesets) {
+        final List<TileAnimation> anims = new ArrayList<TileAnimation>();
+        final List<Integer> gids = new ArrayList<Integer>();
+        final List<Integer> firsts = new ArrayList<Integer>();
+
+        int first = Integer.MAX_VALUE;
+        int last = 0;
+
+        for (final Tileset ts : tilesets) {
+            for (final TileAnimation anim : ts.getAnimations()) {
+                final int gid = ts.FIRST_GID + anim.getTileId();
+
+                anims.add(anim);
+                gids.add(gid);
+                firsts.add(ts.FIRST_GID);
+
+                first = Math.min(first, gid);
+                last = Math.max(last, gid);
+            }
+        }
+
+        animations = anims.toArray(new TileAnimation[anims.size()]);
+        animatedGids = new int[animations.length];
+        firstGids = new int[animations.length];
+        current = new int[animations.length];
+
+        baseGid = first;
+        animationIdx = new int[animations.length == 0 ? 0 : last - first + 1];
+        Arrays.fill(animationIdx, -1);
+
+        for (int a = 0; a < animations.length; a++) {
+            animatedGids[a] = gids.get(a);
+            firstGids[a] = firsts.get(a);
+            animationIdx[animatedGids[a] - baseGid] = a;
+        }
+
+        evaluate();
+    }
+
+    /**
+     * Advances the clock.
+     *
+     * @param delta
+     *            the time since the last update in milliseconds
+     */
+
+    @Override
+    public void update(final int delta) {
+        setTime(time + delta);
+    }
+
+    /**
+     * Sets the clock, e.g. from a clock shared with other animators.
+     *
+     * @param time
+     *            the time in milliseconds since the animations started
+     */
+
+    public void setTime(final long time) {
+        this.time = time;
+        evaluate();
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    private void evaluate() {
+        for (int a = 0; a < animations.length; a++) {
+            final TileAnimation anim = animations[a];
+            current[a] = firstGids[a]
+                    + anim.getFrameTileId(anim.getFrameAt(time));
+        }
+    }
+
+    /**
+     * Returns true if a gid has an animation.
+     *
+     * @param gid
+     *            the gid
+     * @return true if animated
+     */
+
+    public boolean isAnimated(final int gid) {
+        final int i = gid - baseGid;
+        return i >= 0 && i < animationIdx.length && animationIdx[i] >= 0;
+    }
+
+    /**
+     * Gets the tile to draw for a gid at the current time.
+     *
+     * @param gid
+     *            the gid of a cell
+     * @return the gid of the current frame if it is animated, else the gid
+     */
+
+    public int getFrame(final int gid) {
+        final int i = gid - baseGid;
+
+        if (i < 0 || i >= animationIdx.length || animationIdx[i] < 0) {
+            return gid;
+        }
+
+        return current[animationIdx[i]];
+    }
+
+    /**
+     * Gets the number of animated tiles.
+     *
+     * @return the number of animations
+     */
+
+    public int getAnimationCount() {
+        return animations.length;
+    }
+
+    /**
+     * Gets the gid of an animated tile.
+     *
+     * @param animation
+     *            the index of the animation
+     * @return the gid
+     */
+
+    public int getAnimatedGid(final int animation) {
+        return animatedGids[animation];
+    }
+
+    /**
+     * Gets the gid an animated tile currently shows.
+     *
+     * @param animation
+     *            the index of the animation
+     * @return the gid of the current frame
+     */
+
+    public int getCurrentGid(final int animation) {
+        return current[animation];
+    }
+
+}
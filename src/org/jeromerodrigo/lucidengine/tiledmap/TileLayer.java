@@ -0,0 +1,253 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.nio.IntBuffer;
+
+/**
+ * A layer of tiles, stored as a single run of global tile ids in row-major
+ * order, the same order Tiled writes them in. A gid of 0 is an empty cell.
+ * Tiled keeps the flip flags of a cell in the top bits of its gid; mask them
+ * off with {@link #GID_MASK} to get the tile.
+ *
+ * The ids live in an IntBuffer, which either wraps an int[] or views a file
+ * mapped by {@link BinaryMapLoader}; mapped layers are read-only.
+ *
+ * Besides its tiles a layer carries how it is drawn: whether it is visible,
+ * its opacity and its parallax factors, as set in Tiled.
+ */
+
+public final class TileLayer {
+
+    /** The bits of a cell holding the gid, below Tiled's three flip flags */
+    public static final int GID_MASK = 0x1FFFFFFF;
+
+    private final String name;
+
+    private final int width;
+
+    private final int height;
+
+    private final IntBuffer tiles;
+
+    private boolean visible = true;
+
+    private float opacity = 1f;
+
+    private float parallaxX = 1f, parallaxY = 1f;
+
+    /**
+     * Creates an empty layer.
+     *
+     * @param name
+     *            the name of the layer
+     * @param width
+     *            the width of the layer in tiles
+     * @param height
+     *            the height of the layer in tiles
+     */
+
+    public TileLayer(final String name, final int width, final int height) {
+        this(name, width, height, new int[width * height]);
+    }
+
+    /**
+     * Creates a layer backed by the given array, which is not copied.
+     *
+     * @param name
+     *            the name of the layer
+     * @param width
+     *            the width of the layer in tiles
+     * @param height
+     *            the height of the layer in tiles
+     * @param tiles
+     *            width * height gids in row-major order
+     */
+
+    public TileLayer(final String name, final int width, final int height,
+            final int[] tiles) {
+        this(name, width, height, IntBuffer.wrap(tiles));
+    }
+
+    /**
+     * Creates a layer backed by the given buffer, which is not copied.
+     *
+     * @param name
+     *            the name of the layer
+     * @param width
+     *            the width of the layer in tiles
+     * @param height
+     *            the height of the layer in tiles
+     * @param tiles
+     *            width * height gids in row-major order, from the buffer's
+     *            position
+     */
+
+    public TileLayer(final String name, final int width, final int height,
+            final IntBuffer tiles) {
+        if (width < 0 || height < 0 || tiles.remaining() != width * height) {
+            throw new IllegalArgumentException("layer " + name + " needs "
+                    + width * height + " tiles, got " + tiles.remaining());
+        }
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles.slice();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void setVisible(final boolean visible) {
+        this.visible = visible;
+    }
+
+    public float getOpacity() {
+        return opacity;
+    }
+
+    /**
+     * Sets the opacity of the layer.
+     *
+     * @param opacity
+     *            the opacity, from 0 (transparent) to 1 (opaque)
+     */
+
+    public void setOpacity(final float opacity) {
+        if (opacity < 0f || opacity > 1f) {
+            throw new IllegalArgumentException("opacity out of range: "
+                    + opacity);
+        }
+        this.opacity = opacity;
+    }
+
+    /**
+     * Returns true if the layer would show when drawn, i.e. it is visible and
+     * not fully transparent.
+     *
+     * @return true if the layer shows
+     */
+
+    public boolean isShown() {
+        return visible && opacity > 0f;
+    }
+
+    public float getParallaxX() {
+        return parallaxX;
+    }
+
+    public float getParallaxY() {
+        return parallaxY;
+    }
+
+    /**
+     * Sets how fast the layer scrolls relative to the camera; 1 scrolls with
+     * the camera, less than 1 scrolls slower, as if further away, and 0 stays
+     * fixed on screen.
+     *
+     * @param parallaxX
+     *            the horizontal factor
+     * @param parallaxY
+     *            the vertical factor
+     */
+
+    public void setParallax(final float parallaxX, final float parallaxY) {
+        this.parallaxX = parallaxX;
+        this.parallaxY = parallaxY;
+    }
+
+    /**
+     * Gets the gid of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the gid, or 0 for an empty cell
+     */
+
+    public int getTile(final int x, final int y) {
+        return tiles.get(y * width + x);
+    }
+
+    /**
+     * Sets the gid of a cell.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @param gid
+     *            the gid, or 0 to clear the cell
+     * @throws java.nio.ReadOnlyBufferException
+     *             if the layer is mapped from a file
+     */
+
+    public void setTile(final int x, final int y, final int gid) {
+        tiles.put(y * width + x, gid);
+    }
+
+    /**
+     * Gets the index of a cell in {@link #getTiles()}; the cells of a row are
+     * contiguous, so a span of a row runs from getIndex(x, y) to getIndex(x, y)
+     * + length.
+     *
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the index
+     */
+
+    public int getIndex(final int x, final int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Gets the backing buffer, for bulk access in tight loops through its
+     * absolute get methods. Writes to it change the layer.
+     *
+     * @return the gids in row-major order, from index 0
+     */
+
+    public IntBuffer getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Copies a span of a row.
+     *
+     * @param x
+     *            the first column
+     * @param y
+     *            the row
+     * @param length
+     *            the number of cells
+     * @param dst
+     *            the array to copy to
+     * @param dstOffset
+     *            the offset in dst
+     */
+
+    public void copyRow(final int x, final int y, final int length,
+            final int[] dst, final int dstOffset) {
+        if (x < 0 || y < 0 || y >= height || x + length > width) {
+            throw new IllegalArgumentException("span out of layer bounds");
+        }
+        final IntBuffer span = tiles.duplicate();
+        span.position(y * width + x);
+        span.get(dst, dstOffset, length);
+    }
+
+}
@@ -1,7 +1,8 @@
 package org.jeromerodrigo.lucidengine.tiledmap;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -26,10 +27,19 @@ public class TiledMap {
 
     private final Orientation orientation;
 
+    private final Map<String, String> properties;
+
     private final int tileHeight;
-    private final Map<String, int[][]> tileLayers;
+    private final Map<String, TileLayer> tileLayers;
+
+    /** The tile layers in document order, i.e. from the bottom up */
+    private final List<TileLayer> orderedTileLayers;
     private final List<Tileset> tilesets;
 
+    private TilesetIndex tilesetIndex;
+
+    private TileAnimator tileAnimator;
+
     private final int tileWidth;
 
     private final int width;
@@ -42,8 +52,13 @@ public class TiledMap {
         collisionObjects = new ArrayList<CollisionObject>();
 
         tilesets = new ArrayList<Tileset>();
+        tilesetIndex = new TilesetIndex(tilesets);
+        tileAnimator = new TileAnimator(tilesets);
 
-        tileLayers = new HashMap<String, int[][]>();
+        tileLayers = new LinkedHashMap<String, TileLayer>();
+        orderedTileLayers = new ArrayList<TileLayer>();
+
+        properties = new LinkedHashMap<String, String>();
 
         this.width = width;
         this.height = height;
@@ -52,12 +67,34 @@ public class TiledMap {
 
     }
 
-    protected void addTileLayer(final String layerName, final int[][] tileData) {
-        tileLayers.put(layerName, tileData);
+    protected void addTileLayer(final TileLayer layer) {
+        final TileLayer replaced = tileLayers.put(layer.getName(), layer);
+
+        if (replaced == null) {
+            orderedTileLayers.add(layer);
+        } else {
+            orderedTileLayers.set(orderedTileLayers.indexOf(replaced), layer);
+        }
     }
 
     protected void addTileset(final Tileset tileset) {
         tilesets.add(tileset);
+        tilesetIndex = new TilesetIndex(tilesets);
+        tileAnimator = new TileAnimator(tilesets);
+    }
+
+    protected void setProperty(final String name, final String value) {
+        properties.put(name, value);
+    }
+
+    /**
+     * Gets the custom properties set on the map in Tiled.
+     *
+     * @return the properties by name
+     */
+
+    public Map<String, String> getProperties() {
+        return Collections.unmodifiableMap(properties);
     }
 
     public List<CollisionObject> getCollisionObjects() {
@@ -76,18 +113,117 @@ public class TiledMap {
         return tileHeight;
     }
 
+    /**
+     * Gets a copy of a tile layer as a column-major array, indexed [x][y].
+     * Allocates a copy on every call, so per-frame code should read the
+     * layer from {@link #getTileLayer(String)} instead.
+     *
+     * @param layerName
+     *            the name of the layer
+     * @return a new array, or null if there is no such layer
+     */
+
     public int[][] getTilesAt(final String layerName) {
+        final TileLayer layer = tileLayers.get(layerName);
+
+        if (layer == null) {
+            return null;
+        }
+
+        final int[][] tileData = new int[layer.getWidth()][layer.getHeight()];
+
+        for (int y = 0; y < layer.getHeight(); y++) {
+            for (int x = 0; x < layer.getWidth(); x++) {
+                tileData[x][y] = layer.getTile(x, y);
+            }
+        }
+
+        return tileData;
+    }
+
+    public TileLayer getTileLayer(final String layerName) {
         return tileLayers.get(layerName);
     }
 
+    /**
+     * Gets the gid of a cell of a tile layer.
+     *
+     * @param layerName
+     *            the name of the layer
+     * @param x
+     *            the column
+     * @param y
+     *            the row
+     * @return the gid, or 0 for an empty cell
+     */
+
+    public int getTile(final String layerName, final int x, final int y) {
+        return tileLayers.get(layerName).getTile(x, y);
+    }
+
+    /**
+     * Gets the names of the tile layers.
+     *
+     * @return the names, in document order
+     */
+
     public Set<String> getTileLayerNames() {
         return tileLayers.keySet();
     }
 
+    /**
+     * Gets the tile layers in the order they are drawn, which is their order
+     * in the map file: the first layer is at the bottom.
+     *
+     * @return the layers, in document order
+     */
+
+    public List<TileLayer> getTileLayers() {
+        return Collections.unmodifiableList(orderedTileLayers);
+    }
+
+    /**
+     * Gets the position of a tile layer in {@link #getTileLayers()}, e.g. to
+     * split drawing around the entities.
+     *
+     * @param layerName
+     *            the name of the layer
+     * @return the index, or -1 if there is no such layer
+     */
+
+    public int getTileLayerIndex(final String layerName) {
+        return orderedTileLayers.indexOf(tileLayers.get(layerName));
+    }
+
     public List<Tileset> getTilesets() {
         return tilesets;
     }
 
+    /**
+     * Gets the tileset a gid belongs to, by binary search over the first gids
+     * of the tilesets. Flip flags are ignored.
+     *
+     * @param gid
+     *            the gid of a tile
+     * @return the tileset, or null for an empty cell or a gid no tileset
+     *         covers
+     */
+
+    public Tileset getTileset(final int gid) {
+        return tilesetIndex.find(gid);
+    }
+
+    /**
+     * Gets the animator playing the tile animations of the tilesets. Update
+     * it once per frame; renderers of the map draw the tiles it shows.
+     *
+     * @return the animator
+     */
+
+    public TileAnimator getTileAnimator() {
+        return tileAnimator;
+    }
+
     public int getTileWidth() {
         return tileWidth;
     }
@@ -1,9 +1,13 @@
 package org.jeromerodrigo.lucidengine.tiledmap;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
 import org.jeromerodrigo.lucidengine.util.ResourceLoader;
 
 public final class Tileset {
@@ -18,6 +22,13 @@ public final class Tileset {
 
     public final float STEP_X, STEP_Y;
 
+    private final int columns, rows;
+
+    /** u, v, u2, v2 of each tile, by local id */
+    private final float[] uvs;
+
+    private final List<TileAnimation> animations = new ArrayList<TileAnimation>();
+
     public Tileset(final String src, final int width, final int height,
             final int tileWidth, final int tileHeight, final int firstGid) {
         SOURCE = src;
@@ -31,7 +42,21 @@ public final class Tileset {
         STEP_X = (float) TILE_W / WIDTH;
         STEP_Y = (float) TILE_H / HEIGHT;
 
-        LAST_GID = WIDTH / TILE_W * (HEIGHT / TILE_H);
+        columns = WIDTH / TILE_W;
+        rows = HEIGHT / TILE_H;
+
+        LAST_GID = FIRST_GID + columns * rows - 1;
+
+        uvs = new float[columns * rows * 4];
+
+        for (int row = 0, i = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++, i += 4) {
+                uvs[i] = col * STEP_X;
+                uvs[i + 1] = row * STEP_Y;
+                uvs[i + 2] = (col + 1) * STEP_X;
+                uvs[i + 3] = (row + 1) * STEP_Y;
+            }
+        }
 
         String urlStr = SOURCE.startsWith("../") ? urlStr = "res/"
                 + SOURCE.substring(3) : SOURCE;
@@ -46,34 +71,125 @@ public final class Tileset {
 
     }
 
+    /**
+     * Gets the 1-based column and row of a tile in the tileset image.
+     *
+     * @param id
+     *            the gid of the tile
+     * @return the column and row, or 0, 0 if the tile is not in this tileset
+     */
+
     public int[] getTileIdByMapId(final int id) {
 
-        final int idWithOffSet = id - (FIRST_GID - 1); // Apply first gid offset
+        final int localId = id - FIRST_GID;
+
+        if (localId < 0 || localId >= columns * rows) {
+            return new int[] { 0, 0 };
+        }
+
+        return new int[] { localId % columns + 1, localId / columns + 1 };
 
-        int idX = 0;
-        int idY = 0;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
 
-        // Iterate over texture coordinate to get x, y component of the id
-        int y;
-        int count;
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the texture coordinates of every tile, relative to the tileset
+     * image: u, v, u2 and v2 of each local id in turn, a tile's starting at
+     * {@link #getUVIndex(int)}. The array is shared and must not be modified.
+     *
+     * @return the texture coordinates
+     */
 
-        for (y = 1, count = 1; y <= HEIGHT / TILE_H; y++) {
+    public float[] getUVs() {
+        return uvs;
+    }
 
-            for (int x = 1; x <= WIDTH / TILE_W; x++, count++) {
+    /**
+     * Gets where the texture coordinates of a tile start in
+     * {@link #getUVs()}.
+     *
+     * @param gid
+     *            the gid of a tile of this tileset
+     * @return the index of its u
+     */
+
+    public int getUVIndex(final int gid) {
+        return (gid - FIRST_GID) * 4;
+    }
 
-                if (count == idWithOffSet) {
+    /**
+     * Gets the texture coordinates of a tile in a texture holding the tileset
+     * image in one of its regions, e.g. a page of a texture atlas: the tile's
+     * {@link #getUVs()}, scaled into the region.
+     *
+     * @param gid
+     *            the gid of a tile of this tileset
+     * @param image
+     *            the region holding the tileset image
+     * @param out
+     *            receives u, v, u2 and v2
+     * @param offset
+     *            the index of u in out
+     */
+
+    public void getRegionUVs(final int gid, final TextureRegion image,
+            final float[] out, final int offset) {
+        final int uv = getUVIndex(gid);
+        final float du = image.getU2() - image.getU();
+        final float dv = image.getV2() - image.getV();
+
+        out[offset] = image.getU() + uvs[uv] * du;
+        out[offset + 1] = image.getV() + uvs[uv + 1] * dv;
+        out[offset + 2] = image.getU() + uvs[uv + 2] * du;
+        out[offset + 3] = image.getV() + uvs[uv + 3] * dv;
+    }
 
-                    idY = y;
-                    idX = x;
+    /**
+     * Adds the animation of a tile. Should be done before the tileset is added
+     * to a map, as the map's {@link TileAnimator} is built from the
+     * animations known then.
+     *
+     * @param animation
+     *            the animation, whose tile and frames are tiles of this
+     *            tileset
+     */
+
+    public void addAnimation(final TileAnimation animation) {
+        final int tileCount = columns * rows;
+
+        if (animation.getTileId() < 0 || animation.getTileId() >= tileCount) {
+            throw new IllegalArgumentException("no tile "
+                    + animation.getTileId() + " in " + SOURCE);
+        }
 
-                }
+        for (int i = 0; i < animation.getFrameCount(); i++) {
+            final int frameTileId = animation.getFrameTileId(i);
 
+            if (frameTileId < 0 || frameTileId >= tileCount) {
+                throw new IllegalArgumentException("frame " + i + " of tile "
+                        + animation.getTileId() + " shows no tile of "
+                        + SOURCE);
             }
-
         }
 
-        return new int[] { idX, idY };
+        animations.add(animation);
+    }
+
+    /**
+     * Gets the animations of the tiles of this tileset.
+     *
+     * @return the animations, in the order they were added
+     */
 
+    public List<TileAnimation> getAnimations() {
+        return Collections.unmodifiableList(animations);
     }
 
 }
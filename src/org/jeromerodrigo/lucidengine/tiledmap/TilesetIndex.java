@@ -0,0 +1,66 @@
+package org.jeromerodrigo.lucidengine.tiledmap;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Resolves the tileset owning a gid by binary search over the first gids of
+ * the tilesets, instead of testing every tileset's range in turn.
+ */
+
+final class TilesetIndex {
+
+    private final Tileset[] tilesets;
+
+    private final int[] firstGids;
+
+    TilesetIndex(final Collection<Tileset> tilesets) {
+        this.tilesets = tilesets.toArray(new Tileset[tilesets.size()]);
+
+        Arrays.sort(this.tilesets, new Comparator<Tileset>() {
+            @Override
+            public int compare(final Tileset a, final Tileset b) {
+                return Integer.compare(a.FIRST_GID, b.FIRST_GID);
+            }
+        });
+
+        firstGids = new int[this.tilesets.length];
+
+        for (int i = 0; i < firstGids.length; i++) {
+            firstGids[i] = this.tilesets[i].FIRST_GID;
+        }
+    }
+
+    /**
+     * Gets the tileset a gid belongs to, ignoring its flip flags.
+     *
+     * @param cell
+     *            the gid, as stored in a cell
+     * @return the tileset, or null for an empty cell or a gid no tileset
+     *         covers
+     */
+
+    Tileset find(final int cell) {
+        final int gid = cell & TileLayer.GID_MASK;
+
+        if (gid == 0) {
+            return null;
+        }
+
+        int i = Arrays.binarySearch(firstGids, gid);
+
+        if (i < 0) {
+            // the last tileset starting before the gid
+            i = -i - 2;
+
+            if (i < 0) {
+                return null;
+            }
+        }
+
+        final Tileset ts = tilesets[i];
+        return gid <= ts.LAST_GID ? ts : null;
+    }
+
+}
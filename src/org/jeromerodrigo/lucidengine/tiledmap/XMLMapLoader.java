@@ -2,8 +2,9 @@ package org.jeromerodrigo.lucidengine.tiledmap;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -58,8 +59,29 @@ public final class XMLMapLoader implements MapLoader {
         TiledMap.Orientation orientation = null;
 
         // Tile Layer Variables
-        final Map<String, List<Integer>> layerList = new HashMap<String, List<Integer>>();
+        final List<TileLayer> layers = new ArrayList<TileLayer>();
         String layerName = "";
+        int layerWidth = 0;
+        int layerHeight = 0;
+        boolean layerVisible = true;
+        float layerOpacity = 1f;
+        float layerParallaxX = 1f;
+        float layerParallaxY = 1f;
+        // gids are written straight into the layer's array as they stream in
+        int[] layerTiles = null;
+        int layerIdx = 0;
+        // CSV and base64 <data> is decoded by the decoder instead
+        String dataEncoding = null;
+        String dataCompression = null;
+        boolean decoding = false;
+        final LayerDataDecoder decoder = new LayerDataDecoder();
+
+        // Map Property Variables
+        final Map<String, String> properties = new LinkedHashMap<String, String>();
+        String propName = null;
+        String propValue = null;
+        // <map> is at depth 1, so its <property> elements are at depth 3
+        int depth = 0;
 
         // Collision Variables
         final List<CollisionObject> collObjs = new ArrayList<CollisionObject>();
@@ -76,12 +98,24 @@ public final class XMLMapLoader implements MapLoader {
         int tsTileH = 0;
         int firstGid = 0;
 
+        // Tile Animation Variables, collected until their tileset ends
+        final List<TileAnimation> tsAnimations = new ArrayList<TileAnimation>();
+        final List<Integer> frameTileIds = new ArrayList<Integer>();
+        final List<Integer> frameDurations = new ArrayList<Integer>();
+        int animTileId = 0;
+        int frameTileId = 0;
+        int frameDuration = 0;
+
         String source = "";
 
+        FileInputStream input = null;
+
         try {
 
+            input = new FileInputStream(path);
+
             final XMLStreamReader2 xmlr = (XMLStreamReader2) xmlif
-                    .createXMLStreamReader(new FileInputStream(path));
+                    .createXMLStreamReader(input);
 
             while (xmlr.hasNext()) {
 
@@ -90,12 +124,15 @@ public final class XMLMapLoader implements MapLoader {
                 String curElem = "";
 
                 if (xmlr.isStartElement() || xmlr.isEndElement()) {
-                    curElem = xmlr.getName().toString();
+                    // interned by the parser, unlike getName().toString()
+                    curElem = xmlr.getLocalName();
                 }
 
                 switch (eventType) {
                 case XMLEvent.START_ELEMENT:
 
+                    depth++;
+
                     for (int i = 0; i < xmlr.getAttributeCount(); i++) {
 
                         final String name = xmlr.getAttributeLocalName(i);
@@ -164,18 +201,101 @@ public final class XMLMapLoader implements MapLoader {
                             break;
                         case "layer":
 
-                            if ("name".equals(name)) {
+                            switch (name) {
+                            case "name":
                                 layerName = xmlr.getAttributeValue(i);
-                                layerList.put(layerName,
-                                        new ArrayList<Integer>());
+                                break;
+                            case "width":
+                                layerWidth = xmlr.getAttributeAsInt(i);
+                                break;
+                            case "height":
+                                layerHeight = xmlr.getAttributeAsInt(i);
+                                break;
+                            case "visible":
+                                layerVisible = xmlr.getAttributeAsInt(i) != 0;
+                                break;
+                            case "opacity":
+                                final float opacity = xmlr
+                                        .getAttributeAsFloat(i);
+
+                                // clamp a hand-edited value and keep loading
+                                layerOpacity = opacity > 0f ? Math.min(
+                                        opacity, 1f) : 0f;
+
+                                if (layerOpacity != opacity) {
+                                    LOG.warn("Opacity " + opacity
+                                            + " of layer " + layerName
+                                            + " clamped to " + layerOpacity);
+                                }
+                                break;
+                            case "parallaxx":
+                                layerParallaxX = xmlr.getAttributeAsFloat(i);
+                                break;
+                            case "parallaxy":
+                                layerParallaxY = xmlr.getAttributeAsFloat(i);
+                                break;
+                            }
+
+                            break;
+                        case "data":
+
+                            switch (name) {
+                            case "encoding":
+                                dataEncoding = xmlr.getAttributeValue(i);
+                                break;
+                            case "compression":
+                                dataCompression = xmlr.getAttributeValue(i);
+                                break;
                             }
 
                             break;
                         case "tile":
 
-                            if ("gid".equals(name)) {
-                                layerList.get(layerName).add(
-                                        xmlr.getAttributeAsInt(i));
+                            // tileset <tile> elements have an id, not a gid
+                            if ("gid".equals(name) && layerTiles != null) {
+                                if (layerIdx == layerTiles.length) {
+                                    throw new XMLStreamException(
+                                            "Too many tiles in layer "
+                                                    + layerName);
+                                }
+
+                                // flipped gids are written unsigned, so they
+                                // overflow an int
+                                try {
+                                    layerTiles[layerIdx++] = (int) Long
+                                            .parseLong(xmlr
+                                                    .getAttributeValue(i));
+                                } catch (final NumberFormatException e) {
+                                    throw new XMLStreamException(
+                                            "Bad gid in layer " + layerName
+                                                    + ": " + e.getMessage());
+                                }
+                            } else if ("id".equals(name)) {
+                                animTileId = xmlr.getAttributeAsInt(i);
+                            }
+
+                            break;
+                        case "frame":
+
+                            switch (name) {
+                            case "tileid":
+                                frameTileId = xmlr.getAttributeAsInt(i);
+                                break;
+                            case "duration":
+                                frameDuration = xmlr.getAttributeAsInt(i);
+                                break;
+                            }
+
+                            break;
+                        case "property":
+
+                            switch (name) {
+                            case "name":
+                                propName = xmlr.getAttributeValue(i);
+                                break;
+                            case "value":
+                                propValue = xmlr.getAttributeValue(i);
+                                break;
                             }
 
                             break;
@@ -201,12 +321,96 @@ public final class XMLMapLoader implements MapLoader {
 
                     }
 
+                    if ("property".equals(curElem)) {
+                        if (depth == 3 && propName != null) {
+                            if (propValue == null) {
+                                // multi-line values are the element's text
+                                propValue = xmlr.getElementText();
+                                depth--;
+                            }
+                            properties.put(propName, propValue);
+                        }
+                        propName = null;
+                        propValue = null;
+                    } else if ("layer".equals(curElem)) {
+                        // older maps leave the layer size to the map
+                        if (layerWidth == 0 || layerHeight == 0) {
+                            layerWidth = width;
+                            layerHeight = height;
+                        }
+                        layerTiles = new int[layerWidth * layerHeight];
+                        layerIdx = 0;
+                    } else if ("frame".equals(curElem)) {
+                        frameTileIds.add(frameTileId);
+                        frameDurations.add(frameDuration);
+                        frameTileId = 0;
+                        frameDuration = 0;
+                    } else if ("data".equals(curElem) && layerTiles != null
+                            && dataEncoding != null) {
+                        decoder.begin(dataEncoding, dataCompression,
+                                layerName, layerTiles);
+                        decoding = true;
+                    }
+
+                    break;
+                case XMLEvent.CHARACTERS:
+                case XMLEvent.CDATA:
+                case XMLEvent.SPACE:
+
+                    if (decoding) {
+                        decoder.characters(xmlr);
+                    }
+
                     break;
                 case XMLEvent.END_ELEMENT:
 
-                    if ("tileset".equals(curElem)) {
-                        tilesets.add(new Tileset(source, tsWidth, tsHeight,
-                                tsTileW, tsTileH, firstGid));
+                    depth--;
+
+                    if ("data".equals(curElem)) {
+                        if (decoding) {
+                            decoder.end();
+                            decoding = false;
+                        }
+                        dataEncoding = null;
+                        dataCompression = null;
+                    } else if ("layer".equals(curElem)) {
+                        final TileLayer layer = new TileLayer(layerName,
+                                layerWidth, layerHeight, layerTiles);
+                        layer.setVisible(layerVisible);
+                        layer.setOpacity(layerOpacity);
+                        layer.setParallax(layerParallaxX, layerParallaxY);
+                        layers.add(layer);
+                        layerTiles = null;
+                        layerWidth = 0;
+                        layerHeight = 0;
+                        layerVisible = true;
+                        layerOpacity = 1f;
+                        layerParallaxX = 1f;
+                        layerParallaxY = 1f;
+                    } else if ("animation".equals(curElem)) {
+                        try {
+                            tsAnimations.add(new TileAnimation(animTileId,
+                                    toIntArray(frameTileIds),
+                                    toIntArray(frameDurations)));
+                        } catch (final IllegalArgumentException e) {
+                            throw new XMLStreamException(e.getMessage());
+                        }
+                        frameTileIds.clear();
+                        frameDurations.clear();
+                    } else if ("tileset".equals(curElem)) {
+                        final Tileset tileset = new Tileset(source, tsWidth,
+                                tsHeight, tsTileW, tsTileH, firstGid);
+
+                        try {
+                            for (final TileAnimation anim : tsAnimations) {
+                                tileset.addAnimation(anim);
+                            }
+                        } catch (final IllegalArgumentException e) {
+                            throw new XMLStreamException(e.getMessage());
+                        }
+
+                        tilesets.add(tileset);
+                        tsAnimations.clear();
                     } else if ("object".equals(curElem)) {
                         collObjs.add(new CollisionObject(objX, objY, objWidth,
                                 objHeight, tileWidth, tileHeight));
@@ -221,37 +425,34 @@ public final class XMLMapLoader implements MapLoader {
             LOG.fatal("Map file not found!\n" + e.getMessage());
         } catch (final XMLStreamException e) {
             LOG.fatal("XML Stream Error.\n" + e.getMessage());
+        } finally {
+            decoder.dispose();
+
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (final IOException e) {
+                    LOG.error(e);
+                }
+            }
         }
 
         final TiledMap map = new TiledMap(orientation, width, height,
                 tileWidth, tileHeight);
 
-        for (final String key : layerList.keySet()) {
-
-            final List<Integer> tileList = layerList.get(key);
-
-            int idx = 0;
-
-            final int[][] tileData = new int[width][height];
-
-            for (int y = 0; y < height; y++) {
-
-                for (int x = 0; x < width; x++) {
-
-                    tileData[x][y] = tileList.get(idx);
-                    idx++;
-
-                }
-
-            }
-
-            // Add new tile layer
-            map.addTileLayer(key, tileData);
+        // Add the tile layers
+        for (final TileLayer layer : layers) {
+            map.addTileLayer(layer);
         }
 
         // Set collision objects
         map.setCollisionObjects(collObjs);
 
+        // Set map properties
+        for (final Map.Entry<String, String> property : properties.entrySet()) {
+            map.setProperty(property.getKey(), property.getValue());
+        }
+
         // Add the tilesets
         for (final Tileset tSet : tilesets) {
             map.addTileset(tSet);
@@ -260,6 +461,16 @@ public final class XMLMapLoader implements MapLoader {
         return map;
     }
 
+    private static int[] toIntArray(final List<Integer> values) {
+        final int[] array = new int[values.size()];
+
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+
+        return array;
+    }
+
     @Override
     public void loadMapToPhysics(final TiledMap map, final World physics) {
 
@@ -0,0 +1,130 @@
+package org.jeromerodrigo.lucidengine.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Splits the time passing between frames into fixed ticks. Each frame
+ * {@link #advance(long)} tells how many ticks came due since the previous
+ * one, at most a cap; if the updates can't keep up, the ticks over the cap
+ * are dropped, slowing the simulation down rather than letting the backlog
+ * grow. The fraction of a tick left over is the interpolation alpha.
+ *
+ * Times are passed in rather than read from a clock, so the class doesn't
+ * depend on the display or on real time.
+ */
+
+public final class FixedTimestep {
+
+    private static final Logger LOG = LogManager.getLogger(FixedTimestep.class);
+
+    /** The length of a tick in nanoseconds */
+    private final long tickNanos;
+
+    private final int maxTicksPerFrame;
+
+    /** The ticks run so far */
+    private long ticks;
+
+    /** When the time was last advanced, in nanoseconds */
+    private long last;
+
+    /** Time due but not yet ticked, in nanoseconds */
+    private long lag;
+
+    /**
+     * @param tickNanos
+     *            the length of a tick in nanoseconds
+     * @param maxTicksPerFrame
+     *            the most ticks a frame may run
+     */
+
+    public FixedTimestep(final long tickNanos, final int maxTicksPerFrame) {
+
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tick length " + tickNanos);
+        }
+
+        if (maxTicksPerFrame < 1) {
+            throw new IllegalArgumentException("max ticks per frame "
+                    + maxTicksPerFrame);
+        }
+
+        this.tickNanos = tickNanos;
+        this.maxTicksPerFrame = maxTicksPerFrame;
+    }
+
+    /**
+     * Starts counting time from now, forgetting any lag.
+     *
+     * @param now
+     *            the time in nanoseconds
+     */
+
+    public void reset(final long now) {
+        last = now;
+        lag = 0;
+    }
+
+    /**
+     * Adds the time since the previous call and takes the ticks that came
+     * due, dropping those over the cap.
+     *
+     * @param now
+     *            the time in nanoseconds
+     * @return the number of ticks to run, each with {@link #nextTickDelta()}
+     */
+
+    public int advance(final long now) {
+        lag += now - last;
+        last = now;
+
+        final int due = (int) Math.min(lag / tickNanos, maxTicksPerFrame);
+        lag -= due * tickNanos;
+
+        if (lag >= tickNanos) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Dropped {} ticks", lag / tickNanos);
+            }
+            lag %= tickNanos;
+        }
+
+        return due;
+    }
+
+    /**
+     * Gets the length of the next tick in whole milliseconds. A tick rarely
+     * lasts a whole number of milliseconds, so the lengths alternate in a way
+     * that keeps their sum in step with the tick count, e.g. 16 or 17 at 60
+     * ticks per second.
+     *
+     * @return the length in milliseconds
+     */
+
+    public int nextTickDelta() {
+        final long start = ticks * tickNanos / 1000000L;
+        ticks++;
+        return (int) (ticks * tickNanos / 1000000L - start);
+    }
+
+    /**
+     * Gets the fraction of a tick left over by the last
+     * {@link #advance(long)}.
+     *
+     * @return the fraction, from 0 inclusive to 1 exclusive
+     */
+
+    public float getAlpha() {
+        return (float) lag / tickNanos;
+    }
+
+    /**
+     * Gets the length of a tick.
+     *
+     * @return the length in nanoseconds
+     */
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+}
@@ -0,0 +1,123 @@
+package org.jeromerodrigo.lucidengine.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands frames from a producer thread to a consumer thread through two
+ * buffers, without locks: the producer fills one buffer while the consumer
+ * reads the other, and they swap when the producer publishes.
+ *
+ * The consumer never waits: if no new buffer was published it gets the one it
+ * already has. The producer waits for the consumer to release its buffer, so
+ * it runs at most one frame ahead.
+ *
+ * @param <T>
+ *            the type of the buffers
+ */
+
+public final class SnapshotExchange<T> {
+
+    /** The buffer the producer may fill next, null while either holds it */
+    private final AtomicReference<T> free;
+
+    /** The latest buffer published and not yet taken by the consumer */
+    private final AtomicReference<T> published = new AtomicReference<T>();
+
+    /** The buffer the consumer is reading; only touched by the consumer */
+    private T front;
+
+    private volatile Thread waitingProducer;
+
+    private volatile boolean closed;
+
+    /**
+     * @param first
+     *            the buffer the producer fills first
+     * @param second
+     *            the buffer the consumer holds until the first is published
+     */
+
+    public SnapshotExchange(final T first, final T second) {
+        free = new AtomicReference<T>(first);
+        front = second;
+    }
+
+    /**
+     * Takes the buffer to fill, waiting until the consumer releases it. Must
+     * be called by the producer.
+     *
+     * @return the buffer, or null if the exchange was closed
+     */
+
+    public T acquireBack() {
+        T back;
+
+        while ((back = free.getAndSet(null)) == null) {
+            if (closed) {
+                return null;
+            }
+
+            waitingProducer = Thread.currentThread();
+
+            // re-checked after announcing the wait, so a release in between
+            // is never missed
+            if (free.get() == null && !closed) {
+                LockSupport.park(this);
+            }
+
+            waitingProducer = null;
+        }
+
+        return back;
+    }
+
+    /**
+     * Publishes a filled buffer. Must be called by the producer with the
+     * buffer it acquired.
+     *
+     * @param back
+     *            the buffer
+     */
+
+    public void publish(final T back) {
+        published.set(back);
+    }
+
+    /**
+     * Gets the latest published buffer, releasing the previous one to the
+     * producer. Must be called by the consumer.
+     *
+     * @return the buffer to read
+     */
+
+    public T acquireFront() {
+        final T next = published.getAndSet(null);
+
+        if (next != null) {
+            free.set(front);
+            front = next;
+            wakeProducer();
+        }
+
+        return front;
+    }
+
+    /**
+     * Makes a waiting producer give up and later acquires fail.
+     */
+
+    public void close() {
+        closed = true;
+        wakeProducer();
+    }
+
+    private void wakeProducer() {
+        final Thread producer = waitingProducer;
+
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.jeromerodrigo.lucidengine.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jeromerodrigo.lucidengine.tiledmap.TiledMap;
+import org.jeromerodrigo.lucidengine.tiledmap.XMLMapLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how long XMLMapLoader takes to load a generated map with several
+ * XML-encoded tile layers. Run through {@link #main(String[])} to also get the
+ * GC profiler's figures; gc.alloc.rate.norm is the number of bytes allocated
+ * per load, which bounds the garbage the loader leaves behind.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class MapLoadBenchmark {
+
+    @Param({ "250", "1000" })
+    private int size;
+
+    @Param({ "4" })
+    private int layers;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("maploadbenchmark", ".tmx");
+
+        final BufferedWriter out = new BufferedWriter(new FileWriter(file));
+
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<map version=\"1.0\" orientation=\"orthogonal\" width=\""
+                    + size + "\" height=\"" + size
+                    + "\" tilewidth=\"32\" tileheight=\"32\">\n");
+            out.write(" <tileset firstgid=\"1\" name=\"tiles\" tilewidth=\"32\" tileheight=\"32\">\n");
+            out.write("  <image source=\"tiles.png\" width=\"512\" height=\"512\"/>\n");
+            out.write(" </tileset>\n");
+
+            for (int l = 0; l < layers; l++) {
+                out.write(" <layer name=\"layer" + l + "\" width=\"" + size
+                        + "\" height=\"" + size + "\">\n  <data>\n");
+
+                for (int i = 0; i < size * size; i++) {
+                    out.write("   <tile gid=\"" + (i % 256 + 1) + "\"/>\n");
+                }
+
+                out.write("  </data>\n </layer>\n");
+            }
+
+            out.write("</map>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public TiledMap loadMap() {
+        return XMLMapLoader.INSTANCE.loadMap(file.getPath());
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MapLoadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+
+}
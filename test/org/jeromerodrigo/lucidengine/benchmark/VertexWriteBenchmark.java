@@ -0,0 +1,116 @@
+package org.jeromerodrigo.lucidengine.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jeromerodrigo.lucidengine.graphics.Color;
+import org.jeromerodrigo.lucidengine.graphics.SpriteBatch;
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the two ways SpriteBatch can fill a batch of quads: chaining
+ * VertexData.put once per float, or staging into a float[] and handing the
+ * whole batch over with a single bulk put. Neither path touches GL, so this
+ * runs headless.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VertexWriteBenchmark {
+
+    private static final int VERTEX_SIZE = 5;
+
+    @Param({ "1000" })
+    private int quads;
+
+    private VertexArray data;
+
+    private float[] staging;
+
+    private final float color = Color.WHITE.toFloatBits();
+
+    @Setup
+    public void setUp() {
+        data = new VertexArray(quads * 4, SpriteBatch.ATTRIBUTES);
+        staging = new float[quads * 4 * VERTEX_SIZE];
+    }
+
+    @Benchmark
+    public VertexArray perFloatPut() {
+        for (int q = 0; q < quads; q++) {
+            final float x = q;
+            final float y = q;
+
+            data.put(x).put(y).put(color).put(0f).put(0f);
+            data.put(x + 32).put(y).put(color).put(1f).put(0f);
+            data.put(x + 32).put(y + 32).put(color).put(1f).put(1f);
+            data.put(x).put(y + 32).put(color).put(0f).put(1f);
+        }
+
+        data.flip();
+        data.clear();
+        return data;
+    }
+
+    @Benchmark
+    public VertexArray stagedBulkPut() {
+        final float[] verts = staging;
+
+        for (int q = 0, i = 0; q < quads; q++, i += VERTEX_SIZE * 4) {
+            final float x = q;
+            final float y = q;
+
+            verts[i] = x;
+            verts[i + 1] = y;
+            verts[i + 2] = color;
+            verts[i + 3] = 0f;
+            verts[i + 4] = 0f;
+
+            verts[i + 5] = x + 32;
+            verts[i + 6] = y;
+            verts[i + 7] = color;
+            verts[i + 8] = 1f;
+            verts[i + 9] = 0f;
+
+            verts[i + 10] = x + 32;
+            verts[i + 11] = y + 32;
+            verts[i + 12] = color;
+            verts[i + 13] = 1f;
+            verts[i + 14] = 1f;
+
+            verts[i + 15] = x;
+            verts[i + 16] = y + 32;
+            verts[i + 17] = color;
+            verts[i + 18] = 0f;
+            verts[i + 19] = 1f;
+        }
+
+        data.put(verts, 0, verts.length);
+        data.flip();
+        data.clear();
+        return data;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(
+                VertexWriteBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import org.jeromerodrigo.lucidengine.graphics.GLTaskQueue;
+import org.jeromerodrigo.lucidengine.tiledmap.AsyncMapLoader;
+import org.jeromerodrigo.lucidengine.tiledmap.XMLMapLoader;
+import org.junit.Test;
+
+/**
+ * Runs the background work on the calling thread and checks how failed loads
+ * end. Nothing is uploaded, so no GL context is needed.
+ */
+
+public class AsyncMapLoaderTest {
+
+    static final Executor INLINE = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testEmptyMapFails() throws InterruptedException {
+        final GLTaskQueue glTasks = new GLTaskQueue();
+        final AsyncMapLoader loader = new AsyncMapLoader(XMLMapLoader.INSTANCE,
+                INLINE, glTasks);
+
+        final AsyncMapLoader.Handle handle = loader.load("missing.tmx");
+
+        assertTrue(handle.isDone());
+        assertTrue(failure(handle) instanceof IOException);
+        assertTrue(glTasks.isEmpty());
+    }
+
+    @Test
+    public void testFailedDecodeReleasesTextures() throws IOException,
+            InterruptedException {
+        final String tmx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<map version=\"1.0\" orientation=\"orthogonal\""
+                + " width=\"1\" height=\"1\" tilewidth=\"32\""
+                + " tileheight=\"32\">\n"
+                + " <tileset firstgid=\"1\" name=\"tiles\""
+                + " tilewidth=\"32\" tileheight=\"32\">\n"
+                + "  <image source=\"missing.png\" width=\"64\""
+                + " height=\"64\"/>\n"
+                + " </tileset>\n"
+                + " <layer name=\"ground\" width=\"1\" height=\"1\">\n"
+                + "  <data encoding=\"csv\">1</data>\n"
+                + " </layer>\n"
+                + "</map>\n";
+
+        final File file = File.createTempFile("map", ".tmx");
+        file.deleteOnExit();
+        Files.write(file.toPath(), tmx.getBytes(StandardCharsets.UTF_8));
+
+        final GLTaskQueue glTasks = new GLTaskQueue();
+        final AsyncMapLoader loader = new AsyncMapLoader(XMLMapLoader.INSTANCE,
+                INLINE, glTasks);
+
+        final AsyncMapLoader.Handle handle = loader.load(file.getPath());
+
+        // the image can't be found, so decoding it throws unchecked
+        assertTrue(handle.isDone());
+        assertTrue(failure(handle) instanceof RuntimeException);
+
+        // the release of the textures uploaded so far is queued
+        assertFalse(glTasks.isEmpty());
+        assertEquals(1, glTasks.process(Long.MAX_VALUE));
+    }
+
+    private static Throwable failure(final AsyncMapLoader.Handle handle)
+            throws InterruptedException {
+        try {
+            handle.get();
+        } catch (final ExecutionException e) {
+            return e.getCause();
+        }
+
+        fail("The load should have failed");
+        return null;
+    }
+
+}
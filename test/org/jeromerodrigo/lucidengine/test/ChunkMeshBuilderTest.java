@@ -0,0 +1,179 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeromerodrigo.lucidengine.graphics.glutils.VertexArray;
+import org.jeromerodrigo.lucidengine.graphics.texture.Texture;
+import org.jeromerodrigo.lucidengine.graphics.texture.TextureRegion;
+import org.jeromerodrigo.lucidengine.tiledmap.ChunkMesh;
+import org.jeromerodrigo.lucidengine.tiledmap.ChunkMeshBuilder;
+import org.jeromerodrigo.lucidengine.tiledmap.IsometricLayout;
+import org.jeromerodrigo.lucidengine.tiledmap.TileAnimation;
+import org.jeromerodrigo.lucidengine.tiledmap.TileLayer;
+import org.jeromerodrigo.lucidengine.tiledmap.TiledMap;
+import org.jeromerodrigo.lucidengine.tiledmap.Tileset;
+import org.junit.Test;
+
+/**
+ * Checks the cached isometric path against the per-tile one. The meshes are
+ * built into vertex arrays with placeholder textures, so no GL context is
+ * needed.
+ */
+
+public class ChunkMeshBuilderTest {
+
+    static final int MAP_W = 9;
+    static final int MAP_H = 6;
+
+    static final int TILE_W = 64;
+    static final int TILE_H = 32;
+
+    /** Floats per vertex: x, y, color, u, v */
+    static final int VERTEX_SIZE = 5;
+
+    /** A view holding the whole map */
+    static final float FAR = 100000f;
+
+    @Test
+    public void testIsometricMatchesPerTile() {
+        final int[] tiles = new int[MAP_W * MAP_H];
+
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = (i * 7 + 3) % 13;
+        }
+
+        final TileLayer layer = new TileLayer("ground", MAP_W, MAP_H, tiles);
+        final Tileset first = new Tileset("", 256, 64, TILE_W, TILE_H, 1);
+        final Tileset second = new Tileset("", 128, 64, TILE_W, TILE_H, 9);
+
+        // gid 3 is animated, so it stays out of the mesh
+        first.addAnimation(new TileAnimation(2, new int[] { 2, 3 }, new int[] {
+                100, 100 }));
+
+        final TiledMap map = new TiledMap(TiledMap.Orientation.ISOMETRIC,
+                MAP_W, MAP_H, TILE_W, TILE_H) {
+            {
+                addTileset(first);
+                addTileset(second);
+                addTileLayer(layer);
+            }
+        };
+
+        // the second image is the bottom right quarter of a shared texture
+        final Map<Tileset, TextureRegion> regions = new HashMap<Tileset, TextureRegion>();
+        regions.put(first, new TextureRegion(Texture.createPlaceholder(256, 64)));
+        regions.put(second, new TextureRegion(
+                Texture.createPlaceholder(256, 128), 0.5f, 0.5f, 1f, 1f));
+
+        final IsometricLayout layout = new IsometricLayout(map);
+        assertTrue(layout.isFlat());
+
+        final ChunkMeshBuilder builder = new ChunkMeshBuilder(
+                map.getTilesets(), regions, map.getTileAnimator(), TILE_W,
+                TILE_H, 32, false);
+        final ChunkMesh chunk = builder.buildIsometric(layout, layer, 0, 0,
+                MAP_W, MAP_H);
+
+        assertNotNull(chunk);
+        assertTrue(chunk.getMesh() instanceof VertexArray);
+
+        // the quads the per-tile path draws, by texture and top left corner
+        final Map<Texture, Map<String, float[]>> expected = new IdentityHashMap<Texture, Map<String, float[]>>();
+        final List<Integer> animated = new ArrayList<Integer>();
+
+        layout.visitVisible(layer, -FAR, -FAR, FAR, FAR,
+                new IsometricLayout.TileVisitor() {
+                    @Override
+                    public void visit(final int x, final int y,
+                            final int gid, final Tileset tileset,
+                            final float x1, final float y1, final float x2,
+                            final float y2) {
+                        if (map.getTileAnimator().isAnimated(gid)) {
+                            animated.add(gid);
+                            return;
+                        }
+
+                        final TextureRegion image = regions.get(tileset);
+                        final float[] uvs = new float[4];
+                        tileset.getRegionUVs(gid, image, uvs, 0);
+
+                        Map<String, float[]> quads = expected.get(image
+                                .getTexture());
+
+                        if (quads == null) {
+                            quads = new HashMap<String, float[]>();
+                            expected.put(image.getTexture(), quads);
+                        }
+
+                        quads.put(x1 + "," + y1, quad(x1, y1, x2, y2, uvs));
+                    }
+                });
+
+        assertEquals(expected.size(), chunk.getTextureCount());
+
+        final FloatBuffer verts = chunk.getMesh().getBuffer();
+
+        for (int t = 0; t < chunk.getTextureCount(); t++) {
+            final Map<String, float[]> quads = expected.get(chunk
+                    .getTexture(t));
+
+            assertNotNull(quads);
+            assertEquals(quads.size(), chunk.getQuadCount(t));
+
+            for (int q = 0; q < chunk.getQuadCount(t); q++) {
+                final float[] actual = new float[4 * 4];
+                int v = (chunk.getFirstQuad(t) + q) * 4 * VERTEX_SIZE;
+
+                // x, y, u and v of each corner, leaving out the color
+                for (int c = 0; c < 4; c++, v += VERTEX_SIZE) {
+                    actual[c * 4] = verts.get(v);
+                    actual[c * 4 + 1] = verts.get(v + 1);
+                    actual[c * 4 + 2] = verts.get(v + 3);
+                    actual[c * 4 + 3] = verts.get(v + 4);
+                }
+
+                final float[] quad = quads.remove(actual[0] + ","
+                        + actual[1]);
+
+                assertNotNull("no tile at " + actual[0] + "," + actual[1],
+                        quad);
+                assertArrayEquals(quad, actual, 0f);
+            }
+        }
+
+        final List<Integer> chunkAnimated = new ArrayList<Integer>();
+
+        for (int c = 0; c < chunk.getAnimatedCount(); c++) {
+            chunkAnimated.add(chunk.getAnimatedGid(c));
+        }
+
+        Collections.sort(animated);
+        Collections.sort(chunkAnimated);
+        assertEquals(animated, chunkAnimated);
+
+        builder.dispose();
+    }
+
+    /**
+     * The corners of a tile as SpriteBatch.draw writes them: top left, top
+     * right, bottom right, bottom left.
+     */
+
+    static float[] quad(final float x1, final float y1, final float x2,
+            final float y2, final float[] uvs) {
+        return new float[] { x1, y1, uvs[0], uvs[1], x2, y1, uvs[2], uvs[1],
+                x2, y2, uvs[2], uvs[3], x1, y2, uvs[0], uvs[3] };
+    }
+
+}
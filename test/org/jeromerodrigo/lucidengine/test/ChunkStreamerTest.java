@@ -0,0 +1,130 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.jeromerodrigo.lucidengine.tiledmap.ChunkStreamer;
+import org.jeromerodrigo.lucidengine.tiledmap.MapChunk;
+import org.jeromerodrigo.lucidengine.tiledmap.ProceduralChunkSource;
+import org.jeromerodrigo.lucidengine.tiledmap.Tileset;
+import org.junit.Test;
+
+public class ChunkStreamerTest {
+
+    static final int CHUNK = 4;
+
+    static final int TILE = 16;
+
+    /** The width of a chunk in pixels */
+    static final int SPAN = CHUNK * TILE;
+
+    static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    static class Source extends ProceduralChunkSource {
+
+        final List<String> loads = Collections
+                .synchronizedList(new ArrayList<String>());
+
+        Source() {
+            super(CHUNK, TILE, TILE, Collections.<Tileset> emptyList(),
+                    "ground");
+        }
+
+        @Override
+        protected int generateTile(final int layer, final int x, final int y) {
+            return x * 1000 + y;
+        }
+
+        @Override
+        public MapChunk loadChunk(final int chunkX, final int chunkY) {
+            loads.add(chunkX + "," + chunkY);
+            return super.loadChunk(chunkX, chunkY);
+        }
+    }
+
+    @Test
+    public void testGeneratedTiles() {
+        final Source source = new Source();
+        final ChunkStreamer streamer = new ChunkStreamer(source, DIRECT, 4);
+
+        streamer.update(-SPAN, SPAN, SPAN, SPAN);
+
+        final MapChunk chunk = streamer.getChunk(-1, 1);
+        assertNotNull(chunk);
+        assertEquals(-4 * 1000 + 4, chunk.getLayer(0).getTile(0, 0));
+        assertEquals(-1 * 1000 + 7, chunk.getLayer(0).getTile(3, 3));
+    }
+
+    @Test
+    public void testPrefetchAhead() {
+        final Source source = new Source();
+        final ChunkStreamer streamer = new ChunkStreamer(source, DIRECT, 8);
+
+        streamer.update(0, 0, SPAN, SPAN);
+        assertEquals(Collections.singletonList("0,0"), source.loads);
+
+        // moving right prefetches the next column only
+        streamer.update(1, 0, SPAN, SPAN);
+        assertTrue(source.loads.contains("2,0"));
+        assertFalse(source.loads.contains("-1,0"));
+        assertFalse(source.loads.contains("0,1"));
+
+        // prefetched chunks are taken in on the next update
+        assertNull(streamer.getChunk(2, 0));
+        streamer.update(1, 0, SPAN, SPAN);
+        assertNotNull(streamer.getChunk(2, 0));
+
+        final int loadCount = source.loads.size();
+        streamer.update(SPAN + 1, 0, SPAN, SPAN);
+        assertTrue(source.loads.subList(loadCount, source.loads.size())
+                .contains("3,0"));
+        assertFalse(source.loads.subList(loadCount, source.loads.size())
+                .contains("2,0"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        final Source source = new Source();
+        final ChunkStreamer streamer = new ChunkStreamer(source, DIRECT, 2);
+        streamer.setPrefetchDistance(0);
+
+        final List<MapChunk> evicted = new ArrayList<MapChunk>();
+        streamer.setEvictionListener(new ChunkStreamer.EvictionListener() {
+            @Override
+            public void chunkEvicted(final MapChunk chunk) {
+                evicted.add(chunk);
+            }
+        });
+
+        streamer.update(0, 0, SPAN, SPAN);
+        streamer.update(SPAN, 0, SPAN, SPAN);
+        streamer.update(0, 0, SPAN, SPAN);
+        assertTrue(evicted.isEmpty());
+
+        // 1,0 was viewed longer ago than 0,0
+        streamer.update(2 * SPAN, 0, SPAN, SPAN);
+        assertEquals(2, streamer.getResidentCount());
+        assertEquals(1, evicted.size());
+        assertEquals(1, evicted.get(0).getChunkX());
+        assertNotNull(streamer.getChunk(0, 0));
+        assertNull(streamer.getChunk(1, 0));
+
+        streamer.dispose();
+        assertEquals(3, evicted.size());
+        assertEquals(0, streamer.getResidentCount());
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jeromerodrigo.lucidengine.util.FixedTimestep;
+import org.junit.Test;
+
+public class FixedTimestepTest {
+
+    /** 60 ticks per second */
+    private static final long TICK = 1000000000L / 60;
+
+    @Test
+    public void testTicksDue() {
+        final FixedTimestep timestep = new FixedTimestep(TICK, 5);
+        timestep.reset(1000);
+
+        assertEquals(0, timestep.advance(1000 + TICK - 1));
+        assertEquals(1, timestep.advance(1000 + TICK));
+        assertEquals(0f, timestep.getAlpha(), 0f);
+
+        // two and a half ticks later
+        assertEquals(2, timestep.advance(1000 + TICK * 3 + TICK / 2));
+        assertEquals(0.5f, timestep.getAlpha(), 0.001f);
+
+        // the half tick left over carries into the next frame
+        assertEquals(1, timestep.advance(1000 + TICK * 4 + TICK / 2));
+        assertEquals(0.5f, timestep.getAlpha(), 0.001f);
+    }
+
+    @Test
+    public void testDropsTicksOverCap() {
+        final FixedTimestep timestep = new FixedTimestep(TICK, 5);
+        timestep.reset(0);
+
+        // a stall of 20 ticks and a quarter runs only 5 of them
+        assertEquals(5, timestep.advance(TICK * 20 + TICK / 4));
+        assertEquals(0.25f, timestep.getAlpha(), 0.001f);
+
+        // the dropped ticks don't come due later
+        assertEquals(0, timestep.advance(TICK * 20 + TICK / 2));
+        assertEquals(1, timestep.advance(TICK * 21 + TICK / 2));
+    }
+
+    @Test
+    public void testTickDeltas() {
+        final FixedTimestep timestep = new FixedTimestep(TICK, 5);
+
+        int sum = 0;
+
+        for (int t = 1; t <= 600; t++) {
+            final int delta = timestep.nextTickDelta();
+            assertTrue(delta == 16 || delta == 17);
+
+            // the deltas add up to the time ticked, less than a millisecond
+            sum += delta;
+            assertEquals(t * TICK / 1000000L, sum);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoCap() {
+        new FixedTimestep(TICK, 0);
+    }
+}
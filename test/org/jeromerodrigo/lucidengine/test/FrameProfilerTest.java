@@ -0,0 +1,143 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jeromerodrigo.lucidengine.graphics.BatchStats;
+import org.jeromerodrigo.lucidengine.graphics.BatchStats.FlushReason;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler.Counter;
+import org.jeromerodrigo.lucidengine.profiling.FrameProfiler.Phase;
+import org.junit.Test;
+
+public class FrameProfilerTest {
+
+    @Test
+    public void testSummary() {
+        final long[] samples = new long[100];
+
+        for (int i = 0; i < samples.length; i++) {
+            // shuffled 1 to 100
+            samples[i] = (i * 37) % 100 + 1;
+        }
+
+        final FrameProfiler.Summary summary = FrameProfiler.Summary
+                .of(samples);
+
+        assertEquals(50, summary.p50);
+        assertEquals(99, summary.p99);
+        assertEquals(100, summary.max);
+        assertEquals(0, FrameProfiler.Summary.of(new long[0]).max);
+    }
+
+    @Test
+    public void testWindow() {
+        final FrameProfiler profiler = new FrameProfiler(5);
+        assertEquals(7, profiler.getWindowSize());
+
+        profiler.track(new BatchStats());
+
+        for (int f = 0; f < 3; f++) {
+            record(profiler);
+        }
+
+        assertEquals(3, profiler.getFrameCount());
+        assertEquals(3, profiler.getFrameTimes().length);
+
+        for (int f = 0; f < 20; f++) {
+            record(profiler);
+        }
+
+        assertEquals(23, profiler.getFrameCount());
+        assertEquals(7, profiler.getPhaseTimes(Phase.RENDER).length);
+        assertEquals(7, profiler.getCounts(Counter.DRAW_CALLS).length);
+
+        // the laps of a frame add up to it
+        final long[] frames = profiler.getFrameTimes();
+        final long[] inputs = profiler.getPhaseTimes(Phase.INPUT);
+        final long[] renders = profiler.getPhaseTimes(Phase.RENDER);
+
+        for (int i = 0; i < frames.length; i++) {
+            assertTrue(inputs[i] >= 0 && renders[i] >= 0);
+            assertEquals(frames[i], inputs[i] + renders[i]);
+        }
+
+        assertEquals(6, profiler.getPhaseNames().length);
+        assertEquals(0, profiler.getCounterMax()[Counter.FLUSHES.ordinal()]);
+    }
+
+    @Test
+    public void testFlushCountersFollowReasons() {
+        for (final FlushReason reason : FlushReason.values()) {
+            assertEquals(Counter.FLUSHES.ordinal() + 1 + reason.ordinal(),
+                    Counter.valueOf(reason.name() + "_FLUSHES").ordinal());
+        }
+    }
+
+    @Test
+    public void testBatchCountersPerFrame() {
+        final FrameProfiler profiler = new FrameProfiler(7);
+        final BatchStats stats = new BatchStats();
+
+        // counted before tracking, so never part of a frame
+        stats.rendered(50, 200);
+        profiler.track(stats);
+
+        stats.flushed(FlushReason.TEXTURE_CHANGE);
+        stats.rendered(10, 40);
+        stats.flushed(FlushReason.END);
+        stats.rendered(30, 120);
+        stats.texturesBound(2);
+        record(profiler);
+
+        stats.flushed(FlushReason.END);
+        stats.rendered(20, 80);
+        stats.meshDrawn(5);
+        stats.texturesBound(2);
+        record(profiler);
+
+        // sampling per frame leaves the batch's own maximum alone
+        assertEquals(50, stats.getMaxBatchQuads());
+
+        // the game resets the counters, then draws a frame
+        stats.reset();
+        stats.flushed(FlushReason.BUFFER_FULL);
+        stats.rendered(4, 16);
+        record(profiler);
+
+        record(profiler);
+
+        assertCounts(profiler, Counter.FLUSHES, 2, 1, 1, 0);
+        assertCounts(profiler, Counter.TEXTURE_CHANGE_FLUSHES, 1, 0, 0, 0);
+        assertCounts(profiler, Counter.BUFFER_FULL_FLUSHES, 0, 0, 1, 0);
+        assertCounts(profiler, Counter.END_FLUSHES, 1, 1, 0, 0);
+        assertCounts(profiler, Counter.RENDER_CALLS, 2, 1, 1, 0);
+        assertCounts(profiler, Counter.DRAW_CALLS, 2, 2, 1, 0);
+        assertCounts(profiler, Counter.QUADS, 40, 25, 4, 0);
+        assertCounts(profiler, Counter.VERTICES, 160, 100, 16, 0);
+        assertCounts(profiler, Counter.TEXTURE_BINDS, 2, 2, 0, 0);
+
+        // the largest batch of each frame, leaving out the one before tracking
+        assertCounts(profiler, Counter.MAX_BATCH_QUADS, 30, 20, 4, 0);
+        assertEquals(30, profiler.getCounterMax()[Counter.MAX_BATCH_QUADS
+                .ordinal()]);
+    }
+
+    private static void assertCounts(final FrameProfiler profiler,
+            final Counter counter, final long... expected) {
+        final long[] counts = profiler.getCounts(counter);
+        assertEquals(expected.length, counts.length);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(counter + " of frame " + i, expected[i], counts[i]);
+        }
+    }
+
+    private static void record(final FrameProfiler profiler) {
+        profiler.beginFrame();
+        profiler.lap(Phase.INPUT);
+        profiler.lap(Phase.RENDER);
+        profiler.endFrame();
+    }
+
+}
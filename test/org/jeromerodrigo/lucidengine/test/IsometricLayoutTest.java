@@ -0,0 +1,139 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jeromerodrigo.lucidengine.tiledmap.IsometricLayout;
+import org.jeromerodrigo.lucidengine.tiledmap.TileLayer;
+import org.jeromerodrigo.lucidengine.tiledmap.TiledMap;
+import org.jeromerodrigo.lucidengine.tiledmap.Tileset;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class IsometricLayoutTest {
+
+    static final int MAP_W = 9;
+    static final int MAP_H = 6;
+
+    static final int TILE_W = 64;
+    static final int TILE_H = 32;
+
+    static TiledMap map;
+    static TileLayer layer;
+    static IsometricLayout layout;
+
+    /** Records the vertices of every visited tile */
+    static class Recorder implements IsometricLayout.TileVisitor {
+
+        final List<String> quads = new ArrayList<String>();
+
+        final float left, top, right, bottom;
+
+        Recorder() {
+            this(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                    Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        }
+
+        Recorder(final float left, final float top, final float right,
+                final float bottom) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+        @Override
+        public void visit(final int x, final int y, final int gid,
+                final Tileset tileset, final float x1, final float y1,
+                final float x2, final float y2) {
+            if (x2 > left && x1 < right && y2 > top && y1 < bottom) {
+                final int uv = tileset.getUVIndex(gid);
+                final float[] uvs = tileset.getUVs();
+                quads.add(x + "," + y + " " + gid + " " + x1 + "," + y1 + " "
+                        + x2 + "," + y2 + " " + uvs[uv] + "," + uvs[uv + 1]
+                        + " " + uvs[uv + 2] + "," + uvs[uv + 3]);
+            }
+        }
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        final int[] tiles = new int[MAP_W * MAP_H];
+
+        // a fixed mix of empty cells, flat tiles (1-8) and tall tiles (9-12)
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = (i * 7 + 3) % 13;
+        }
+
+        layer = new TileLayer("ground", MAP_W, MAP_H, tiles);
+
+        map = new TiledMap(TiledMap.Orientation.ISOMETRIC, MAP_W, MAP_H,
+                TILE_W, TILE_H) {
+            {
+                addTileset(new Tileset("", 256, 64, TILE_W, TILE_H, 1));
+                addTileset(new Tileset("", 128, 128, TILE_W, 64, 9));
+                addTileLayer(layer);
+            }
+        };
+
+        layout = new IsometricLayout(map);
+    }
+
+    @Test
+    public void testKnownVertices() {
+        assertFalse(layout.isFlat());
+
+        final Recorder all = new Recorder();
+        layout.visitBlock(layer, 0, 0, 2, 1, all);
+
+        // (0,0) holds gid 3, a flat tile; (1,0) holds gid 10, a tall one
+        assertEquals(2, all.quads.size());
+        assertEquals("0,0 3 160.0,0.0 224.0,32.0 0.5,0.0 0.75,0.5",
+                all.quads.get(0));
+        assertEquals("1,0 10 192.0,-16.0 256.0,48.0 0.5,0.0 1.0,0.5",
+                all.quads.get(1));
+    }
+
+    @Test
+    public void testVisibleMatchesFullScan() {
+        final float[][] views = { { 0, 0, 320, 240 }, { -100, -50, 50, 40 },
+                { 200, 60, 420, 180 }, { 480, 150, 700, 260 },
+                { 1000, 1000, 1100, 1100 }, { 150, -20, 170, 5 } };
+
+        for (final float[] view : views) {
+            final Recorder visible = new Recorder();
+            layout.visitVisible(layer, view[0], view[1], view[2], view[3],
+                    visible);
+
+            final Recorder scan = new Recorder(view[0], view[1], view[2],
+                    view[3]);
+            layout.visitBlock(layer, 0, 0, MAP_W, MAP_H, scan);
+
+            assertEquals("view " + view[0] + "," + view[1], scan.quads,
+                    visible.quads);
+        }
+    }
+
+    @Test
+    public void testBackToFront() {
+        final Recorder all = new Recorder();
+        layout.visitBlock(layer, 0, 0, MAP_W, MAP_H, all);
+
+        int lastDiagonal = -1;
+
+        for (final String quad : all.quads) {
+            final String[] cell = quad.substring(0, quad.indexOf(' '))
+                    .split(",");
+            final int diagonal = Integer.parseInt(cell[0])
+                    + Integer.parseInt(cell[1]);
+
+            assertTrue(diagonal >= lastDiagonal);
+            lastDiagonal = diagonal;
+        }
+    }
+
+}
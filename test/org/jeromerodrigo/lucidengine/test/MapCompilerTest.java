@@ -0,0 +1,164 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jeromerodrigo.lucidengine.tiledmap.BinaryMapLoader;
+import org.jeromerodrigo.lucidengine.tiledmap.CollisionObject;
+import org.jeromerodrigo.lucidengine.tiledmap.MapCompiler;
+import org.jeromerodrigo.lucidengine.tiledmap.TileAnimation;
+import org.jeromerodrigo.lucidengine.tiledmap.TileLayer;
+import org.jeromerodrigo.lucidengine.tiledmap.TiledMap;
+import org.jeromerodrigo.lucidengine.tiledmap.Tileset;
+import org.junit.Test;
+
+/**
+ * Compiles a map built in code and checks the binary loader reads every part
+ * of it back.
+ */
+
+public class MapCompilerTest {
+
+    /** Tiled's horizontal flip flag */
+    static final int FLIPPED_H = 0x80000000;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        final TileLayer ground = new TileLayer("ground", 5, 3);
+        final TileLayer props = new TileLayer("props", 5, 3);
+        final TileLayer clouds = new TileLayer("clouds", 5, 3);
+
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                ground.setTile(x, y, 1 + (x + y * 5) % 16);
+            }
+        }
+
+        props.setTile(1, 1, 18 | FLIPPED_H);
+        props.setTile(3, 2, 20);
+        props.setVisible(false);
+
+        clouds.setTile(0, 0, 2);
+        clouds.setOpacity(0.5f);
+        clouds.setParallax(0.25f, 0.75f);
+
+        final Tileset terrain = new Tileset("terrain.png", 128, 128, 32, 32,
+                1);
+        final Tileset objects = new Tileset("objects.png", 64, 64, 32, 32, 17);
+
+        terrain.addAnimation(new TileAnimation(1, new int[] { 1, 2, 3 },
+                new int[] { 100, 150, 200 }));
+
+        final List<CollisionObject> objs = new ArrayList<CollisionObject>();
+        objs.add(new CollisionObject(32f, 64f, 96f, 32f, 32, 32));
+        objs.add(new CollisionObject(0f, 0f, 16.5f, 8.25f, 32, 32));
+
+        final TiledMap source = new TiledMap(TiledMap.Orientation.ORTHOGONAL,
+                5, 3, 32, 32) {
+            {
+                setProperty("name", "Level 1");
+                setProperty("intro", "First line\nsecond line\n\tindented");
+                addTileset(terrain);
+                addTileset(objects);
+                setCollisionObjects(objs);
+                addTileLayer(ground);
+                addTileLayer(props);
+                addTileLayer(clouds);
+            }
+        };
+
+        final File file = File.createTempFile("level_1", ".bin");
+        file.deleteOnExit();
+
+        MapCompiler.compile(source, file.getPath());
+
+        final TiledMap bin = BinaryMapLoader.INSTANCE.loadMap(file.getPath());
+
+        assertNotNull("Compiled map could not be loaded!", bin);
+
+        assertEquals(source.getOrientation(), bin.getOrientation());
+        assertEquals(source.getWidth(), bin.getWidth());
+        assertEquals(source.getHeight(), bin.getHeight());
+        assertEquals(source.getTileWidth(), bin.getTileWidth());
+        assertEquals(source.getTileHeight(), bin.getTileHeight());
+        assertEquals(source.getProperties(), bin.getProperties());
+
+        assertEquals(source.getTilesets().size(), bin.getTilesets().size());
+
+        for (int i = 0; i < source.getTilesets().size(); i++) {
+            final Tileset a = source.getTilesets().get(i);
+            final Tileset b = bin.getTilesets().get(i);
+
+            assertEquals(a.SOURCE, b.SOURCE);
+            assertEquals(a.WIDTH, b.WIDTH);
+            assertEquals(a.HEIGHT, b.HEIGHT);
+            assertEquals(a.TILE_W, b.TILE_W);
+            assertEquals(a.TILE_H, b.TILE_H);
+            assertEquals(a.FIRST_GID, b.FIRST_GID);
+
+            assertEquals(a.getAnimations().size(), b.getAnimations().size());
+
+            for (int j = 0; j < a.getAnimations().size(); j++) {
+                final TileAnimation animA = a.getAnimations().get(j);
+                final TileAnimation animB = b.getAnimations().get(j);
+
+                assertEquals(animA.getTileId(), animB.getTileId());
+                assertEquals(animA.getFrameCount(), animB.getFrameCount());
+
+                for (int f = 0; f < animA.getFrameCount(); f++) {
+                    assertEquals(animA.getFrameTileId(f),
+                            animB.getFrameTileId(f));
+                    assertEquals(animA.getFrameDuration(f),
+                            animB.getFrameDuration(f));
+                }
+            }
+        }
+
+        assertEquals(source.getCollisionObjects().size(), bin
+                .getCollisionObjects().size());
+
+        for (int i = 0; i < source.getCollisionObjects().size(); i++) {
+            final CollisionObject a = source.getCollisionObjects().get(i);
+            final CollisionObject b = bin.getCollisionObjects().get(i);
+
+            assertEquals(a.getMapX(), b.getMapX(), 0f);
+            assertEquals(a.getMapY(), b.getMapY(), 0f);
+            assertEquals(a.getMapWidth(), b.getMapWidth(), 0f);
+            assertEquals(a.getMapHeight(), b.getMapHeight(), 0f);
+        }
+
+        assertEquals(source.getTileLayers().size(), bin.getTileLayers().size());
+
+        for (int i = 0; i < source.getTileLayers().size(); i++) {
+            final TileLayer a = source.getTileLayers().get(i);
+            final TileLayer b = bin.getTileLayers().get(i);
+
+            assertEquals(a.getName(), b.getName());
+            assertEquals(a.getWidth(), b.getWidth());
+            assertEquals(a.getHeight(), b.getHeight());
+            assertEquals(a.isVisible(), b.isVisible());
+            assertEquals(a.getOpacity(), b.getOpacity(), 0f);
+            assertEquals(a.getParallaxX(), b.getParallaxX(), 0f);
+            assertEquals(a.getParallaxY(), b.getParallaxY(), 0f);
+
+            for (int y = 0; y < a.getHeight(); y++) {
+                for (int x = 0; x < a.getWidth(); x++) {
+                    assertEquals("Tile " + x + "," + y + " of " + a.getName(),
+                            a.getTile(x, y), b.getTile(x, y));
+                }
+            }
+        }
+
+        assertEquals(18 | FLIPPED_H, bin.getTileLayer("props").getTile(1, 1));
+        assertTrue(bin.getTileAnimator().isAnimated(terrain.FIRST_GID + 1));
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.jeromerodrigo.lucidengine.util.SnapshotExchange;
+import org.junit.Test;
+
+public class SnapshotExchangeTest {
+
+    @Test
+    public void testHandoff() {
+        final int[] a = new int[1];
+        final int[] b = new int[1];
+        final SnapshotExchange<int[]> exchange = new SnapshotExchange<int[]>(
+                a, b);
+
+        // nothing published yet
+        assertSame(b, exchange.acquireFront());
+
+        assertSame(a, exchange.acquireBack());
+        a[0] = 1;
+        exchange.publish(a);
+
+        assertSame(a, exchange.acquireFront());
+        assertSame(a, exchange.acquireFront());
+        assertSame(b, exchange.acquireBack());
+    }
+
+    @Test
+    public void testFramesInOrder() throws InterruptedException {
+        final SnapshotExchange<int[]> exchange = new SnapshotExchange<int[]>(
+                new int[2], new int[2]);
+        final int frames = 20000;
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int frame = 1; frame <= frames; frame++) {
+                    final int[] back = exchange.acquireBack();
+                    back[0] = frame;
+                    back[1] = -frame;
+                    exchange.publish(back);
+                }
+            }
+        });
+        producer.start();
+
+        int last = 0;
+
+        while (last < frames) {
+            final int[] front = exchange.acquireFront();
+            final int frame = front[0];
+
+            // the producer never writes the buffer being read
+            assertEquals(-frame, front[1]);
+            assertTrue(frame >= last);
+            last = frame;
+        }
+
+        producer.join();
+    }
+
+    @Test
+    public void testClose() throws InterruptedException {
+        final SnapshotExchange<int[]> exchange = new SnapshotExchange<int[]>(
+                new int[1], new int[1]);
+        exchange.publish(exchange.acquireBack());
+
+        final Object[] result = { "unset" };
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = exchange.acquireBack();
+            }
+        });
+        producer.start();
+
+        exchange.close();
+        producer.join(5000);
+
+        assertNull(result[0]);
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jeromerodrigo.lucidengine.graphics.texture.TexturePacker;
+import org.jeromerodrigo.lucidengine.graphics.texture.TexturePacker.Page;
+import org.jeromerodrigo.lucidengine.graphics.texture.TexturePacker.Rect;
+import org.junit.Test;
+
+public class TexturePackerTest {
+
+	static final int PAGE_SZ = 64;
+
+	static final int PADDING = 1;
+
+	/** Fills an image with a distinct value per pixel. */
+	static ByteBuffer image(int id, int width, int height) {
+		ByteBuffer buf = ByteBuffer.allocateDirect(width * height * 4).order(
+				ByteOrder.nativeOrder());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				buf.putInt(pixel(id, x, y));
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	static int pixel(int id, int x, int y) {
+		return id << 16 | y << 8 | x;
+	}
+
+	static int pageInt(Page page, int x, int y) {
+		return page.getPixels().getInt((y * page.width + x) * 4);
+	}
+
+	@Test
+	public void testRegionsDoNotOverlap() {
+		TexturePacker packer = new TexturePacker(PAGE_SZ, PAGE_SZ, PADDING);
+		for (int i = 0; i < 12; i++) {
+			packer.add("img" + i, 6 + i, 14 - i, image(i, 6 + i, 14 - i));
+		}
+
+		List<Page> pages = packer.pack();
+		List<Rect> padded = new ArrayList<Rect>();
+		int count = 0;
+
+		for (Page page : pages) {
+			padded.clear();
+			for (Rect r : page.getRegions().values()) {
+				assertTrue(r.x - PADDING >= 0 && r.y - PADDING >= 0);
+				assertTrue(r.x + r.width + PADDING <= page.width);
+				assertTrue(r.y + r.height + PADDING <= page.height);
+
+				Rect p = new Rect(r.x - PADDING, r.y - PADDING, r.width + 2
+						* PADDING, r.height + 2 * PADDING);
+				for (Rect o : padded) {
+					assertFalse(p.x < o.x + o.width && p.x + p.width > o.x
+							&& p.y < o.y + o.height && p.y + p.height > o.y);
+				}
+				padded.add(p);
+				count++;
+			}
+		}
+
+		assertEquals(12, count);
+	}
+
+	@Test
+	public void testPixelsAndEdgesCopied() {
+		TexturePacker packer = new TexturePacker(PAGE_SZ, PAGE_SZ, PADDING);
+		packer.add("a", 5, 3, image(1, 5, 3));
+
+		Page page = packer.pack().get(0);
+		Rect r = page.getRegions().get("a");
+
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 5; x++) {
+				assertEquals(pixel(1, x, y), pageInt(page, r.x + x, r.y + y));
+			}
+		}
+
+		// padding repeats the nearest edge pixel
+		assertEquals(pixel(1, 0, 0), pageInt(page, r.x - 1, r.y - 1));
+		assertEquals(pixel(1, 4, 2), pageInt(page, r.x + 5, r.y + 3));
+		assertEquals(pixel(1, 2, 0), pageInt(page, r.x + 2, r.y - 1));
+		assertEquals(pixel(1, 4, 1), pageInt(page, r.x + 5, r.y + 1));
+	}
+
+	@Test
+	public void testOverflowStartsNewPage() {
+		TexturePacker packer = new TexturePacker(PAGE_SZ, PAGE_SZ, PADDING);
+		for (int i = 0; i < 3; i++) {
+			packer.add("big" + i, 40, 40, image(i, 40, 40));
+		}
+
+		assertEquals(3, packer.pack().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOversizeImageRejected() {
+		TexturePacker packer = new TexturePacker(PAGE_SZ, PAGE_SZ, PADDING);
+		packer.add("huge", PAGE_SZ, 8, image(0, PAGE_SZ, 8));
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.jeromerodrigo.lucidengine.tiledmap.TileAnimation;
+import org.jeromerodrigo.lucidengine.tiledmap.TileAnimator;
+import org.jeromerodrigo.lucidengine.tiledmap.Tileset;
+import org.junit.Test;
+
+public class TileAnimatorTest {
+
+    @Test
+    public void testFrameAt() {
+        final TileAnimation anim = new TileAnimation(0, new int[] { 4, 5, 6 },
+                new int[] { 100, 50, 200 });
+
+        assertEquals(350, anim.getDuration());
+        assertEquals(50, anim.getFrameDuration(1));
+
+        assertEquals(0, anim.getFrameAt(0));
+        assertEquals(0, anim.getFrameAt(99));
+        assertEquals(1, anim.getFrameAt(100));
+        assertEquals(1, anim.getFrameAt(149));
+        assertEquals(2, anim.getFrameAt(150));
+        assertEquals(2, anim.getFrameAt(349));
+        assertEquals(0, anim.getFrameAt(350));
+        assertEquals(1, anim.getFrameAt(350 * 1000 + 120));
+        assertEquals(2, anim.getFrameAt(-1));
+    }
+
+    @Test
+    public void testAnimator() {
+        // 4x2 tiles from gid 1, 2x2 tiles from gid 9
+        final Tileset first = new Tileset("", 128, 64, 32, 32, 1);
+        final Tileset second = new Tileset("", 64, 64, 32, 32, 9);
+
+        first.addAnimation(new TileAnimation(2, new int[] { 2, 3 }, new int[] {
+                100, 100 }));
+        second.addAnimation(new TileAnimation(0, new int[] { 1, 2, 3 },
+                new int[] { 30, 30, 30 }));
+
+        final TileAnimator animator = new TileAnimator(Arrays.asList(first,
+                second));
+
+        assertEquals(2, animator.getAnimationCount());
+        assertTrue(animator.isAnimated(3));
+        assertTrue(animator.isAnimated(9));
+        assertFalse(animator.isAnimated(0));
+        assertFalse(animator.isAnimated(4));
+        assertFalse(animator.isAnimated(10));
+
+        assertEquals(3, animator.getFrame(3));
+        assertEquals(10, animator.getFrame(9));
+        assertEquals(5, animator.getFrame(5));
+
+        animator.update(70);
+        assertEquals(3, animator.getFrame(3));
+        assertEquals(12, animator.getFrame(9));
+
+        animator.setTime(190);
+        assertEquals(4, animator.getFrame(3));
+        assertEquals(10, animator.getFrame(9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFrameOutsideTileset() {
+        final Tileset tileset = new Tileset("", 64, 64, 32, 32, 1);
+        tileset.addAnimation(new TileAnimation(0, new int[] { 0, 4 },
+                new int[] { 100, 100 }));
+    }
+
+}
@@ -1,7 +1,11 @@
 package org.jeromerodrigo.lucidengine.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import org.jeromerodrigo.lucidengine.tiledmap.TiledMap;
 import org.jeromerodrigo.lucidengine.tiledmap.Tileset;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -27,4 +31,58 @@ public class TilesetTest {
 
 	}
 
+	@Test
+	public void testgetTileIdByMapIdLastRow() {
+
+		// 16 tiles per row; gid 18 is the second tile of the second row
+		assertEquals(2, tileset.getTileIdByMapId(18)[0]);
+		assertEquals(2, tileset.getTileIdByMapId(18)[1]);
+		assertEquals(16, tileset.getTileIdByMapId(256)[0]);
+		assertEquals(16, tileset.getTileIdByMapId(256)[1]);
+		assertEquals(0, tileset.getTileIdByMapId(257)[0]);
+
+	}
+
+	@Test
+	public void testUVs() {
+
+		final float[] uvs = tileset.getUVs();
+		final int i = tileset.getUVIndex(18);
+
+		assertEquals(1f / 16, uvs[i], 0f);
+		assertEquals(1f / 16, uvs[i + 1], 0f);
+		assertEquals(2f / 16, uvs[i + 2], 0f);
+		assertEquals(2f / 16, uvs[i + 3], 0f);
+
+	}
+
+	@Test
+	public void testLastGid() {
+
+		assertEquals(256, tileset.LAST_GID);
+
+		final Tileset second = new Tileset("", WIDTH, HEIGHT / 2, TILE_SZ,
+				TILE_SZ, 257);
+		assertEquals(257 + 128 - 1, second.LAST_GID);
+
+	}
+
+	@Test
+	public void testFlippedGid() {
+
+		final TiledMap map = new TiledMap(TiledMap.Orientation.ORTHOGONAL,
+				1, 1, TILE_SZ, TILE_SZ) {
+			{
+				addTileset(tileset);
+			}
+		};
+
+		// horizontally, vertically and diagonally flipped gid 18
+		assertSame(tileset, map.getTileset(0x80000000 | 18));
+		assertSame(tileset, map.getTileset(0x40000000 | 18));
+		assertSame(tileset, map.getTileset(0x20000000 | 18));
+		assertNull(map.getTileset(0x80000000));
+
+	}
+
 }
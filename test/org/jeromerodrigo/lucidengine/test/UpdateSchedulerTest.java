@@ -0,0 +1,87 @@
+package org.jeromerodrigo.lucidengine.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeromerodrigo.lucidengine.ParallelUpdateable;
+import org.jeromerodrigo.lucidengine.UpdatePhase;
+import org.jeromerodrigo.lucidengine.Updateable;
+import org.jeromerodrigo.lucidengine.game.UpdateScheduler;
+import org.junit.Test;
+
+public class UpdateSchedulerTest {
+
+    static class Counter implements ParallelUpdateable {
+
+        int total;
+
+        @Override
+        public void update(final int delta) {
+            total += delta;
+        }
+    }
+
+    @Test
+    public void testPhaseOrder() {
+        final List<String> order = new ArrayList<String>();
+        final UpdateScheduler scheduler = new UpdateScheduler();
+
+        scheduler.add(log(order, "camera"), UpdatePhase.CAMERA);
+        scheduler.add(log(order, "physics 1"), UpdatePhase.PHYSICS);
+        scheduler.add(log(order, "input"), UpdatePhase.INPUT);
+        scheduler.add(log(order, "physics 2"), UpdatePhase.PHYSICS);
+
+        scheduler.update(16);
+
+        assertEquals("[input, physics 1, physics 2, camera]",
+                order.toString());
+    }
+
+    @Test
+    public void testParallelPhase() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final UpdateScheduler scheduler = new UpdateScheduler(pool, 8);
+        final AtomicInteger animated = new AtomicInteger();
+        final List<Counter> counters = new ArrayList<Counter>();
+
+        for (int i = 0; i < 1000; i++) {
+            final Counter counter = new Counter();
+            counters.add(counter);
+            scheduler.add(counter, UpdatePhase.ANIMATION);
+        }
+
+        // sees every parallel update of the phase before it finished
+        scheduler.add(new Updateable() {
+            @Override
+            public void update(final int delta) {
+                for (final Counter counter : counters) {
+                    animated.addAndGet(counter.total);
+                }
+            }
+        }, UpdatePhase.PHYSICS);
+
+        scheduler.update(2);
+        scheduler.update(3);
+
+        for (final Counter counter : counters) {
+            assertEquals(5, counter.total);
+        }
+        assertEquals(1000 * 2 + 1000 * 5, animated.get());
+
+        pool.shutdown();
+    }
+
+    private static Updateable log(final List<String> order, final String name) {
+        return new Updateable() {
+            @Override
+            public void update(final int delta) {
+                order.add(name);
+            }
+        };
+    }
+
+}
@@ -1,10 +1,17 @@
 package org.jeromerodrigo.lucidengine.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jeromerodrigo.lucidengine.tiledmap.TileLayer;
 import org.jeromerodrigo.lucidengine.tiledmap.TiledMap;
 import org.jeromerodrigo.lucidengine.tiledmap.XMLMapLoader;
 import org.junit.Test;
@@ -35,4 +42,68 @@ public class XMLMapLoaderTest {
 
     }
 
+    @Test
+    public void testFlippedGidInTileElements() throws IOException {
+
+        // gid 18 flipped horizontally, as Tiled writes it
+        final String tmx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<map version=\"1.0\" orientation=\"orthogonal\""
+                + " width=\"2\" height=\"1\" tilewidth=\"32\""
+                + " tileheight=\"32\">\n"
+                + " <tileset firstgid=\"1\" name=\"tiles\""
+                + " tilewidth=\"32\" tileheight=\"32\">\n"
+                + "  <image source=\"tiles.png\" width=\"256\""
+                + " height=\"256\"/>\n"
+                + " </tileset>\n"
+                + " <layer name=\"ground\" width=\"2\" height=\"1\">\n"
+                + "  <data>\n"
+                + "   <tile gid=\"2147483666\"/>\n"
+                + "   <tile gid=\"5\"/>\n"
+                + "  </data>\n"
+                + " </layer>\n"
+                + "</map>\n";
+
+        final TiledMap map = load(tmx);
+        final TileLayer layer = map.getTileLayer("ground");
+
+        assertEquals((int) 2147483666L, layer.getTile(0, 0));
+        assertEquals(18, layer.getTile(0, 0) & TileLayer.GID_MASK);
+        assertEquals(5, layer.getTile(1, 0));
+
+    }
+
+    @Test
+    public void testOpacityOutOfRange() throws IOException {
+
+        final String tmx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<map version=\"1.0\" orientation=\"orthogonal\""
+                + " width=\"1\" height=\"1\" tilewidth=\"32\""
+                + " tileheight=\"32\">\n"
+                + " <layer name=\"over\" width=\"1\" height=\"1\""
+                + " opacity=\"1.5\">\n"
+                + "  <data encoding=\"csv\">1</data>\n"
+                + " </layer>\n"
+                + " <layer name=\"under\" width=\"1\" height=\"1\""
+                + " opacity=\"-0.5\">\n"
+                + "  <data encoding=\"csv\">2</data>\n"
+                + " </layer>\n"
+                + "</map>\n";
+
+        final TiledMap map = load(tmx);
+
+        // clamped, and the rest of the map still loaded
+        assertEquals(1f, map.getTileLayer("over").getOpacity(), 0f);
+        assertEquals(0f, map.getTileLayer("under").getOpacity(), 0f);
+        assertEquals(2, map.getTileLayer("under").getTile(0, 0));
+
+    }
+
+    private static TiledMap load(final String tmx) throws IOException {
+        final File file = File.createTempFile("map", ".tmx");
+        file.deleteOnExit();
+        Files.write(file.toPath(), tmx.getBytes(StandardCharsets.UTF_8));
+
+        return XMLMapLoader.INSTANCE.loadMap(file.getPath());
+    }
+
 }